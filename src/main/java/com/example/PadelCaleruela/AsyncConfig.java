@@ -0,0 +1,55 @@
+package com.example.PadelCaleruela;
+
+import com.example.PadelCaleruela.util.BoundedExecutor;
+import com.example.PadelCaleruela.util.TenantFairExecutor;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Ejecución asíncrona acotada.
+ *  - ioExecutor: hilos virtuales para E/S (SMTP, FCM, Welock, Stripe), concurrencia
+ *    y cola limitadas. Es también el executor por defecto de @Async.
+ *  - notificationExecutor: entrega de notificaciones con una cola por ayuntamiento
+ *    atendida por turnos (ver OutboxRelay).
+ */
+@Configuration
+public class AsyncConfig implements AsyncConfigurer {
+
+    @Value("${app.async.io.concurrency:64}")
+    private int ioConcurrency;
+
+    @Value("${app.async.io.queue-capacity:5000}")
+    private int ioQueueCapacity;
+
+    @Value("${app.async.notifications.concurrency:16}")
+    private int notificationConcurrency;
+
+    @Value("${app.async.notifications.per-ayuntamiento-capacity:1000}")
+    private int notificationPerTenantCapacity;
+
+    @Bean(destroyMethod = "close")
+    public BoundedExecutor ioExecutor() {
+        return new BoundedExecutor("io", ioConcurrency, ioQueueCapacity);
+    }
+
+    @Bean(destroyMethod = "close")
+    public TenantFairExecutor notificationExecutor() {
+        return new TenantFairExecutor("notif", notificationConcurrency, notificationPerTenantCapacity);
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return ioExecutor();
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (ex, method, params) ->
+                System.err.println("⚠ Error en @Async " + method.getName() + ": " + ex.getMessage());
+    }
+}
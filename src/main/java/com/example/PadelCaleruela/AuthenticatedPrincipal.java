@@ -0,0 +1,52 @@
+package com.example.PadelCaleruela;
+
+import com.example.PadelCaleruela.model.Role;
+import com.example.PadelCaleruela.model.User;
+import com.example.PadelCaleruela.model.UserStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.Principal;
+
+/**
+ * Datos mínimos del usuario autenticado que se consultan en casi todas las
+ * peticiones (permisos y multi-ayuntamiento), sin necesidad de la entidad completa.
+ * Es el principal que JwtAuthenticationFilter deja en el SecurityContext;
+ * construido desde el token, {@code status} es null (no viaja en el JWT).
+ */
+public record AuthenticatedPrincipal(
+        Long id,
+        String email,
+        Role role,
+        Long ayuntamientoId,
+        UserStatus status
+) implements Principal {
+
+    /** Como con CustomUserDetails: el "nombre" del usuario autenticado es su email. */
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    /** Principal de la petición actual, o null si no hay usuario autenticado. */
+    public static AuthenticatedPrincipal current() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) return null;
+
+        return switch (auth.getPrincipal()) {
+            case AuthenticatedPrincipal p -> p;
+            case CustomUserDetails cud -> of(cud.getUser());
+            case null, default -> null;
+        };
+    }
+
+    public static AuthenticatedPrincipal of(User user) {
+        return new AuthenticatedPrincipal(
+                user.getId(),
+                user.getEmail(),
+                user.getRole(),
+                user.getAyuntamiento() != null ? user.getAyuntamiento().getId() : null,
+                user.getStatus()
+        );
+    }
+}
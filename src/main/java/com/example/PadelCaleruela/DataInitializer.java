@@ -5,6 +5,7 @@ import com.example.PadelCaleruela.model.User;
 import com.example.PadelCaleruela.model.UserStatus;
 import com.example.PadelCaleruela.repository.UserRepository;
 import com.example.PadelCaleruela.service.EmailService;
+import com.example.PadelCaleruela.service.EmailTemplates;
 import jakarta.mail.MessagingException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
@@ -53,18 +54,11 @@ public class DataInitializer implements CommandLineRunner {
             admin.setStatus(UserStatus.OFFLINE);
 
             userRepository.save(admin);
-            String html =
-                    "<html><body>" +
-                            "<h3>¡Hola " + admin.getUsername() + "!</h3>" +
-                            "<p>Bienvenido a la mejor aplicación de pádel del mundo 🎾.</p>" +
-                            "<p>Se te ha asignado una contraseña al azar, puedes cambiarla desde la app.</p>" +
-                            "<p>La contraseña es: <strong>" + generatedPassword + "</strong></p>" +
-                            "</body></html>";
-
-            emailService.sendHtmlEmail(
+            emailService.sendTemplate(
                     admin.getEmail(),
                     "Usuario super admin creado correctamente",
-                    html
+                    EmailTemplates.Template.SUPERADMIN_CREADO,
+                    EmailTemplates.vars("usuario", admin.getUsername(), "password", generatedPassword)
             );
 
 
@@ -1,26 +1,37 @@
 package com.example.PadelCaleruela;
 
+import com.example.PadelCaleruela.model.Role;
 import com.example.PadelCaleruela.service.JwtService;
+import com.example.PadelCaleruela.service.PrincipalCache;
+import com.example.PadelCaleruela.service.TokenRevocations;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * Autenticación sin estado: el {@link AuthenticatedPrincipal} se construye con los
+ * claims del token ya verificado, sin consultar la BD. Solo si el usuario ha cambiado
+ * después de emitirse el token ({@link TokenRevocations}) se usan sus datos frescos.
+ */
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final TokenRevocations tokenRevocations;
+    private final PrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -28,8 +39,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String userEmail;
 
         // Si no hay token o no empieza con "Bearer ", continúa sin autenticación
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -37,17 +46,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        jwt = authHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt); // 👈 método que extrae el email del token
+        // 🔐 Una sola verificación de firma por petición (o ninguna si está en caché)
+        final Claims claims;
+        try {
+            claims = jwtService.verify(authHeader.substring(7));
+        } catch (JwtException | IllegalArgumentException e) {
+            // Token manipulado, expirado o mal formado → sigue sin autenticación
+            filterChain.doFilter(request, response);
+            return;
+        }
 
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+        // Los claims quedan en la petición para quien los necesite (AuthService...)
+        request.setAttribute(JwtService.CLAIMS_ATTR, claims);
+
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            AuthenticatedPrincipal principal = principalFrom(claims);
+
+            if (principal != null) {
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(
-                                userDetails,
+                                principal,
                                 null,
-                                userDetails.getAuthorities()
+                                List.of(new SimpleGrantedAuthority("ROLE_" + principal.role().name()))
                         );
                 authToken.setDetails(
                         new WebAuthenticationDetailsSource().buildDetails(request)
@@ -57,5 +77,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
-}
 
+    /** null si el token no trae lo necesario o el usuario ya no existe. */
+    private AuthenticatedPrincipal principalFrom(Claims claims) {
+        Long userId = claims.get("userId", Long.class);
+        String role = claims.get("role", String.class);
+        if (userId == null || role == null || claims.getSubject() == null) return null;
+
+        // Cambió rol/ayuntamiento/etc. después de emitir el token → datos actuales
+        if (tokenRevocations.isStale(userId, claims.getIssuedAt())) {
+            return principalCache.get(userId);
+        }
+
+        try {
+            return new AuthenticatedPrincipal(
+                    userId,
+                    claims.getSubject(),
+                    Role.valueOf(role),
+                    claims.get("ayuntamientoId", Long.class),
+                    null
+            );
+        } catch (IllegalArgumentException e) {
+            return null; // rol desconocido
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.PadelCaleruela;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -46,6 +47,8 @@ public class SecurityConfig {
         return http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        // 📡 Re-despachos asíncronos (SSE) ya autenticados en la petición original
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // ✅ Permitimos acceso sin token a estos endpoints
                         .requestMatchers(PUBLIC_ENDPOINTS).permitAll()
                         // 🔒 Todo lo demás requiere autenticación JWT
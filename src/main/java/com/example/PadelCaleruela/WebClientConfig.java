@@ -1,15 +1,66 @@
 package com.example.PadelCaleruela;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
 
+    @Value("${app.welock.http.max-connections:50}")
+    private int welockMaxConnections;
+
+    @Value("${app.welock.http.pending-acquire-max:200}")
+    private int welockPendingAcquireMax;
+
+    @Value("${app.welock.http.pending-acquire-timeout-ms:2000}")
+    private long welockPendingAcquireTimeoutMs;
+
+    @Value("${app.welock.http.connect-timeout-ms:3000}")
+    private int welockConnectTimeoutMs;
+
+    @Value("${app.welock.http.response-timeout-ms:8000}")
+    private long welockResponseTimeoutMs;
+
     @Bean
     public WebClient webClient() {
         return WebClient.builder()
                 .build();
     }
+
+    // ======================================================
+    // 🔐 Welock: pool de conexiones propio y timeouts de red
+    // ======================================================
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider welockConnectionProvider() {
+        return ConnectionProvider.builder("welock")
+                .maxConnections(welockMaxConnections)
+                .pendingAcquireMaxCount(welockPendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(welockPendingAcquireTimeoutMs))
+                // Welock (o su balanceador) corta conexiones ociosas: mejor cerrarlas antes
+                .maxIdleTime(Duration.ofSeconds(30))
+                .maxLifeTime(Duration.ofMinutes(5))
+                .evictInBackground(Duration.ofSeconds(30))
+                .build();
+    }
+
+    @Bean
+    public WebClient welockWebClient(WebClient.Builder builder, ConnectionProvider welockConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(welockConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, welockConnectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(welockResponseTimeoutMs))
+                .keepAlive(true);
+
+        return builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
 }
@@ -2,18 +2,35 @@ package com.example.PadelCaleruela;
 
 import com.example.PadelCaleruela.dto.WelockResponse;
 import com.example.PadelCaleruela.service.WelockAuthService;
+import com.example.PadelCaleruela.util.CallStats;
+import com.example.PadelCaleruela.util.CircuitBreaker;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.net.ConnectException;
+import java.time.Duration;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cliente de la API de Welock.
+ *
+ * Cada operación tiene versión bloqueante y asíncrona (CompletableFuture); ambas
+ * pasan por {@link #call}: plazo máximo por llamada, límite de llamadas simultáneas
+ * (bulkhead), cortocircuito si Welock falla seguido y métricas por operación.
+ */
 @Service
 public class WelockClient {
 
@@ -26,17 +43,44 @@ public class WelockClient {
     @Value("${welock.app-id}")
     private String appId;
 
-    public WelockClient(WebClient.Builder builder, WelockAuthService auth) {
-        this.webClient = builder.build();
+    // Comandos BLE: hay alguien delante de la puerta esperando
+    private final Duration interactiveDeadline;
+    // Alta de dispositivos y contraseñas temporales: van en segundo plano
+    private final Duration backgroundDeadline;
+
+    private final int maxConcurrentCalls;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final Map<String, CallStats> stats = new ConcurrentHashMap<>();
+
+    public WelockClient(@Qualifier("welockWebClient") WebClient webClient,
+                        WelockAuthService auth,
+                        @Value("${app.welock.interactive-deadline-ms:5000}") long interactiveDeadlineMs,
+                        @Value("${app.welock.background-deadline-ms:15000}") long backgroundDeadlineMs,
+                        @Value("${app.welock.max-concurrent-calls:40}") int maxConcurrentCalls,
+                        @Value("${app.welock.circuit.failure-threshold:5}") int failureThreshold,
+                        @Value("${app.welock.circuit.open-seconds:30}") long openSeconds) {
+        this.webClient = webClient;
         this.auth = auth;
+        this.interactiveDeadline = Duration.ofMillis(interactiveDeadlineMs);
+        this.backgroundDeadline = Duration.ofMillis(backgroundDeadlineMs);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.circuitBreaker = new CircuitBreaker("welock", failureThreshold, Duration.ofSeconds(openSeconds));
     }
 
     // ----------------------------------------------------------
     // REGISTRAR DISPOSITIVO (DeviceCreate)
     // ----------------------------------------------------------
     public WelockResponse registerDevice(String deviceNumber, String deviceName, String userId) {
+        return registerDeviceMono(deviceNumber, deviceName, userId).block();
+    }
+
+    public CompletableFuture<WelockResponse> registerDeviceAsync(String deviceNumber, String deviceName, String userId) {
+        return registerDeviceMono(deviceNumber, deviceName, userId).toFuture();
+    }
 
-        String token = auth.getToken();
+    private Mono<WelockResponse> registerDeviceMono(String deviceNumber, String deviceName, String userId) {
 
         Map<String, Object> body = new HashMap<>();
         body.put("appID", appId);
@@ -44,22 +88,8 @@ public class WelockClient {
         if (deviceName != null) body.put("deviceName", deviceName);
         if (userId != null) body.put("userID", userId);
 
-        String url = baseUrl + "/API/Device/DeviceCreate";
-
-        WelockResponse resp = webClient.post()
-                .uri(url)
-                .header("Authorization", "Bearer " + token)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(WelockResponse.class)
-                .block();
-
-        if (resp == null || resp.getCode() != 0) {
-            throw new RuntimeException("No se pudo registrar el dispositivo en Welock: " + resp);
-        }
-
-        return resp;
+        return call("registerDevice", "/API/Device/DeviceCreate", body, backgroundDeadline,
+                "No se pudo registrar el dispositivo en Welock");
     }
 
 
@@ -70,8 +100,20 @@ public class WelockClient {
                                    String bleName,
                                    String power,
                                    String randomFactor) {
+        return getUnlockCommandMono(deviceNumber, bleName, power, randomFactor).block();
+    }
 
-        String token = auth.getToken();
+    public CompletableFuture<String> getUnlockCommandAsync(String deviceNumber,
+                                                           String bleName,
+                                                           String power,
+                                                           String randomFactor) {
+        return getUnlockCommandMono(deviceNumber, bleName, power, randomFactor).toFuture();
+    }
+
+    private Mono<String> getUnlockCommandMono(String deviceNumber,
+                                              String bleName,
+                                              String power,
+                                              String randomFactor) {
 
         System.out.println("Device number:"+deviceNumber+", BleName:"+bleName+", Power:"+power+", random Factor:"+randomFactor);
 
@@ -83,23 +125,11 @@ public class WelockClient {
                 "deviceRandomFactor", randomFactor
         );
 
-        String url = baseUrl + "/API/Device/DeviceUnLockCommand";
-        System.out.println("📡 Enviando a: " + url+"token:"+token);
+        System.out.println("📡 Enviando a: " + baseUrl + "/API/Device/DeviceUnLockCommand");
 
-        WelockResponse resp = webClient.post()
-                .uri(url)
-                .header("Authorization", "Bearer " + token)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(WelockResponse.class)
-                .block();
-
-        if (resp == null || resp.getCode() != 0) {
-            throw new RuntimeException("Error obteniendo comando BLE: " + resp);
-        }
-
-        return resp.getData().toString();
+        return call("unlockCommand", "/API/Device/DeviceUnLockCommand", body, interactiveDeadline,
+                "Error obteniendo comando BLE")
+                .map(resp -> resp.getData().toString());
     }
     // ----------------------------------------------------------
 // COMANDO SYNC TIME BLE (DeviceSyncTime)
@@ -108,8 +138,20 @@ public class WelockClient {
                                      String bleName,
                                      long timestamp,
                                      String randomFactor) {
+        return getSyncTimeCommandMono(deviceNumber, bleName, timestamp, randomFactor).block();
+    }
 
-        String token = auth.getToken();
+    public CompletableFuture<String> getSyncTimeCommandAsync(String deviceNumber,
+                                                             String bleName,
+                                                             long timestamp,
+                                                             String randomFactor) {
+        return getSyncTimeCommandMono(deviceNumber, bleName, timestamp, randomFactor).toFuture();
+    }
+
+    private Mono<String> getSyncTimeCommandMono(String deviceNumber,
+                                                String bleName,
+                                                long timestamp,
+                                                String randomFactor) {
 
         Map<String, Object> body = Map.of(
                 "appID", appId,
@@ -119,24 +161,11 @@ public class WelockClient {
                 "deviceRandomFactor", randomFactor  // según docs puede ser "0000"
         );
 
-        String url = baseUrl + "/API/Device/DeviceSyncTime";
-
-        System.out.println("📡 SYNC TIME → Enviando a: " + url);
+        System.out.println("📡 SYNC TIME → Enviando a: " + baseUrl + "/API/Device/DeviceSyncTime");
 
-        WelockResponse resp = webClient.post()
-                .uri(url)
-                .header("Authorization", "Bearer " + token)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(WelockResponse.class)
-                .block();
-
-        if (resp == null || resp.getCode() != 0) {
-            throw new RuntimeException("Error obteniendo comando SyncTime: " + resp);
-        }
-
-        return resp.getData().toString();
+        return call("syncTimeCommand", "/API/Device/DeviceSyncTime", body, interactiveDeadline,
+                "Error obteniendo comando SyncTime")
+                .map(resp -> resp.getData().toString());
     }
 
     // ----------------------------------------------------------
@@ -147,8 +176,22 @@ public class WelockClient {
                                        String startDateTime,
                                        String endDateTime,
                                        int tempType) {
+        return generateTempPasswordMono(deviceNumber, bleName, startDateTime, endDateTime, tempType).block();
+    }
+
+    public CompletableFuture<String> generateTempPasswordAsync(String deviceNumber,
+                                                               String bleName,
+                                                               String startDateTime,
+                                                               String endDateTime,
+                                                               int tempType) {
+        return generateTempPasswordMono(deviceNumber, bleName, startDateTime, endDateTime, tempType).toFuture();
+    }
 
-        String token = auth.getToken();
+    private Mono<String> generateTempPasswordMono(String deviceNumber,
+                                                  String bleName,
+                                                  String startDateTime,
+                                                  String endDateTime,
+                                                  int tempType) {
 
         Map<String, Object> body = Map.of(
                 "appID", appId,
@@ -159,25 +202,105 @@ public class WelockClient {
                 "tempType", tempType  // 0 = continuo, 1 = por horario
         );
 
-        String url = baseUrl + "/API/Device/DeviceTempPassword";
-        System.out.println("📡 GENERATE TEMP PASSWORD → Enviando a: " + url);
+        System.out.println("📡 GENERATE TEMP PASSWORD → Enviando a: " + baseUrl + "/API/Device/DeviceTempPassword");
 
-        WelockResponse resp = webClient.post()
+        return call("tempPassword", "/API/Device/DeviceTempPassword", body, backgroundDeadline,
+                "Error generando contraseña temporal")
+                .map(resp -> resp.getData().toString());  // Esta es la contraseña
+    }
+
+    // ----------------------------------------------------------
+    // 📊 MÉTRICAS (latencia, errores, rechazos y estado del circuito)
+    // ----------------------------------------------------------
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> operations = new LinkedHashMap<>();
+        stats.forEach((operation, s) -> operations.put(operation, s.snapshot()));
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("circuit", circuitBreaker.getState());
+        metrics.put("circuitConsecutiveFailures", circuitBreaker.getConsecutiveFailures());
+        metrics.put("circuitRejected", circuitBreaker.getRejectedCount());
+        metrics.put("inFlight", maxConcurrentCalls - bulkhead.availablePermits());
+        metrics.put("operations", operations);
+        return metrics;
+    }
+
+    // ----------------------------------------------------------
+    // LLAMADA PROTEGIDA: cortocircuito → bulkhead → token → POST
+    // (401 → token nuevo y un reintento) → plazo → métricas
+    // ----------------------------------------------------------
+    private Mono<WelockResponse> call(String operation,
+                                      String path,
+                                      Map<String, Object> body,
+                                      Duration deadline,
+                                      String errorMessage) {
+        String url = baseUrl + path;
+        CallStats opStats = stats.computeIfAbsent(operation, k -> new CallStats());
+
+        return Mono.defer(() -> {
+            CircuitBreaker.Permit permit = circuitBreaker.tryAcquire();
+            if (permit == null) {
+                opStats.recordRejected();
+                return Mono.error(new WelockUnavailableException("Welock no disponible (demasiados fallos seguidos)"));
+            }
+            if (!bulkhead.tryAcquire()) {
+                circuitBreaker.onIgnored(permit);
+                opStats.recordRejected();
+                return Mono.error(new WelockUnavailableException("Demasiadas llamadas simultáneas a Welock"));
+            }
+
+            long start = System.nanoTime();
+
+            return auth.getTokenAsync()
+                    .flatMap(token -> send(url, token, body)
+                            .onErrorResume(WebClientResponseException.Unauthorized.class, e -> {
+                                System.err.println("⚠️ Welock 401 en " + path + " → renovando token");
+                                return auth.onUnauthorizedAsync(token).flatMap(fresh -> send(url, fresh, body));
+                            }))
+                    // Solo se reintenta si no llegó a conectar (la petición no salió)
+                    .retryWhen(Retry.backoff(1, Duration.ofMillis(200))
+                            .filter(WelockClient::isConnectFailure)
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .timeout(deadline)
+                    .doOnSuccess(resp -> {
+                        opStats.recordSuccess(System.nanoTime() - start);
+                        circuitBreaker.onSuccess(permit);
+                    })
+                    .doOnError(e -> {
+                        opStats.recordError(System.nanoTime() - start, e instanceof TimeoutException);
+                        if (isServiceFailure(e)) circuitBreaker.onFailure(permit);
+                        else circuitBreaker.onIgnored(permit);
+                    })
+                    .doOnCancel(() -> circuitBreaker.onIgnored(permit))
+                    .doFinally(signal -> bulkhead.release())
+                    .onErrorMap(TimeoutException.class, e -> new WelockUnavailableException(
+                            "Welock no respondió en " + deadline.toMillis() + " ms (" + operation + ")"));
+        })
+                // code != 0 es un error de negocio: no cuenta para el circuito
+                .switchIfEmpty(Mono.error(() -> new RuntimeException(errorMessage + ": null")))
+                .flatMap(resp -> resp.getCode() != 0
+                        ? Mono.error(new RuntimeException(errorMessage + ": " + resp))
+                        : Mono.just(resp));
+    }
+
+    private Mono<WelockResponse> send(String url, String token, Map<String, Object> body) {
+        return webClient.post()
                 .uri(url)
                 .header("Authorization", "Bearer " + token)
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(body)
                 .retrieve()
-                .bodyToMono(WelockResponse.class)
-                .block();
-
-        if (resp == null || resp.getCode() != 0) {
-            throw new RuntimeException("Error generando contraseña temporal: " + resp);
-        }
-
-        return resp.getData().toString();  // Esta es la contraseña
+                .bodyToMono(WelockResponse.class);
     }
 
+    private static boolean isConnectFailure(Throwable e) {
+        return e instanceof WebClientRequestException && e.getCause() instanceof ConnectException;
+    }
 
+    // Timeouts, errores de red y 5xx dicen que Welock está mal; un 4xx no
+    private static boolean isServiceFailure(Throwable e) {
+        return e instanceof TimeoutException
+                || e instanceof WebClientRequestException
+                || (e instanceof WebClientResponseException r && r.getStatusCode().is5xxServerError());
+    }
 }
-
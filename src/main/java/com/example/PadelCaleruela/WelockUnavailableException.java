@@ -0,0 +1,12 @@
+package com.example.PadelCaleruela;
+
+/**
+ * Welock no se ha llamado o no ha respondido a tiempo: circuito abierto, demasiadas
+ * llamadas simultáneas o plazo agotado. Los controladores lo devuelven como 503.
+ */
+public class WelockUnavailableException extends RuntimeException {
+
+    public WelockUnavailableException(String message) {
+        super(message);
+    }
+}
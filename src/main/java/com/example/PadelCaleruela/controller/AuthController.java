@@ -5,7 +5,9 @@ import com.example.PadelCaleruela.dto.UserDTO;
 import com.example.PadelCaleruela.dto.UserRegister;
 import com.example.PadelCaleruela.model.User;
 import com.example.PadelCaleruela.service.AuthService;
+import com.example.PadelCaleruela.service.InvalidRefreshTokenException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -30,4 +32,20 @@ public class AuthController {
         AuthResponse response = authService.login(request);
         return ResponseEntity.ok(response);
     }
+
+    // 🔄 Nuevo JWT + nuevo refresh token a cambio del refresh token actual
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> request) {
+        try {
+            return ResponseEntity.ok(authService.refresh(request.get("refreshToken")));
+        } catch (InvalidRefreshTokenException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody Map<String, String> request) {
+        authService.logout(request.get("refreshToken"));
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -0,0 +1,33 @@
+package com.example.PadelCaleruela.controller;
+
+import com.example.PadelCaleruela.dto.BadgeCountsDTO;
+import com.example.PadelCaleruela.service.AuthService;
+import com.example.PadelCaleruela.service.BadgeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/badges")
+@RequiredArgsConstructor
+public class BadgeController {
+
+    private final BadgeService badgeService;
+    private final AuthService authService;
+
+    // 🔢 Contadores actuales del usuario autenticado
+    @GetMapping
+    public ResponseEntity<BadgeCountsDTO> getBadges() {
+        return ResponseEntity.ok(badgeService.get(authService.getCurrentPrincipal().id()));
+    }
+
+    // 📡 Flujo SSE: evento "badges" al conectar y en cada cambio
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        return badgeService.subscribe(authService.getCurrentPrincipal().id());
+    }
+}
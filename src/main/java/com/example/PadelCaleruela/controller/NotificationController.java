@@ -27,7 +27,9 @@ public class NotificationController {
     //     Notificaciones normales
     // -----------------------------------------------------
     @GetMapping("/user/{userId}")
-    public List<NotificationDTO> getUserNotifications(@PathVariable Long userId) {
+    public List<NotificationDTO> getUserNotifications(@PathVariable Long userId,
+                                                      @RequestParam(required = false) Integer page,
+                                                      @RequestParam(required = false) Integer size) {
 
         User current = authService.getCurrentUser();
 
@@ -35,7 +37,7 @@ public class NotificationController {
             throw new AccessDeniedException("No puedes ver notificaciones de otro usuario.");
         }
 
-        return service.getUserNotifications(userId);
+        return service.getUserNotifications(userId, page, size);
     }
 
     @GetMapping("/count/{userId}")
@@ -56,7 +58,9 @@ public class NotificationController {
     //     Notificaciones administrativas
     // -----------------------------------------------------
     @GetMapping("/admin/{userId}")
-    public List<NotificationDTO> getAdminNotifications(@PathVariable Long userId) {
+    public List<NotificationDTO> getAdminNotifications(@PathVariable Long userId,
+                                                       @RequestParam(required = false) Integer page,
+                                                       @RequestParam(required = false) Integer size) {
 
         User current = authService.getCurrentUser();
 
@@ -68,7 +72,7 @@ public class NotificationController {
             throw new AccessDeniedException("No tienes permisos para ver notificaciones administrativas.");
         }
 
-        return service.getAdminNotifications(userId);
+        return service.getAdminNotifications(userId, page, size);
     }
 
     // -----------------------------------------------------
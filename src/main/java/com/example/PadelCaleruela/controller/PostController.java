@@ -1,6 +1,7 @@
 package com.example.PadelCaleruela.controller;
 
 import com.example.PadelCaleruela.dto.PostDTO;
+import com.example.PadelCaleruela.dto.PostPageDTO;
 import com.example.PadelCaleruela.model.User;
 import com.example.PadelCaleruela.model.Visibility;
 import com.example.PadelCaleruela.service.AuthService;
@@ -30,12 +31,25 @@ public class PostController {
     }
 
     // ✅ Feed del usuario autenticado: posts de seguidos + propios + públicas de su ayuntamiento
-    @GetMapping("/feed")
+    //    Sin cursor/size: lista completa, como siempre (clientes antiguos)
+    @GetMapping(value = "/feed", params = {"!cursor", "!size"})
     public ResponseEntity<List<PostDTO>> getMyFeed() {
         User currentUser = authService.getCurrentUser();
         return ResponseEntity.ok(postService.getFeed(currentUser));
     }
 
+    //    Paginado: ?cursor=<nextCursor de la página anterior>&size=20 (máx. 50)
+    @GetMapping("/feed")
+    public ResponseEntity<PostPageDTO> getMyFeedPage(@RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer size) {
+        User currentUser = authService.getCurrentUser();
+        try {
+            return ResponseEntity.ok(postService.getFeed(currentUser, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // cursor inválido
+        }
+    }
+
     // ⚠️ OPCIONAL: feed por userId solo para SuperAdmin (útil para panel de administración)
     @GetMapping("/feed/{userId}")
     public ResponseEntity<List<PostDTO>> getFeedForUser(@PathVariable Long userId) {
@@ -44,14 +58,25 @@ public class PostController {
     }
 
     // 🔹 Feed público: solo posts PUBLIC del ayuntamiento del usuario autenticado
-    @GetMapping("/feed/public")
+    @GetMapping(value = "/feed/public", params = {"!cursor", "!size"})
     public ResponseEntity<List<PostDTO>> getPublicFeed() {
         User currentUser = authService.getCurrentUser();
         return ResponseEntity.ok(postService.getPublicFeed(currentUser));
     }
 
+    @GetMapping("/feed/public")
+    public ResponseEntity<PostPageDTO> getPublicFeedPage(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer size) {
+        User currentUser = authService.getCurrentUser();
+        try {
+            return ResponseEntity.ok(postService.getPublicFeed(currentUser, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // 🔹 Posts del propio usuario autenticado
-    @GetMapping("/me")
+    @GetMapping(value = "/me", params = {"!cursor", "!size"})
     public ResponseEntity<List<PostDTO>> getMyPosts() {
         User currentUser = authService.getCurrentUser();
         return ResponseEntity.ok(
@@ -59,9 +84,22 @@ public class PostController {
         );
     }
 
+    @GetMapping("/me")
+    public ResponseEntity<PostPageDTO> getMyPostsPage(@RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer size) {
+        User currentUser = authService.getCurrentUser();
+        try {
+            return ResponseEntity.ok(
+                    postService.getPostsByUser(currentUser.getId(), currentUser, cursor, size)
+            );
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
 
     // 🔹 Posts de un usuario concreto (perfil público)
-    @GetMapping("/user/{userId}")
+    @GetMapping(value = "/user/{userId}", params = {"!cursor", "!size"})
     public ResponseEntity<List<PostDTO>> getPostsByUser(@PathVariable Long userId) {
         User currentUser = authService.getCurrentUser();
         return ResponseEntity.ok(
@@ -69,6 +107,20 @@ public class PostController {
         );
     }
 
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<PostPageDTO> getPostsByUserPage(@PathVariable Long userId,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer size) {
+        User currentUser = authService.getCurrentUser();
+        try {
+            return ResponseEntity.ok(
+                    postService.getPostsByUser(userId, currentUser, cursor, size)
+            );
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PatchMapping("/{postId}/visibility")
     public ResponseEntity<PostDTO> updateVisibility(
             @PathVariable Long postId,
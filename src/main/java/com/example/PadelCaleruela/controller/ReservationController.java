@@ -6,6 +6,8 @@ import com.example.PadelCaleruela.model.User;
 import com.example.PadelCaleruela.repository.UserRepository;
 import com.example.PadelCaleruela.service.InvitationService;
 import com.example.PadelCaleruela.service.ReservationService;
+import com.example.PadelCaleruela.service.SlotAlreadyTakenException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -35,8 +37,13 @@ public class ReservationController {
 
     // Crear reserva
     @PostMapping
-    public ResponseEntity<ReservationDTO> create(@RequestBody ReservationDTO dto) {
-        return ResponseEntity.ok(reservationService.createReservation(dto));
+    public ResponseEntity<?> create(@RequestBody ReservationDTO dto) {
+        try {
+            return ResponseEntity.ok(reservationService.createReservation(dto));
+        } catch (SlotAlreadyTakenException e) {
+            // 🚦 Otro usuario se ha llevado el slot
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
     }
 
     // 🟣 Invitar jugadores a una reserva existente
@@ -1,6 +1,7 @@
 package com.example.PadelCaleruela.controller;
 
 import com.example.PadelCaleruela.WelockClient;
+import com.example.PadelCaleruela.WelockUnavailableException;
 import com.example.PadelCaleruela.dto.RegisterRequest;
 import com.example.PadelCaleruela.dto.UnlockRequest;
 import com.example.PadelCaleruela.model.Lock;
@@ -12,6 +13,8 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/welock")
@@ -36,7 +39,7 @@ public class WelockController {
     }
 
     @PostMapping("/unlock-command")
-    public ResponseEntity<?> unlock(@RequestBody UnlockRequest req) {
+    public CompletableFuture<ResponseEntity<?>> unlock(@RequestBody UnlockRequest req) {
 
         System.out.println("========== 🟦 UNLOCK REQUEST RECIBIDO =================");
         System.out.println("ReservationId: " + req.getReservationId());
@@ -72,10 +75,10 @@ public class WelockController {
 
         if (!esCreador && !esJugador) {
             System.out.println("❌ Usuario NO pertenece a la reserva");
-            return ResponseEntity.status(403).body(Map.of(
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).body(Map.of(
                     "autorizado", false,
                     "error", "No formas parte de esta reserva"
-            ));
+            )));
         }
 
         // 3️⃣ Ventana de tiempo permitida
@@ -89,10 +92,10 @@ public class WelockController {
 
         if (ahora.isBefore(inicio) || ahora.isAfter(fin)) {
             System.out.println("❌ Fuera del horario permitido");
-            return ResponseEntity.status(403).body(Map.of(
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).body(Map.of(
                     "autorizado", false,
                     "error", "Fuera del horario permitido"
-            ));
+            )));
         }
 
         // 4️⃣ Obtener cerradura vinculada a la pista
@@ -117,33 +120,34 @@ public class WelockController {
             System.out.println("req.deviceNumber = " + req.getDeviceNumber() + " | db = " + lock.getDeviceNumber());
             System.out.println("req.bleName      = " + req.getBleName() + " | db = " + lock.getBleName());
 
-            return ResponseEntity.status(403).body(Map.of(
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).body(Map.of(
                     "autorizado", false,
                     "error", "Datos de cerradura incorrectos"
-            ));
+            )));
         }
 
         // 6️⃣ Llamar API WeLock
         System.out.println("✔ Validación correcta, pidiendo comando a WELOCK...");
 
-        String cmd = welock.getUnlockCommand(
+        // El hilo de Tomcat queda libre mientras Welock responde
+        return welock.getUnlockCommandAsync(
                 req.getDeviceNumber(),
                 req.getBleName(),
                 req.getPower(),
                 req.getRandomFactor()
-        );
-
-        System.out.println("✔ Comando recibido: " + cmd);
-        System.out.println("========== 🟩 FIN UNLOCK REQUEST =================");
+        ).<ResponseEntity<?>>thenApply(cmd -> {
+            System.out.println("✔ Comando recibido: " + cmd);
+            System.out.println("========== 🟩 FIN UNLOCK REQUEST =================");
 
-        return ResponseEntity.ok(Map.of(
-                "autorizado", true,
-                "command", cmd
-        ));
+            return ResponseEntity.ok(Map.of(
+                    "autorizado", true,
+                    "command", cmd
+            ));
+        }).exceptionally(WelockController::welockUnavailable);
     }
 
     @PostMapping("/sync-time")
-    public ResponseEntity<?> syncTime(@RequestBody Map<String, Object> req) {
+    public CompletableFuture<ResponseEntity<?>> syncTime(@RequestBody Map<String, Object> req) {
 
         String deviceNumber = req.get("deviceNumber").toString();
         String bleName      = req.get("bleName").toString();
@@ -160,18 +164,28 @@ public class WelockController {
         System.out.println("RandomFactor: " + randomFactor);
         System.out.println("=================================================");
 
-        String cmd = welock.getSyncTimeCommand(
+        return welock.getSyncTimeCommandAsync(
                 deviceNumber,
                 bleName,
                 timestamp,
                 randomFactor
-        );
+        ).<ResponseEntity<?>>thenApply(cmd -> {
+            System.out.println("🟢 Comando SyncTime recibido: " + cmd);
 
-        System.out.println("🟢 Comando SyncTime recibido: " + cmd);
+            return ResponseEntity.ok(Map.of(
+                    "command", cmd
+            ));
+        }).exceptionally(WelockController::welockUnavailable);
+    }
 
-        return ResponseEntity.ok(Map.of(
-                "command", cmd
-        ));
+    // Welock caído o saturado → 503; cualquier otro error sigue su camino
+    private static ResponseEntity<?> welockUnavailable(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof WelockUnavailableException) {
+            System.err.println("⚠️ " + cause.getMessage());
+            return ResponseEntity.status(503).body(Map.of("error", cause.getMessage()));
+        }
+        throw cause instanceof RuntimeException re ? re : new CompletionException(cause);
     }
 
 
@@ -1,6 +1,8 @@
 package com.example.PadelCaleruela.controller;
 
+import com.example.PadelCaleruela.WelockClient;
 import com.example.PadelCaleruela.service.WelockAuthService;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -13,9 +15,11 @@ import java.util.Map;
 public class WelockDebugController {
 
     private final WelockAuthService authService;
+    private final WelockClient welockClient;
 
-    public WelockDebugController(WelockAuthService authService) {
+    public WelockDebugController(WelockAuthService authService, WelockClient welockClient) {
         this.authService = authService;
+        this.welockClient = welockClient;
     }
 
     @GetMapping("/token")
@@ -27,4 +31,11 @@ public class WelockDebugController {
         map.put("refreshToken", authService.getRefreshToken());
         return map;
     }
+
+    // 📊 Latencia, errores y estado del circuito de Welock
+    @GetMapping("/metrics")
+    @PreAuthorize("hasRole('SUPERADMIN')")
+    public Map<String, Object> getWelockMetrics() {
+        return welockClient.getMetrics();
+    }
 }
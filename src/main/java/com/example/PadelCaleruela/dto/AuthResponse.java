@@ -15,4 +15,11 @@ public class AuthResponse {
     private String role; // 👈 IMPORTANTE
     private Long ayuntamientoId;
 
+    // 🔄 Para POST /auth/refresh (un solo uso: cada refresco devuelve otro)
+    private String refreshToken;
+
+    public AuthResponse(String token, Long userId, String username, String email, String role, Long ayuntamientoId) {
+        this(token, userId, username, email, role, ayuntamientoId, null);
+    }
+
 }
@@ -0,0 +1,13 @@
+package com.example.PadelCaleruela.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class BadgeCountsDTO {
+    private long notifications;       // no leídas
+    private long invitations;         // invitaciones a partida pendientes
+    private long leagueInvitations;   // invitaciones a liga pendientes
+    private long friendRequests;      // solicitudes de amistad pendientes
+}
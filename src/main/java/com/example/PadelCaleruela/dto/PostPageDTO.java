@@ -0,0 +1,15 @@
+package com.example.PadelCaleruela.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PostPageDTO {
+    private List<PostDTO> items;
+
+    // null cuando no hay más posts
+    private String nextCursor;
+}
@@ -0,0 +1,18 @@
+package com.example.PadelCaleruela.dto;
+
+import com.example.PadelCaleruela.model.ReservationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class SlotOccupancyDTO {
+    private Long reservationId;
+    private Long pistaId;
+    private Long userId;
+    private LocalDateTime startTime;
+    private ReservationStatus status;
+    private boolean isPublic;
+}
@@ -6,7 +6,12 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications", indexes = {
+        // Campana: por usuario, filtrando leídas y ordenando por fecha
+        @Index(name = "idx_notifications_user_read_created", columnList = "user_id, read_flag, created_at"),
+        // Job de retención
+        @Index(name = "idx_notifications_created", columnList = "created_at")
+})
 @Data
 public class Notification {
 
@@ -0,0 +1,6 @@
+package com.example.PadelCaleruela.model;
+
+public enum OutboxChannel {
+    PUSH,
+    EMAIL
+}
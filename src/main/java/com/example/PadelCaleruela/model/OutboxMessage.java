@@ -0,0 +1,55 @@
+package com.example.PadelCaleruela.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mensaje pendiente de enviar (push o email).
+ * Se escribe en la misma transacción que el cambio de negocio y lo envía
+ * OutboxRelay después del commit.
+ */
+@Entity
+@Data
+@Table(name = "notification_outbox", indexes = {
+        @Index(name = "idx_outbox_status_next", columnList = "status, next_attempt_at")
+})
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private OutboxChannel channel;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    private Long userId;        // PUSH → destinatario
+    private String recipient;   // EMAIL → dirección destino
+
+    private Long ayuntamientoId; // turnos de entrega por ayuntamiento (null = sin ayuntamiento)
+
+    private String title;       // título push / asunto email
+
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    // PUSH → tokens con fallo temporal en el último intento (uno por línea);
+    //        el reintento va solo a ellos. null = todos los del usuario
+    @Column(columnDefinition = "TEXT")
+    private String pendingTokens;
+
+    private int attempts = 0;
+
+    @Column(length = 500)
+    private String lastError;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+    private LocalDateTime sentAt;
+}
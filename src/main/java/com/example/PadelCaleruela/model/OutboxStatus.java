@@ -0,0 +1,7 @@
+package com.example.PadelCaleruela.model;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -7,7 +7,11 @@ import java.util.List;
 
 @Entity
 @Data
-@Table(name="posts")
+@Table(name="posts", indexes = {
+        // Paginación por clave (createdAt, id) en feeds y perfiles
+        @Index(name = "idx_posts_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_posts_ayto_created", columnList = "ayuntamiento_id, created_at, id")
+})
 public class Post {
 
     @Id
@@ -24,6 +28,11 @@ public class Post {
 
     private String imageUrl;
 
+    // ❤️ Contador desnormalizado: solo lo tocan los UPDATE atómicos de PostRepository
+    @Column(name = "like_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "bigint not null default 0")
+    private long likeCount;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="user_id")
     private User user;
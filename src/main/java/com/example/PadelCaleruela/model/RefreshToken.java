@@ -0,0 +1,50 @@
+package com.example.PadelCaleruela.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Refresh token de un dispositivo. Solo se guarda el hash SHA-256 del token.
+ * Cada uso lo consume y emite otro de la misma familia; si se presenta uno ya
+ * usado (robo o replay) se revoca la familia entera.
+ */
+@Entity
+@Data
+@Table(name = "refresh_tokens",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_refresh_tokens_hash",
+                columnNames = "token_hash"
+        ),
+        indexes = {
+                @Index(name = "idx_refresh_tokens_family", columnList = "family_id"),
+                @Index(name = "idx_refresh_tokens_user", columnList = "user_id"),
+                @Index(name = "idx_refresh_tokens_expires", columnList = "expires_at")
+        })
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Todos los tokens de una misma sesión/dispositivo comparten familia
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    // Caducidad absoluta de la familia: se fija en el login y se hereda en cada rotación
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    private LocalDateTime usedAt;
+
+    private boolean revoked = false;
+
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
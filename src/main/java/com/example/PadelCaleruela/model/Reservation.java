@@ -13,7 +13,10 @@ import java.util.Set;
 @Entity
 @Data
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-@Table(name = "reservations")
+@Table(name = "reservations", indexes = {
+        // Reconstrucción de los plazos de pago al arrancar
+        @Index(name = "idx_reservations_status_paid_created", columnList = "status, paid, created_at")
+})
 public class Reservation {
 
     @Id
@@ -70,6 +73,10 @@ public class Reservation {
     @JoinColumn(name = "pista_id")
     private Pista pista;
 
+    // 🔐 Alquiler de la generación de códigos Welock: mientras no caduque,
+    //    ninguna otra instancia (webhook o barrido) la genera a la vez
+    private LocalDateTime lockCodesLeaseUntil;
+
 
     @PrePersist
     public void prePersist() {
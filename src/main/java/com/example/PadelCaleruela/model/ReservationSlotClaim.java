@@ -0,0 +1,39 @@
+package com.example.PadelCaleruela.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reclamación de un slot (pista + hora de inicio) por una reserva activa.
+ * El unique (pista_id, start_time) es lo que impide la doble reserva:
+ * MySQL no tiene índices parciales, así que las canceladas liberan su fila.
+ */
+@Entity
+@Data
+@Table(name = "reservation_slot_claims",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_slot_claims_pista_start",
+                columnNames = {"pista_id", "start_time"}
+        ),
+        indexes = {
+                @Index(name = "idx_slot_claims_reservation", columnList = "reservation_id")
+        })
+public class ReservationSlotClaim {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "pista_id", nullable = false)
+    private Long pistaId;
+
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime startTime;
+
+    @Column(name = "reservation_id", nullable = false)
+    private Long reservationId;
+
+    private LocalDateTime createdAt;
+}
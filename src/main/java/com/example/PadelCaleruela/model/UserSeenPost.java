@@ -6,7 +6,9 @@ import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "user_seen_posts")
+@Table(name = "user_seen_posts", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_seen_posts_user_post", columnNames = {"user_id", "post_id"})
+})
 @Data
 public class UserSeenPost {
 
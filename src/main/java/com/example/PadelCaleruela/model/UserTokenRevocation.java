@@ -0,0 +1,25 @@
+package com.example.PadelCaleruela.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Último cambio de un usuario que invalida sus tokens emitidos antes (rol, estado,
+ * ayuntamiento, borrado...). Tabla aparte y sin FK: sobrevive al borrado del usuario
+ * y a los reinicios, y la cargan todas las instancias (ver TokenRevocations).
+ */
+@Entity
+@Data
+@Table(name = "user_token_revocations",
+        indexes = @Index(name = "idx_token_revocations_changed_at", columnList = "changed_at"))
+public class UserTokenRevocation {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
@@ -4,6 +4,8 @@ import com.example.PadelCaleruela.model.Ayuntamiento;
 import com.example.PadelCaleruela.model.Block;
 import com.example.PadelCaleruela.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -27,5 +29,18 @@ public interface BlockRepository extends JpaRepository<Block, Long> {
 
     boolean existsByBlockedByAyuntamientoAndBlockedUser(Ayuntamiento ayto, User blocked);
 
+    // 🔹 Todos los bloqueos en los que participa el usuario (como bloqueante o bloqueado)
+    //    Filas: [blockedByUserId, blockedByAyuntamientoId, blockedUserId]
+    @Query("""
+        SELECT bu.id, ba.id, b.blockedUser.id FROM Block b
+        LEFT JOIN b.blockedByUser bu
+        LEFT JOIN b.blockedByAyuntamiento ba
+        WHERE b.blockedUser.id = :userId OR bu.id = :userId
+    """)
+    List<Object[]> findBlockEdgesForUser(@Param("userId") Long userId);
+
+    @Query("SELECT b.blockedUser.id FROM Block b WHERE b.blockedByAyuntamiento.id = :ayuntamientoId")
+    List<Long> findBlockedUserIdsByAyuntamientoId(@Param("ayuntamientoId") Long ayuntamientoId);
+
 
 }
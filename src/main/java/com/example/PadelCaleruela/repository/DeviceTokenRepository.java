@@ -2,7 +2,12 @@ package com.example.PadelCaleruela.repository;
 
 import com.example.PadelCaleruela.model.DeviceToken;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +20,10 @@ public interface DeviceTokenRepository extends JpaRepository<DeviceToken, Long>
 
     List<DeviceToken> findByUserId(Long userId);
 
+    // 🧹 Borrado en bloque (tokens UNREGISTERED devueltos por FCM)
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM DeviceToken d WHERE d.token IN :tokens")
+    int deleteByTokenIn(@Param("tokens") Collection<String> tokens);
+
 }
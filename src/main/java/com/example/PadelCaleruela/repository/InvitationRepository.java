@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +20,17 @@ public interface InvitationRepository extends JpaRepository<Invitation, Long> {
     Optional<Invitation> findByReservationAndReceiver(Reservation reservation, User receiver);
     boolean existsByReservationIdAndReceiverId(Long reservationId, Long receiverId);
 
+    // 📨 Estado de las invitaciones de varias reservas: filas [reservationId, receiverId, status]
+    // (de la más antigua a la más reciente, para quedarse con la última por jugador)
+    @Query("""
+        SELECT i.reservation.id, i.receiver.id, i.status
+        FROM Invitation i
+        WHERE i.reservation.id IN :reservationIds
+          AND i.receiver IS NOT NULL
+        ORDER BY i.createdAt ASC, i.id ASC
+    """)
+    List<Object[]> findStatusRowsByReservationIds(@Param("reservationIds") Collection<Long> reservationIds);
+
     @Query("""
         SELECT COUNT(i)
         FROM Invitation i
@@ -27,6 +39,20 @@ public interface InvitationRepository extends JpaRepository<Invitation, Long> {
     """)
     long countPendingByUserId(@Param("userId") Long userId);
 
+    // 🔢 Pendientes cuyo emisor es del mismo ayuntamiento que el receptor (lo que ve el usuario)
+    @Query("""
+        SELECT COUNT(i)
+        FROM Invitation i
+        WHERE i.receiver.id = :userId
+          AND i.status = 'PENDING'
+          AND i.sender.ayuntamiento = i.receiver.ayuntamiento
+    """)
+    long countPendingSameAyuntamiento(@Param("userId") Long userId);
+
+    // Receptores de las invitaciones de una reserva (antes de borrarlas en bloque)
+    @Query("SELECT DISTINCT i.receiver.id FROM Invitation i WHERE i.reservation.id = :reservationId")
+    List<Long> findReceiverIdsByReservationId(@Param("reservationId") Long reservationId);
+
     // Última invitación PENDING de ese usuario para esa reserva (por si hubiese varias históricas)
     Optional<Invitation> findTopByReservation_IdAndReceiver_IdAndStatusOrderByIdDesc(
             Long reservationId,
@@ -6,6 +6,7 @@ import com.example.PadelCaleruela.model.LeagueInvitation;
 import com.example.PadelCaleruela.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -26,6 +27,20 @@ public interface LeagueInvitationRepository extends JpaRepository<LeagueInvitati
     // Número de invitaciones PENDIENTES de un usuario
     long countByReceiverIdAndStatus(Long receiverId, InvitationStatus status);
 
+    // 🔢 Pendientes cuyo emisor es del mismo ayuntamiento que el receptor
+    @Query("""
+        SELECT COUNT(i)
+        FROM LeagueInvitation i
+        WHERE i.receiver.id = :userId
+          AND i.status = com.example.PadelCaleruela.model.InvitationStatus.PENDING
+          AND i.sender.ayuntamiento = i.receiver.ayuntamiento
+    """)
+    long countPendingSameAyuntamiento(@Param("userId") Long userId);
+
+    // Receptores de las invitaciones de una liga (antes de borrarlas en bloque)
+    @Query("SELECT DISTINCT i.receiver.id FROM LeagueInvitation i WHERE i.league = :league")
+    List<Long> findReceiverIdsByLeague(@Param("league") League league);
+
 
     boolean existsByLeague_IdAndReceiver_Id(Long leagueId, Long receiverId);
 }
@@ -2,18 +2,38 @@ package com.example.PadelCaleruela.repository;
 
 import com.example.PadelCaleruela.model.Like;
 import com.example.PadelCaleruela.model.Post;
-import com.example.PadelCaleruela.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface LikeRepository extends JpaRepository<Like, Long> {
 
-    boolean existsByUserAndPost(User user, Post post);
+    List<Like> findByPost(Post post);
 
-    void deleteByUserAndPost(User user, Post post);
+    // ❤️ Like idempotente: el unique (user_id, post_id) descarta el duplicado.
+    // Devuelve 1 si se insertó, 0 si ya existía.
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO post_likes (user_id, post_id, created_at)
+        VALUES (:userId, :postId, NOW())
+    """, nativeQuery = true)
+    int insertIgnore(@Param("userId") Long userId, @Param("postId") Long postId);
 
-    long countByPost(Post post);
+    // 👎 Devuelve 1 si había like, 0 si no
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.user.id = :userId AND l.post.id = :postId")
+    int deleteByUserIdAndPostId(@Param("userId") Long userId, @Param("postId") Long postId);
 
-    List<Like> findByPost(Post post);
+    // 🔹 Posts (de la lista) a los que el usuario ya ha dado like
+    @Query("""
+        SELECT l.post.id FROM Like l
+        WHERE l.user.id = :userId
+          AND l.post.id IN :postIds
+    """)
+    List<Long> findLikedPostIds(@Param("userId") Long userId,
+                                @Param("postIds") Collection<Long> postIds);
 }
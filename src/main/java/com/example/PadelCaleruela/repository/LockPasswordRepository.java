@@ -2,6 +2,10 @@ package com.example.PadelCaleruela.repository;
 
 import com.example.PadelCaleruela.model.LockPassword;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -11,6 +15,15 @@ public interface LockPasswordRepository extends JpaRepository<LockPassword, Long
     List<LockPassword> findByReservationId(Long reservationId);
 
     List<LockPassword> findByLockId(Long lockId);
-    List<LockPassword> findAllByEndTimeBefore(LocalDateTime time);
+
+    // 🔹 Plazos de caducidad aún por llegar: filas [id, endTime]
+    @Query("SELECT lp.id, lp.endTime FROM LockPassword lp WHERE lp.endTime > :after")
+    List<Object[]> findExpiriesAfter(@Param("after") LocalDateTime after);
+
+    // 🧹 Las que caducaron mientras la app estaba parada
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LockPassword lp WHERE lp.endTime <= :before")
+    int deleteByEndTimeBefore(@Param("before") LocalDateTime before);
 
 }
@@ -2,7 +2,10 @@ package com.example.PadelCaleruela.repository;
 
 import com.example.PadelCaleruela.model.Lock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +18,8 @@ public interface LockRepository extends JpaRepository<Lock, Long> {
 
     List<Lock> findAllByPistaId(Long pistaId);
 
+    // 🔐 De las pistas indicadas, cuáles tienen al menos una cerradura
+    @Query("SELECT DISTINCT l.pista.id FROM Lock l WHERE l.pista.id IN :pistaIds")
+    List<Long> findPistaIdsWithLocks(@Param("pistaIds") Collection<Long> pistaIds);
+
 }
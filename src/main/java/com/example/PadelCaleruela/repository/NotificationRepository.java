@@ -1,18 +1,58 @@
 package com.example.PadelCaleruela.repository;
 
 import com.example.PadelCaleruela.model.Notification;
+import com.example.PadelCaleruela.model.NotificationType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
 
-    List<Notification> findByUserIdAndReadFlagFalseOrderByCreatedAtDesc(Long userId);
+    // 🔔 Página de notificaciones del usuario para un conjunto de tipos (normales / admin)
+    @Query("""
+        SELECT n FROM Notification n
+        WHERE n.userId = :userId
+          AND n.type IN :types
+        ORDER BY n.createdAt DESC, n.id DESC
+    """)
+    List<Notification> findPageByUserIdAndTypeIn(@Param("userId") Long userId,
+                                                 @Param("types") Collection<NotificationType> types,
+                                                 Pageable pageable);
 
-    List<Notification> findByUserIdOrderByCreatedAtDesc(Long userId);
+    // 🔔 Igual, pero solo las no leídas
+    @Query("""
+        SELECT n FROM Notification n
+        WHERE n.userId = :userId
+          AND n.type IN :types
+          AND n.readFlag = false
+        ORDER BY n.createdAt DESC, n.id DESC
+    """)
+    List<Notification> findUnreadPageByUserIdAndTypeIn(@Param("userId") Long userId,
+                                                       @Param("types") Collection<NotificationType> types,
+                                                       Pageable pageable);
 
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.userId = :userId AND n.readFlag = false")
     long countUnreadByUserId(Long userId);
 
+    @Modifying
+    @Query("UPDATE Notification n SET n.readFlag = true WHERE n.userId = :userId AND n.readFlag = false")
+    int markAllAsReadByUserId(@Param("userId") Long userId);
+
+    // 🧹 Retención: borrado por tramos (LIMIT) para no bloquear la tabla mucho rato
+    @Modifying
+    @Query(value = """
+        DELETE FROM notifications
+        WHERE created_at < :cutoff
+          AND read_flag = :readFlag
+        LIMIT :limit
+    """, nativeQuery = true)
+    int deleteChunkCreatedBefore(@Param("cutoff") LocalDateTime cutoff,
+                                 @Param("readFlag") boolean readFlag,
+                                 @Param("limit") int limit);
 }
@@ -0,0 +1,54 @@
+package com.example.PadelCaleruela.repository;
+
+import com.example.PadelCaleruela.model.OutboxMessage;
+import com.example.PadelCaleruela.model.OutboxStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    // 🔹 Ids del siguiente lote, repartido por turnos entre ayuntamientos:
+    //    el 1º de cada ayuntamiento, luego el 2º de cada uno... (sin bloquear)
+    @Query(value = """
+        SELECT t.id FROM (
+            SELECT o.id,
+                   ROW_NUMBER() OVER (PARTITION BY o.ayuntamiento_id ORDER BY o.id) AS turn
+            FROM notification_outbox o
+            WHERE o.status = 'PENDING'
+              AND o.next_attempt_at <= :now
+        ) t
+        ORDER BY t.turn, t.id
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<Long> findFairDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // 🔹 Bloquea esos mensajes si siguen pendientes.
+    //    FOR UPDATE SKIP LOCKED: varias instancias pueden drenar la tabla sin pisarse
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+        SELECT o FROM OutboxMessage o
+        WHERE o.id IN :ids
+          AND o.status = com.example.PadelCaleruela.model.OutboxStatus.PENDING
+          AND o.nextAttemptAt <= :now
+        ORDER BY o.id
+    """)
+    List<OutboxMessage> findDueForUpdateByIdIn(@Param("ids") Collection<Long> ids,
+                                               @Param("now") LocalDateTime now);
+
+    // 🧹 Limpieza de mensajes ya enviados
+    @Modifying
+    @Query("DELETE FROM OutboxMessage o WHERE o.status = :status AND o.createdAt < :before")
+    int deleteByStatusAndCreatedAtBefore(@Param("status") OutboxStatus status,
+                                         @Param("before") LocalDateTime before);
+}
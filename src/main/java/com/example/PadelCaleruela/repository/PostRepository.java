@@ -3,15 +3,42 @@ package com.example.PadelCaleruela.repository;
 
 import com.example.PadelCaleruela.model.Post;
 import com.example.PadelCaleruela.model.Visibility;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface PostRepository extends JpaRepository<Post, Long> {
 
+    // ❤️ Suma/resta atómica al contador de likes (sin leer el post)
+    @Modifying
+    @Query(value = """
+        UPDATE posts SET like_count = GREATEST(like_count + :delta, 0)
+        WHERE id = :postId
+    """, nativeQuery = true)
+    int addToLikeCount(@Param("postId") Long postId, @Param("delta") long delta);
+
+    // ❤️ Recalcula el contador desde post_likes (solo los posts desfasados)
+    @Modifying
+    @Query(value = """
+        UPDATE posts p
+        JOIN (SELECT p2.id AS post_id, COUNT(l.id) AS total
+              FROM posts p2 LEFT JOIN post_likes l ON l.post_id = p2.id
+              GROUP BY p2.id) c ON c.post_id = p.id
+        SET p.like_count = c.total
+        WHERE p.like_count <> c.total
+    """, nativeQuery = true)
+    int reconcileLikeCounts();
+
+    @Query("SELECT p.likeCount FROM Post p WHERE p.id = :postId")
+    Optional<Long> findLikeCountById(@Param("postId") Long postId);
+
     // 🔹 Posts públicos
     List<Post> findByVisibility(Visibility visibility);
 
@@ -32,21 +59,35 @@ public interface PostRepository extends JpaRepository<Post, Long> {
     """)
     List<Post> findFeedForUser(@Param("userId") Long userId);
 
+    // ======================================================
+    // 📜 Feeds paginados por clave (createdAt, id)
+    //    Devuelven los posts estrictamente anteriores al cursor
+    // ======================================================
+
     @Query("""
     SELECT p FROM Post p
+    JOIN FETCH p.user
     JOIN Friendship f ON
         (f.user.id = :userId AND f.friend.id = p.user.id)
         OR
         (f.friend.id = :userId AND f.user.id = p.user.id)
     WHERE f.status = com.example.PadelCaleruela.model.FriendshipStatus.ACCEPTED
+      AND p.visibility <> com.example.PadelCaleruela.model.Visibility.PRIVATE
       AND p.createdAt >= :minDate
-    ORDER BY p.createdAt DESC
+      AND (p.createdAt < :beforeCreatedAt
+           OR (p.createdAt = :beforeCreatedAt AND p.id < :beforeId))
+    ORDER BY p.createdAt DESC, p.id DESC
 """)
-    List<Post> findRecentFeedForUser(Long userId, LocalDateTime minDate);
+    List<Post> findRecentFeedForUser(@Param("userId") Long userId,
+                                     @Param("minDate") LocalDateTime minDate,
+                                     @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                     @Param("beforeId") Long beforeId,
+                                     Pageable pageable);
 
 
     @Query("""
     SELECT p FROM Post p
+    JOIN FETCH p.user
     WHERE p.visibility = com.example.PadelCaleruela.model.Visibility.PUBLIC
       AND p.ayuntamiento.id = :aytoId
       AND p.createdAt >= :minDate
@@ -61,21 +102,51 @@ public interface PostRepository extends JpaRepository<Post, Long> {
             WHERE (f.user.id = :userId OR f.friend.id = :userId)
               AND f.status = com.example.PadelCaleruela.model.FriendshipStatus.ACCEPTED
       )
-    ORDER BY p.createdAt DESC
+      AND (p.createdAt < :beforeCreatedAt
+           OR (p.createdAt = :beforeCreatedAt AND p.id < :beforeId))
+    ORDER BY p.createdAt DESC, p.id DESC
 """)
     List<Post> findRecentPublicPostsNotFollowed(
-            Long userId,
-            Long aytoId,
-            LocalDateTime minDate
+            @Param("userId") Long userId,
+            @Param("aytoId") Long aytoId,
+            @Param("minDate") LocalDateTime minDate,
+            @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+            @Param("beforeId") Long beforeId,
+            Pageable pageable
     );
 
+    // 🔹 Posts de un timeline materializado (con su autor ya cargado)
+    @Query("SELECT p FROM Post p JOIN FETCH p.user WHERE p.id IN :ids")
+    List<Post> findAllWithUserByIdIn(@Param("ids") Collection<Long> ids);
 
-
-    // Usado en feed: ya tendrás una query que mezcla amigos + propios + etc.
-
-    List<Post> findByUserId(Long userId);
-
-    List<Post> findByUserIdAndCreatedAtGreaterThanEqual(Long userId, LocalDateTime createdAfter);
-
+    // 🔹 Posts propios recientes con una visibilidad concreta (para mezclar en los feeds)
+    @Query("""
+    SELECT p FROM Post p
+    WHERE p.user.id = :userId
+      AND p.visibility = :visibility
+      AND p.createdAt >= :minDate
+      AND (p.createdAt < :beforeCreatedAt
+           OR (p.createdAt = :beforeCreatedAt AND p.id < :beforeId))
+    ORDER BY p.createdAt DESC, p.id DESC
+""")
+    List<Post> findRecentByUserIdAndVisibility(@Param("userId") Long userId,
+                                               @Param("visibility") Visibility visibility,
+                                               @Param("minDate") LocalDateTime minDate,
+                                               @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                                               @Param("beforeId") Long beforeId,
+                                               Pageable pageable);
+
+    // 🔹 Historial de un usuario (perfil)
+    @Query("""
+    SELECT p FROM Post p
+    WHERE p.user.id = :userId
+      AND (p.createdAt < :beforeCreatedAt
+           OR (p.createdAt = :beforeCreatedAt AND p.id < :beforeId))
+    ORDER BY p.createdAt DESC, p.id DESC
+""")
+    List<Post> findByUserId(@Param("userId") Long userId,
+                            @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt,
+                            @Param("beforeId") Long beforeId,
+                            Pageable pageable);
 
 }
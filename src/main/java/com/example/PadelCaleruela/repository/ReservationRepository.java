@@ -1,23 +1,39 @@
 package com.example.PadelCaleruela.repository;
 
+import com.example.PadelCaleruela.dto.SlotOccupancyDTO;
 import com.example.PadelCaleruela.model.Reservation;
 import com.example.PadelCaleruela.model.ReservationStatus;
 import com.example.PadelCaleruela.model.User;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
 
+    @EntityGraph(attributePaths = {"user", "pista", "ayuntamiento"})
     List<Reservation> findByStartTimeBetweenAndAyuntamientoId(
             LocalDateTime start, LocalDateTime end, Long ayuntamientoId);
-    @Query("SELECT r FROM Reservation r WHERE r.isPublic = true AND r.startTime > :now AND r.ayuntamiento.id = :ayId")
-    List<Reservation> findPublicAvailableReservationsByAyuntamiento(LocalDateTime now, Long ayId);
+    @EntityGraph(attributePaths = {"user", "pista", "ayuntamiento"})
+    @Query("""
+        SELECT r FROM Reservation r
+        WHERE r.isPublic = true
+          AND (r.status = 'PENDING' OR r.status = 'CONFIRMED')
+          AND r.startTime > :now
+          AND r.ayuntamiento.id = :ayId
+    """)
+    List<Reservation> findPublicAvailableReservationsByAyuntamiento(@Param("now") LocalDateTime now,
+                                                                    @Param("ayId") Long ayId);
     List<Reservation> findByAyuntamientoId(Long ayuntamientoId);
     @Query("SELECT r FROM Reservation r WHERE r.pista.id = :pistaId AND DATE(r.startTime) = :date")
     List<Reservation> findByPistaIdAndDate(Long pistaId, LocalDate date);
@@ -44,16 +60,49 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
 
 
 
+    @EntityGraph(attributePaths = {"user", "pista", "ayuntamiento"})
     List<Reservation> findByUserOrderByStartTimeDesc(User user);
+
+    // 🔹 Reservas con creador, pista y ayuntamiento en la misma consulta
+    @EntityGraph(attributePaths = {"user", "pista", "ayuntamiento"})
+    @Query("SELECT r FROM Reservation r WHERE r.id IN :ids")
+    List<Reservation> findAllWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // 👥 Jugadores de varias reservas en una consulta plana:
+    // filas [reservationId, userId, username, fullName, email, profileImageUrl, status]
+    @Query("""
+        SELECT r.id, j.id, j.username, j.fullName, j.email, j.profileImageUrl, j.status
+        FROM Reservation r
+        JOIN r.jugadores j
+        WHERE r.id IN :ids
+    """)
+    List<Object[]> findPlayerRowsByReservationIds(@Param("ids") Collection<Long> ids);
     Optional<Reservation> findFirstByStartTimeAndStatusNotAndIsPublicTrue(
             LocalDateTime startTime, ReservationStatus status);
 
-    @Query("SELECT r FROM Reservation r WHERE r.paid = false AND r.createdAt < :limit AND r.status = com.example.PadelCaleruela.model.ReservationStatus.PENDING")
-    List<Reservation> findByPaidFalseAndCreatedAtBefore(@Param("limit") LocalDateTime limit);
+    // 🔹 Plazos de pago pendientes: filas [id, createdAt] (índice status + paid + created_at)
+    @Query("""
+        SELECT r.id, r.createdAt FROM Reservation r
+        WHERE r.status = com.example.PadelCaleruela.model.ReservationStatus.PENDING
+          AND r.paid = false
+    """)
+    List<Object[]> findUnpaidPendingDeadlines();
+
+    // 🔹 Impagadas cuyo plazo ya venció (red de seguridad del barrido)
+    @Query("""
+        SELECT r.id FROM Reservation r
+        WHERE r.status = com.example.PadelCaleruela.model.ReservationStatus.PENDING
+          AND r.paid = false
+          AND r.createdAt < :before
+        ORDER BY r.createdAt
+    """)
+    List<Long> findOverdueUnpaidIds(@Param("before") LocalDateTime before,
+                                    org.springframework.data.domain.Pageable pageable);
 
     // Buscar por usuario y estado
     List<Reservation> findByUser_IdAndStatus(Long userId, ReservationStatus status);
 
+    @EntityGraph(attributePaths = {"user", "pista", "ayuntamiento"})
     List<Reservation> findByStartTimeBetween(LocalDateTime start, LocalDateTime end);
 
     @Query("""
@@ -78,6 +127,7 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     @Query("SELECT r FROM Reservation r WHERE r.id IN :ids AND r.status = :status")
     List<Reservation> findByIdInAndStatus(@Param("ids") List<Long> ids, @Param("status") ReservationStatus status);
 
+    @EntityGraph(attributePaths = {"user", "pista", "ayuntamiento"})
     @Query("SELECT r FROM Reservation r " +
             "WHERE r.isPublic = true " +
             "AND (r.status = 'PENDING' OR r.status = 'CONFIRMED') " +
@@ -87,11 +137,57 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
     List<Reservation> findByUser_IdAndStatusOrderByCreatedAtDesc(Long userId, ReservationStatus status);
     List<Reservation> findByIdInAndStatusOrderByCreatedAtDesc(List<Long> ids, ReservationStatus status);
 
-    List<Reservation> findByPaidFalseAndStatusAndCreatedAtBetween(
-            ReservationStatus status,
-            LocalDateTime start,
-            LocalDateTime end
-    );
+
+    // Ocupación ligera de un día (sin cargar entidades) para el índice de slots
+    @Query("""
+    SELECT new com.example.PadelCaleruela.dto.SlotOccupancyDTO(
+        r.id,
+        r.pista.id,
+        r.user.id,
+        r.startTime,
+        r.status,
+        r.isPublic
+    )
+    FROM Reservation r
+    WHERE r.ayuntamiento.id = :ayId
+    AND r.pista IS NOT NULL
+    AND r.startTime >= :start
+    AND r.startTime < :end
+    AND r.status <> com.example.PadelCaleruela.model.ReservationStatus.CANCELED
+    """)
+    List<SlotOccupancyDTO> findSlotOccupancy(@Param("ayId") Long ayId,
+                                             @Param("start") LocalDateTime start,
+                                             @Param("end") LocalDateTime end);
+
+    // 🔐 Bloquea la reserva para generar sus códigos si nadie la tiene alquilada.
+    //    FOR UPDATE SKIP LOCKED: si otra instancia la está reclamando, vacío
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+    SELECT r FROM Reservation r
+    WHERE r.id = :id
+    AND (r.lockCodesLeaseUntil IS NULL OR r.lockCodesLeaseUntil <= :now)
+    """)
+    Optional<Reservation> findForLockCodesLease(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // 🔐 Reservas confirmadas y sin terminar a las que les falta la clave de alguna cerradura
+    @Query("""
+    SELECT r.id FROM Reservation r
+    WHERE r.status = com.example.PadelCaleruela.model.ReservationStatus.CONFIRMED
+    AND r.endTime > :now
+    AND (r.lockCodesLeaseUntil IS NULL OR r.lockCodesLeaseUntil <= :now)
+    AND EXISTS (
+        SELECT l.id FROM Lock l
+        WHERE l.pista = r.pista
+        AND NOT EXISTS (
+            SELECT lp.id FROM LockPassword lp
+            WHERE lp.reservation = r AND lp.lock = l
+        )
+    )
+    ORDER BY r.startTime
+    """)
+    List<Long> findConfirmedIdsMissingLockPasswords(@Param("now") LocalDateTime now,
+                                                     org.springframework.data.domain.Pageable pageable);
 
 
 
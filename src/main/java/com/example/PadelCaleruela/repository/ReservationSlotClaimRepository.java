@@ -0,0 +1,73 @@
+package com.example.PadelCaleruela.repository;
+
+import com.example.PadelCaleruela.model.ReservationSlotClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface ReservationSlotClaimRepository extends JpaRepository<ReservationSlotClaim, Long> {
+
+    // 🎯 Reclamar el slot: inserta la fila o, si ya existe, se queda con su lock X
+    //    (espera al commit de quien la insertó). Sin DELETE previo → sin gap locks
+    //    que provoquen deadlocks entre creaciones simultáneas del mismo slot.
+    @Modifying
+    @Query(value = """
+        INSERT INTO reservation_slot_claims (pista_id, start_time, reservation_id, created_at)
+        VALUES (:pistaId, :startTime, :reservationId, NOW())
+        ON DUPLICATE KEY UPDATE reservation_id = reservation_id
+    """, nativeQuery = true)
+    int insertOrLockClaim(@Param("pistaId") Long pistaId,
+                          @Param("startTime") LocalDateTime startTime,
+                          @Param("reservationId") Long reservationId);
+
+    // Dueño actual del slot (lectura con lock: ve lo último confirmado, no la foto de la transacción)
+    @Query(value = """
+        SELECT reservation_id FROM reservation_slot_claims
+        WHERE pista_id = :pistaId AND start_time = :startTime
+        FOR UPDATE
+    """, nativeQuery = true)
+    Long findClaimOwnerForUpdate(@Param("pistaId") Long pistaId,
+                                 @Param("startTime") LocalDateTime startTime);
+
+    // ¿Sigue activa la reserva dueña? (también lectura con lock)
+    @Query(value = """
+        SELECT COUNT(*) FROM reservations
+        WHERE id = :reservationId AND status <> 'CANCELED'
+        LOCK IN SHARE MODE
+    """, nativeQuery = true)
+    long countActiveReservationLocked(@Param("reservationId") Long reservationId);
+
+    // El dueño estaba cancelado o borrado: el slot pasa a la nueva reserva
+    @Modifying
+    @Query(value = """
+        UPDATE reservation_slot_claims
+        SET reservation_id = :reservationId, created_at = NOW()
+        WHERE pista_id = :pistaId AND start_time = :startTime
+    """, nativeQuery = true)
+    int reassignClaim(@Param("pistaId") Long pistaId,
+                      @Param("startTime") LocalDateTime startTime,
+                      @Param("reservationId") Long reservationId);
+
+    @Modifying
+    @Query("DELETE FROM ReservationSlotClaim c WHERE c.reservationId = :reservationId")
+    int deleteByReservationId(@Param("reservationId") Long reservationId);
+
+    // Reclamaciones de las reservas activas futuras que aún no tengan la suya
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO reservation_slot_claims (pista_id, start_time, reservation_id, created_at)
+        SELECT r.pista_id, r.start_time, r.id, NOW()
+        FROM reservations r
+        WHERE r.status <> 'CANCELED'
+          AND r.pista_id IS NOT NULL
+          AND r.start_time >= :from
+    """, nativeQuery = true)
+    int backfillActiveClaims(@Param("from") LocalDateTime from);
+
+    @Modifying
+    @Query("DELETE FROM ReservationSlotClaim c WHERE c.startTime < :before")
+    int deleteByStartTimeBefore(@Param("before") LocalDateTime before);
+}
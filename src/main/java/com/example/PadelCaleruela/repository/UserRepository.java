@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,5 +34,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findByAyuntamientoId(Long ayuntamientoId);
 
+    // 🔹 Datos mínimos de remitentes (notificaciones): cada fila es [id, username, profileImageUrl]
+    @Query("SELECT u.id, u.username, u.profileImageUrl FROM User u WHERE u.id IN :ids")
+    List<Object[]> findSenderInfoByIdIn(@Param("ids") Collection<Long> ids);
+
 
 }
@@ -0,0 +1,32 @@
+package com.example.PadelCaleruela.repository;
+
+import com.example.PadelCaleruela.model.UserTokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserTokenRevocationRepository extends JpaRepository<UserTokenRevocation, Long> {
+
+    // 🔐 Apunta el cambio (o lo adelanta si ya había uno); va en la transacción del cambio
+    @Modifying
+    @Transactional
+    @Query(value = """
+        INSERT INTO user_token_revocations (user_id, changed_at)
+        VALUES (:userId, :changedAt)
+        ON DUPLICATE KEY UPDATE changed_at = GREATEST(changed_at, VALUES(changed_at))
+    """, nativeQuery = true)
+    int upsert(@Param("userId") Long userId, @Param("changedAt") LocalDateTime changedAt);
+
+    // Cambios recientes (arranque y sincronización entre instancias)
+    List<UserTokenRevocation> findByChangedAtAfter(LocalDateTime after);
+
+    // 🧹 Cambios más viejos que cualquier token vigente
+    @Modifying
+    @Transactional
+    int deleteByChangedAtBefore(LocalDateTime before);
+}
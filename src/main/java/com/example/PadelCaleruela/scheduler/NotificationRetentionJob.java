@@ -0,0 +1,64 @@
+package com.example.PadelCaleruela.scheduler;
+
+import com.example.PadelCaleruela.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+/**
+ * Retención de notificaciones: cada noche borra las leídas antiguas y, con un
+ * plazo mayor, también las no leídas. Se borra por tramos pequeños, cada uno
+ * en su propia transacción, para no bloquear la campana mientras tanto.
+ */
+@Component
+public class NotificationRetentionJob {
+
+    private static final int CHUNK_SIZE = 5_000;
+
+    private final NotificationRepository notificationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.notifications.retention-days.read:90}")
+    private int readRetentionDays;
+
+    @Value("${app.notifications.retention-days.unread:365}")
+    private int unreadRetentionDays;
+
+    public NotificationRetentionJob(NotificationRepository notificationRepository,
+                                    TransactionTemplate transactionTemplate) {
+        this.notificationRepository = notificationRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Todos los días a las 3:45.
+     */
+    @Scheduled(cron = "0 45 3 * * *")
+    public void purgeOldNotifications() {
+        LocalDateTime now = LocalDateTime.now();
+
+        int read = purge(now.minusDays(readRetentionDays), true);
+        int unread = purge(now.minusDays(unreadRetentionDays), false);
+
+        if (read + unread > 0) {
+            System.out.println("🧹 Notificaciones eliminadas: " + read + " leídas, " + unread + " no leídas");
+        }
+    }
+
+    private int purge(LocalDateTime cutoff, boolean readFlag) {
+        int total = 0;
+        int deleted;
+
+        do {
+            Integer chunk = transactionTemplate.execute(status ->
+                    notificationRepository.deleteChunkCreatedBefore(cutoff, readFlag, CHUNK_SIZE));
+            deleted = (chunk == null) ? 0 : chunk;
+            total += deleted;
+        } while (deleted == CHUNK_SIZE);
+
+        return total;
+    }
+}
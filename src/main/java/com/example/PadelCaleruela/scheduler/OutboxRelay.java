@@ -0,0 +1,217 @@
+package com.example.PadelCaleruela.scheduler;
+
+import com.example.PadelCaleruela.model.OutboxChannel;
+import com.example.PadelCaleruela.model.OutboxMessage;
+import com.example.PadelCaleruela.model.OutboxStatus;
+import com.example.PadelCaleruela.repository.OutboxMessageRepository;
+import com.example.PadelCaleruela.service.EmailService;
+import com.example.PadelCaleruela.service.NotificationService;
+import com.example.PadelCaleruela.service.UserNotificationService;
+import com.example.PadelCaleruela.util.TenantFairExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Relay del outbox: recoge los mensajes pendientes por lotes y los entrega a
+ * UserNotificationService (push, esperando la respuesta de FCM) y EmailService (email).
+ *
+ * Entrega al menos una vez, sin transacciones largas:
+ *  1️⃣ reclamar: transacción corta que "alquila" los mensajes (nextAttemptAt = ahora + LEASE)
+ *  2️⃣ entregar: fuera de transacción, en el executor por ayuntamiento, sin bloquear el @Scheduled
+ *  3️⃣ registrar: cuando acaba cada entrega, otra transacción corta guarda el resultado
+ * Mientras una entrega sigue en curso su mensaje no vuelve a salir; si la instancia cae,
+ * el alquiler caduca y el mensaje se reintenta. Un fallo se reintenta con backoff y
+ * tras MAX_ATTEMPTS queda en FAILED.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 6;
+    private static final int SENT_RETENTION_DAYS = 7;
+    // Más que lo que puede tardar una entrega (timeouts SMTP/FCM)
+    private static final int LEASE_MINUTES = 10;
+
+    private final OutboxMessageRepository outboxRepository;
+    private final UserNotificationService userNotificationService;
+    private final EmailService emailService;
+    private final TenantFairExecutor notificationExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    public OutboxRelay(OutboxMessageRepository outboxRepository,
+                       UserNotificationService userNotificationService,
+                       EmailService emailService,
+                       TenantFairExecutor notificationExecutor,
+                       TransactionTemplate transactionTemplate) {
+        this.outboxRepository = outboxRepository;
+        this.userNotificationService = userNotificationService;
+        this.emailService = emailService;
+        this.notificationExecutor = notificationExecutor;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Cada segundo: reclama un lote y lanza las entregas sin esperarlas.
+     * El lote se reparte por turnos entre ayuntamientos y las entregas van en paralelo
+     * (hilos virtuales, ver AsyncConfig); cada una guarda su resultado al terminar.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void relay() {
+        List<OutboxMessage> batch = transactionTemplate.execute(status -> claim(LocalDateTime.now()));
+        if (batch == null || batch.isEmpty()) return;
+
+        // Push: una tarea por mensaje. Email: una tarea por ayuntamiento que los
+        // manda en sesiones SMTP compartidas (EmailService.deliverHtmlEmails)
+        Map<Long, List<OutboxMessage>> emailsByAyuntamiento = new LinkedHashMap<>();
+
+        for (OutboxMessage m : batch) {
+            if (m.getChannel() == OutboxChannel.EMAIL) {
+                emailsByAyuntamiento.computeIfAbsent(m.getAyuntamientoId(), k -> new ArrayList<>()).add(m);
+                continue;
+            }
+            submit(m.getAyuntamientoId(), List.of(m), () -> {
+                userNotificationService.deliver(m.getUserId(), m.getTitle(), m.getBody(),
+                        splitTokens(m.getPendingTokens()));
+                return Map.of();
+            });
+        }
+
+        emailsByAyuntamiento.forEach((ayuntamientoId, emails) ->
+                submit(ayuntamientoId, emails, () -> emailService.deliverHtmlEmails(
+                        emails.stream()
+                                .map(m -> new EmailService.OutgoingEmail(m.getId(), m.getRecipient(), m.getTitle(), m.getBody()))
+                                .toList()
+                )));
+    }
+
+    // 1️⃣ Bloquea los mensajes vencidos (SKIP LOCKED) y los alquila; al salir quedan desligados
+    private List<OutboxMessage> claim(LocalDateTime now) {
+        List<Long> ids = outboxRepository.findFairDueIds(now, BATCH_SIZE);
+        if (ids.isEmpty()) return List.of();
+
+        List<OutboxMessage> batch = outboxRepository.findDueForUpdateByIdIn(ids, now);
+        for (OutboxMessage m : batch) {
+            m.setNextAttemptAt(now.plusMinutes(LEASE_MINUTES));
+        }
+        return batch;
+    }
+
+    /**
+     * 2️⃣ Encola una tarea de entrega para uno o varios mensajes. La tarea devuelve los
+     * errores por id de mensaje. Si la cola del ayuntamiento está llena, se devuelve
+     * el alquiler y los mensajes entran en otra vuelta.
+     */
+    private void submit(Long ayuntamientoId,
+                        List<OutboxMessage> messages,
+                        Callable<Map<Long, ? extends Exception>> task) {
+
+        CompletableFuture<Map<Long, ? extends Exception>> delivery;
+        try {
+            delivery = notificationExecutor.supply(ayuntamientoId, task);
+        } catch (RejectedExecutionException e) {
+            release(messages);
+            return;
+        }
+
+        // 3️⃣ Solo cuando la entrega ha terminado de verdad (nunca por un timeout propio)
+        delivery.whenComplete((errors, taskError) -> record(messages, errors, taskError));
+    }
+
+    private void record(List<OutboxMessage> messages, Map<Long, ? extends Exception> errors, Throwable taskError) {
+        Throwable failure = taskError instanceof CompletionException && taskError.getCause() != null
+                ? taskError.getCause()
+                : taskError;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+
+                for (OutboxMessage m : outboxRepository.findAllById(messages.stream().map(OutboxMessage::getId).toList())) {
+                    Throwable error = failure != null ? failure : errors.get(m.getId());
+                    m.setAttempts(m.getAttempts() + 1);
+
+                    if (error == null) {
+                        m.setStatus(OutboxStatus.SENT);
+                        m.setSentAt(now);
+                        m.setLastError(null);
+
+                    } else if (error instanceof IllegalArgumentException) {
+                        // Datos inválidos (p.ej. email mal formado): reintentar no sirve
+                        fail(m, error);
+
+                    } else if (m.getAttempts() >= MAX_ATTEMPTS) {
+                        fail(m, error);
+
+                    } else {
+                        // Push a medias: el siguiente intento va solo a los tokens que fallaron
+                        if (error instanceof NotificationService.PartialPushException partial) {
+                            m.setPendingTokens(String.join("\n", partial.getRetryTokens()));
+                        }
+                        // Backoff exponencial: 2, 4, 8, 16, 32 minutos
+                        m.setNextAttemptAt(now.plusMinutes(1L << m.getAttempts()));
+                        m.setLastError(truncate(error.getMessage()));
+                    }
+                }
+            });
+        } catch (Exception e) {
+            // Sin resultado guardado el alquiler caduca y se reintenta (al menos una vez)
+            System.err.println("⚠ Outbox: no se pudo guardar el resultado de " + messages.size()
+                    + " mensajes: " + e.getMessage());
+        }
+    }
+
+    // Cola llena: devolvemos el alquiler sin gastar intento
+    private void release(List<OutboxMessage> messages) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                outboxRepository.findAllById(messages.stream().map(OutboxMessage::getId).toList())
+                        .forEach(m -> m.setNextAttemptAt(now));
+            });
+        } catch (Exception e) {
+            System.err.println("⚠ Outbox: no se pudo liberar el lote rechazado: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 🧹 Cada noche: borra los mensajes enviados hace más de una semana.
+     */
+    @Scheduled(cron = "0 30 4 * * *")
+    @Transactional
+    public void purgeSent() {
+        int deleted = outboxRepository.deleteByStatusAndCreatedAtBefore(
+                OutboxStatus.SENT,
+                LocalDateTime.now().minusDays(SENT_RETENTION_DAYS)
+        );
+
+        if (deleted > 0) {
+            System.out.println("🧹 Outbox: " + deleted + " mensajes enviados eliminados");
+        }
+    }
+
+    private void fail(OutboxMessage m, Throwable e) {
+        m.setStatus(OutboxStatus.FAILED);
+        m.setLastError(truncate(e.getMessage()));
+        System.out.println("⚠ Outbox: mensaje " + m.getId() + " (" + m.getChannel() + ") descartado: " + e.getMessage());
+    }
+
+    private static Set<String> splitTokens(String pendingTokens) {
+        if (pendingTokens == null || pendingTokens.isBlank()) return null;
+        return Set.copyOf(List.of(pendingTokens.split("\n")));
+    }
+
+    private static String truncate(String s) {
+        if (s == null) return null;
+        return s.length() > 500 ? s.substring(0, 500) : s;
+    }
+}
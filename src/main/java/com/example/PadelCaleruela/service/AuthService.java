@@ -5,7 +5,9 @@ import com.example.PadelCaleruela.dto.UserDTO;
 import com.example.PadelCaleruela.dto.UserRegister;
 import com.example.PadelCaleruela.model.*;
 import com.example.PadelCaleruela.repository.UserRepository;
+import com.example.PadelCaleruela.AuthenticatedPrincipal;
 import com.example.PadelCaleruela.CustomUserDetails;
+import io.jsonwebtoken.Claims;
 import jakarta.mail.MessagingException;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +19,8 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -36,6 +40,11 @@ public class AuthService {
     private final AyuntamientoService ayuntamientoService;
     private final NotificationFactory notificationFactory;
     private final NotificationAppService notificationAppService;
+    private final PrincipalCache principalCache;
+    private final RefreshTokenService refreshTokenService;
+
+    // Atributo de petición donde se guarda el principal ya resuelto
+    private static final String PRINCIPAL_ATTR = AuthService.class.getName() + ".principal";
 
     /** 🔹 Registro de usuario */
     public AuthResponse register(UserRegister dto) {
@@ -65,11 +74,11 @@ public class AuthService {
         user.setAyuntamiento(ayuntamiento);
         userRepository.save(user);
         System.out.println("Parte 5");
-        emailService.sendHtmlEmail(
+        emailService.sendTemplate(
                 user.getEmail(),
                 "Registro completado",
-                "<h3>¡Hola " + user.getUsername() + "!</h3>" +
-                        "<p>Bienvenido a la mejor aplicación de pádel del mundo 🎾.</p>"
+                EmailTemplates.Template.REGISTRO,
+                EmailTemplates.vars("usuario", user.getUsername())
         );
         System.out.println("Parte 2");
 
@@ -103,7 +112,7 @@ public class AuthService {
         var userDetails = new CustomUserDetails(user);
         var token = jwtService.generateToken(userDetails);
 
-        return new AuthResponse(
+        AuthResponse response = new AuthResponse(
                 token,
                 user.getId(),
                 user.getUsername(),
@@ -111,6 +120,8 @@ public class AuthService {
                 user.getRole().name(),
                 ayuntamiento.getId()
         );
+        response.setRefreshToken(refreshTokenService.issue(user.getId()));
+        return response;
 
 
     }
@@ -123,8 +134,7 @@ public class AuthService {
             return null;
         }
 
-        CustomUserDetails user = (CustomUserDetails) auth.getPrincipal();
-        return user.getAyuntamientoId();
+        return getCurrentPrincipal().ayuntamientoId();
     }
 
 
@@ -141,6 +151,33 @@ public class AuthService {
         var user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado"));
 
+        AuthResponse response = buildAuthResponse(user);
+        response.setRefreshToken(refreshTokenService.issue(user.getId()));
+        return response;
+    }
+
+    /**
+     * 🔄 Renueva el JWT con un refresh token (sin contraseña ni BCrypt).
+     * El refresh token se consume y se devuelve uno nuevo de la misma familia.
+     */
+    public AuthResponse refresh(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+
+        // Datos actuales del usuario: rol/ayuntamiento nuevos entran en el token
+        var user = userRepository.findById(rotation.userId())
+                .orElseThrow(() -> new InvalidRefreshTokenException("Usuario no encontrado"));
+
+        AuthResponse response = buildAuthResponse(user);
+        response.setRefreshToken(rotation.refreshToken());
+        return response;
+    }
+
+    /** 🚪 Logout del dispositivo: invalida su refresh token (y los de su familia). */
+    public void logout(String refreshToken) {
+        refreshTokenService.revoke(refreshToken);
+    }
+
+    private AuthResponse buildAuthResponse(User user) {
         var userDetails = new CustomUserDetails(user);
         var token = jwtService.generateToken(userDetails);
 
@@ -163,6 +200,33 @@ public class AuthService {
 
 
     public User getCurrentUser() {
+        // Por id: dentro de la misma petición lo sirve la caché de primer nivel de JPA
+        return userRepository.findById(getCurrentPrincipal().id())
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+    }
+
+    /**
+     * Principal del usuario autenticado (id, rol, ayuntamiento, estado).
+     * Se resuelve una sola vez por petición y se apoya en {@link PrincipalCache},
+     * así que las comprobaciones de permisos no consultan la BD.
+     */
+    public AuthenticatedPrincipal getCurrentPrincipal() {
+        RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+
+        if (attrs != null
+                && attrs.getAttribute(PRINCIPAL_ATTR, RequestAttributes.SCOPE_REQUEST) instanceof AuthenticatedPrincipal p) {
+            return p;
+        }
+
+        AuthenticatedPrincipal principal = resolvePrincipal();
+
+        if (attrs != null) {
+            attrs.setAttribute(PRINCIPAL_ATTR, principal, RequestAttributes.SCOPE_REQUEST);
+        }
+        return principal;
+    }
+
+    private AuthenticatedPrincipal resolvePrincipal() {
         var auth = SecurityContextHolder.getContext().getAuthentication();
 
         if (auth == null || !auth.isAuthenticated()) {
@@ -170,18 +234,32 @@ public class AuthService {
         }
 
         Object principal = auth.getPrincipal();
+        Long userId;
 
-        // ✔️ Caso 1: UserDetails (lo más común)
-        if (principal instanceof org.springframework.security.core.userdetails.UserDetails ud) {
-            return userRepository.findByUsernameOrEmail(ud.getUsername())
-                    .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        // ✔️ Caso 0: principal construido por JwtAuthenticationFilter (sin BD)
+        if (principal instanceof AuthenticatedPrincipal p) {
+            return p;
         }
 
-        // ✔️ Caso 2: JWT donde el "name" es email/username/sub
-        String key = auth.getName();  // email, username o subject
+        // ✔️ Caso 1: nuestro UserDetails (ya trae el id)
+        if (principal instanceof CustomUserDetails cud) {
+            userId = cud.getUser().getId();
+        } else {
+            // ✔️ Caso 2: JWT donde el "name" es email/username/sub
+            String key = principal instanceof org.springframework.security.core.userdetails.UserDetails ud
+                    ? ud.getUsername()
+                    : auth.getName();
+
+            userId = userRepository.findByUsernameOrEmail(key)
+                    .map(User::getId)
+                    .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        }
 
-        return userRepository.findByUsernameOrEmail(key)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        AuthenticatedPrincipal resolved = principalCache.get(userId);
+        if (resolved == null) {
+            throw new RuntimeException("Usuario no encontrado");
+        }
+        return resolved;
     }
 
     public Long getAyuntamientoIdFromJwt(HttpServletRequest request) {
@@ -192,41 +270,43 @@ public class AuthService {
             return null;
         }
 
-        String token = authHeader.substring(7);
+        // Claims ya verificados por JwtAuthenticationFilter (si no, se verifica aquí)
+        Claims claims = request.getAttribute(JwtService.CLAIMS_ATTR) instanceof Claims c
+                ? c
+                : jwtService.verify(authHeader.substring(7));
 
-        // <- Usa tu servicio JWT actual
-        return jwtService.extractClaim(token, claims -> claims.get("ayuntamientoId", Long.class));
+        return claims.get("ayuntamientoId", Long.class);
     }
 
 
     public boolean isSuperAdmin() {
-        return getCurrentUser().getRole() == Role.SUPERADMIN;
+        return getCurrentPrincipal().role() == Role.SUPERADMIN;
     }
 
     public boolean isAdmin() {
-        return getCurrentUser().getRole() == Role.ADMIN;
+        return getCurrentPrincipal().role() == Role.ADMIN;
     }
 
     public boolean isUser() {
-        return getCurrentUser().getRole() == Role.USER;
+        return getCurrentPrincipal().role() == Role.USER;
     }
 
     public void ensureSameAyuntamiento(User targetUser) {
-        User current = getCurrentUser();
+        AuthenticatedPrincipal current = getCurrentPrincipal();
 
         // superadmin puede saltarse esta regla
-        if (current.getRole() == Role.SUPERADMIN) return;
+        if (current.role() == Role.SUPERADMIN) return;
 
-        if (!Objects.equals(current.getAyuntamiento().getId(), targetUser.getAyuntamiento().getId())) {
+        if (!Objects.equals(current.ayuntamientoId(), targetUser.getAyuntamiento().getId())) {
             throw new AccessDeniedException("No tienes permisos para acceder a este usuario de otro ayuntamiento");
         }
     }
 
     public void ensureSameAyuntamiento(Ayuntamiento ayuntamiento) {
-        User current = getCurrentUser();
-        if (current.getRole() == Role.SUPERADMIN) return;
+        AuthenticatedPrincipal current = getCurrentPrincipal();
+        if (current.role() == Role.SUPERADMIN) return;
 
-        if (!Objects.equals(current.getAyuntamiento().getId(), ayuntamiento.getId())) {
+        if (!Objects.equals(current.ayuntamientoId(), ayuntamiento.getId())) {
             throw new AccessDeniedException("No tienes permiso para acceder a datos de otro ayuntamiento");
         }
     }
@@ -1,5 +1,6 @@
 package com.example.PadelCaleruela.service;
 
+import com.example.PadelCaleruela.AuthenticatedPrincipal;
 import com.example.PadelCaleruela.AppProperties;
 import com.example.PadelCaleruela.dto.*;
 import com.example.PadelCaleruela.model.*;
@@ -8,7 +9,6 @@ import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -41,13 +41,16 @@ public class AyuntamientoService {
 
     private final BlockRepository blockRepository;
     private final AppProperties appProperties; // contiene baseUrl
+    private final PricingService pricingService;
+    private final PrincipalCache principalCache;
 
 
 
     public AyuntamientoService(AyuntamientoRepository repo, TarifaFranjaRepository franjaRepo,
                                PistaRepository pistaRepo, TarifaRepository tarifaRepo,
                                UserRepository userRepository, PasswordEncoder passwordEncoder,
-                               EmailService emailService,BlockRepository blockRepository,AppProperties appProperties){
+                               EmailService emailService,BlockRepository blockRepository,AppProperties appProperties,
+                               PricingService pricingService, PrincipalCache principalCache){
         this.repo=repo;
         this.franjaRepo=franjaRepo;
         this.pistaRepo=pistaRepo;
@@ -57,6 +60,8 @@ public class AyuntamientoService {
         this.emailService=emailService;
         this.appProperties=appProperties;
         this.blockRepository=blockRepository;
+        this.pricingService=pricingService;
+        this.principalCache=principalCache;
     }
 
     public Ayuntamiento findByCodigoPostal(String cp) {
@@ -189,29 +194,15 @@ public class AyuntamientoService {
         // ---------------------------------------------------------
         // 7️⃣ Enviar email con las credenciales
         // ---------------------------------------------------------
-        String html = """
-            <html>
-            <body>
-                <h2>Bienvenido a BoostPlay 🎾</h2>
-                <p>Se ha creado su ayuntamiento: <b>%s</b></p>
-                <p>Estas son sus credenciales de acceso:</p>
-                <ul>
-                    <li><b>Correo:</b> %s</li>
-                    <li><b>Contraseña:</b> %s</li>
-                </ul>
-                <p>Puede cambiar la contraseña desde la app.</p>
-            </body>
-            </html>
-            """.formatted(
-                saved.getNombre(),
-                admin.getEmail(),
-                rawPassword
-        );
-
-        emailService.sendHtmlEmail(
+        emailService.sendTemplate(
                 saved.getEmail(),
                 "Acceso administrador a BoosPlay",
-                html
+                EmailTemplates.Template.AYUNTAMIENTO_CREADO,
+                EmailTemplates.vars(
+                        "ayuntamiento", saved.getNombre(),
+                        "email", admin.getEmail(),
+                        "password", rawPassword
+                )
         );
 
         return saved;
@@ -224,20 +215,14 @@ public class AyuntamientoService {
                                                            ActualizarAytoYTarifaDTO dto,
                                                            MultipartFile image) {
 
-        com.example.PadelCaleruela.CustomUserDetails cud = (com.example.PadelCaleruela.CustomUserDetails) SecurityContextHolder.getContext()
-                .getAuthentication()
-                .getPrincipal();
-
-        User currentUser = cud.getUser();
+        AuthenticatedPrincipal currentUser = currentPrincipal();
 
 
         // ⭐ SUPERADMIN → todo permitido
-        if (currentUser.getRole().equals(Role.ADMIN)) {
+        if (currentUser.role() == Role.ADMIN) {
 
             // ADMIN → solo puede actualizar SU ayuntamiento
-            Long adminAytoId = currentUser.getAyuntamiento().getId();
-
-            if (!adminAytoId.equals(id)) {
+            if (!id.equals(currentUser.ayuntamientoId())) {
                 throw new AccessDeniedException(
                         "No puedes modificar un ayuntamiento que no es el tuyo."
                 );
@@ -274,6 +259,7 @@ public class AyuntamientoService {
         if (dto.getPrecioBase() != null) {
             tarifa.setPrecioBase(dto.getPrecioBase());
             tarifaRepo.save(tarifa);
+            pricingService.invalidate(id);
         }
 
         return mapToUpdteDTO(a, tarifa.getPrecioBase());
@@ -284,24 +270,20 @@ public class AyuntamientoService {
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPERADMIN')")
     public AyuntamientoDTO getAyuntamientoById(Long id) {
 
-        com.example.PadelCaleruela.CustomUserDetails cud = (com.example.PadelCaleruela.CustomUserDetails) SecurityContextHolder.getContext()
-                .getAuthentication()
-                .getPrincipal();
-
-        User currentUser = cud.getUser(); // tu getter
+        AuthenticatedPrincipal currentUser = currentPrincipal();
 
 
         Ayuntamiento ayto = repo.findById(id)
                 .orElseThrow(() -> new RuntimeException("Ayuntamiento no encontrado"));
 
         // SUPERADMIN → puede ver cualquier ayuntamiento
-        if (currentUser.getRole() == Role.SUPERADMIN) {
+        if (currentUser.role() == Role.SUPERADMIN) {
             return mapToDTO(ayto);
         }
 
         // ADMIN → solo si es su ayuntamiento
-        if (currentUser.getRole() == Role.ADMIN &&
-                !currentUser.getAyuntamiento().getId().equals(id)) {
+        if (currentUser.role() == Role.ADMIN &&
+                !id.equals(currentUser.ayuntamientoId())) {
             throw new SecurityException("No puedes ver este ayuntamiento");
         }
 
@@ -375,7 +357,9 @@ public class AyuntamientoService {
         fr.setAyuntamiento(ayuntamiento);
         updateEntityFromDTO(fr, dto);
 
-        return toDTO(franjaRepo.save(fr));
+        TarifaFranjaDTO saved = toDTO(franjaRepo.save(fr));
+        pricingService.invalidate(ayuntamientoId);
+        return saved;
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPERADMIN')")
@@ -423,7 +407,9 @@ public class AyuntamientoService {
 
         updateEntityFromDTO(franja, dto);
 
-        return toDTO(franjaRepo.save(franja));
+        TarifaFranjaDTO saved = toDTO(franjaRepo.save(franja));
+        pricingService.invalidate(ayuntamientoId);
+        return saved;
     }
 
 
@@ -441,19 +427,18 @@ public class AyuntamientoService {
         }
 
         franjaRepo.delete(franja);
+        pricingService.invalidate(ayuntamientoId);
     }
 
 
     private Ayuntamiento validatePermissions(Long ayuntamientoId) {
-        User currentUser = (User) SecurityContextHolder.getContext()
-                .getAuthentication()
-                .getPrincipal();
+        AuthenticatedPrincipal currentUser = currentPrincipal();
 
         Ayuntamiento a = repo.findById(ayuntamientoId)
                 .orElseThrow(() -> new RuntimeException("Ayuntamiento no encontrado"));
 
-        if (currentUser.getRole() == Role.ADMIN &&
-                !currentUser.getAyuntamiento().getId().equals(ayuntamientoId)) {
+        if (currentUser.role() == Role.ADMIN &&
+                !ayuntamientoId.equals(currentUser.ayuntamientoId())) {
 
             throw new SecurityException("No tienes permisos para modificar este ayuntamiento");
         }
@@ -523,6 +508,7 @@ public class AyuntamientoService {
         t.setPrecioBase(new BigDecimal(dto.getPrecioBase()));
 
         tarifaRepo.save(t);
+        pricingService.invalidate(ayuntamientoId);
         return mapToDTO(t);
     }
 
@@ -533,6 +519,7 @@ public class AyuntamientoService {
 
         t.setPrecioBase(new BigDecimal(dto.getPrecioBase()));
         tarifaRepo.save(t);
+        pricingService.invalidate(ayuntamientoId);
 
         return mapToDTO(t);
     }
@@ -548,6 +535,7 @@ public class AyuntamientoService {
         for (User u : usuarios) {
             u.setAyuntamiento(neutral);
             u.setRole(Role.USER);
+            principalCache.evict(u.getId());
         }
 
         userRepository.saveAll(usuarios);
@@ -634,4 +622,11 @@ public class AyuntamientoService {
         fr.setPrecio(dto.getPrecio());
     }
 
+    private AuthenticatedPrincipal currentPrincipal() {
+        AuthenticatedPrincipal current = AuthenticatedPrincipal.current();
+        if (current == null) {
+            throw new AccessDeniedException("Usuario no autenticado");
+        }
+        return current;
+    }
 }
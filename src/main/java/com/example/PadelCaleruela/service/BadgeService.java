@@ -0,0 +1,190 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.dto.BadgeCountsDTO;
+import com.example.PadelCaleruela.repository.FriendshipRepository;
+import com.example.PadelCaleruela.repository.InvitationRepository;
+import com.example.PadelCaleruela.repository.LeagueInvitationRepository;
+import com.example.PadelCaleruela.repository.NotificationRepository;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import com.example.PadelCaleruela.util.TtlCache;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Contadores de la app (campana, invitaciones, ligas, amistad) en memoria por usuario.
+ * Los servicios llaman a changed(userId) al crear o resolver notificaciones,
+ * invitaciones y solicitudes; tras el commit se recalculan (4 COUNT) y se
+ * envían por SSE a los clientes conectados. Un cliente inactivo no genera consultas.
+ * Los cambios hechos en otra instancia los cubre el TTL (lecturas) y, para los
+ * clientes conectados, un recálculo periódico que solo envía si algo ha cambiado.
+ */
+@Service
+public class BadgeService {
+
+    private static final long STREAM_TIMEOUT_MS = Duration.ofMinutes(30).toMillis();
+    private static final Duration COUNTS_TTL = Duration.ofMinutes(10);
+    private static final long RESYNC_MS = 60_000;
+
+    private final NotificationRepository notificationRepository;
+    private final InvitationRepository invitationRepository;
+    private final LeagueInvitationRepository leagueInvitationRepository;
+    private final FriendshipRepository friendshipRepository;
+
+    private final TtlCache<Long, BadgeCountsDTO> counts = new TtlCache<>(50_000, COUNTS_TTL);
+    private final Map<Long, Set<SseEmitter>> streams = new ConcurrentHashMap<>();
+    // Último valor enviado a cada usuario conectado (para no repetir envíos iguales)
+    private final Map<Long, BadgeCountsDTO> lastSent = new ConcurrentHashMap<>();
+
+    public BadgeService(NotificationRepository notificationRepository,
+                        InvitationRepository invitationRepository,
+                        LeagueInvitationRepository leagueInvitationRepository,
+                        FriendshipRepository friendshipRepository) {
+        this.notificationRepository = notificationRepository;
+        this.invitationRepository = invitationRepository;
+        this.leagueInvitationRepository = leagueInvitationRepository;
+        this.friendshipRepository = friendshipRepository;
+    }
+
+    // ======================================================
+    // 🔢 Lectura
+    // ======================================================
+
+    public BadgeCountsDTO get(Long userId) {
+        return counts.computeIfAbsent(userId, this::load);
+    }
+
+    private BadgeCountsDTO load(Long userId) {
+        return new BadgeCountsDTO(
+                notificationRepository.countUnreadByUserId(userId),
+                invitationRepository.countPendingSameAyuntamiento(userId),
+                leagueInvitationRepository.countPendingSameAyuntamiento(userId),
+                friendshipRepository.countPendingByUserId(userId)
+        );
+    }
+
+    // ======================================================
+    // ✏️ Cambios (llamar desde los servicios)
+    // ======================================================
+
+    /** Algo que afecta a los contadores del usuario ha cambiado. */
+    public void changed(Long userId) {
+        if (userId == null) return;
+        TransactionUtils.afterCommit(() -> refresh(userId));
+    }
+
+    public void changedAll(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) return;
+        TransactionUtils.afterCommit(() -> userIds.forEach(this::refresh));
+    }
+
+    private void refresh(Long userId) {
+        counts.invalidate(userId);
+
+        // Solo se recalcula si hay alguien escuchando; si no, en la próxima lectura
+        if (streams.containsKey(userId)) {
+            push(userId, get(userId));
+        }
+    }
+
+    // ======================================================
+    // 📡 SSE
+    // ======================================================
+
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+
+        streams.computeIfAbsent(userId, id -> new CopyOnWriteArraySet<>()).add(emitter);
+
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(() -> remove(userId, emitter));
+        emitter.onError(e -> remove(userId, emitter));
+
+        // Estado inicial nada más conectar
+        BadgeCountsDTO badges = get(userId);
+        lastSent.put(userId, badges);
+        send(userId, emitter, badges);
+
+        return emitter;
+    }
+
+    /**
+     * Latido cada 25 s: mantiene viva la conexión en proxies y detecta clientes caídos.
+     * No toca la BD.
+     */
+    @Scheduled(fixedRate = 25_000)
+    public void heartbeat() {
+        streams.forEach((userId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (IOException | IllegalStateException e) {
+                    remove(userId, emitter);
+                }
+            }
+        });
+    }
+
+    /**
+     * 🔁 Cada minuto: recalcula los contadores de los usuarios conectados y envía
+     * los que han cambiado. Recoge lo que se ha escrito en otra instancia (su
+     * changed() solo avisa a sus propios clientes) sin esperar al TTL.
+     */
+    @Scheduled(fixedDelay = RESYNC_MS, initialDelay = RESYNC_MS)
+    public void resyncConnected() {
+        for (Long userId : streams.keySet()) {
+            try {
+                counts.invalidate(userId);
+                BadgeCountsDTO badges = get(userId);
+                if (!badges.equals(lastSent.get(userId))) {
+                    push(userId, badges);
+                }
+            } catch (Exception e) {
+                System.err.println("⚠️ Error recalculando contadores del usuario " + userId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Conexiones abiertas (para métricas) */
+    public int connectedStreams() {
+        return streams.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void push(Long userId, BadgeCountsDTO badges) {
+        Set<SseEmitter> emitters = streams.get(userId);
+        if (emitters == null) return;
+
+        lastSent.put(userId, badges);
+        for (SseEmitter emitter : emitters) {
+            send(userId, emitter, badges);
+        }
+    }
+
+    private void send(Long userId, SseEmitter emitter, BadgeCountsDTO badges) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("badges")
+                    .data(badges, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            remove(userId, emitter);
+        }
+    }
+
+    private void remove(Long userId, SseEmitter emitter) {
+        streams.computeIfPresent(userId, (id, emitters) -> {
+            emitters.remove(emitter);
+            if (!emitters.isEmpty()) return emitters;
+            lastSent.remove(id);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.model.User;
+import com.example.PadelCaleruela.repository.BlockRepository;
+import com.example.PadelCaleruela.util.LongIdSet;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import com.example.PadelCaleruela.util.TtlCache;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grafo de bloqueos en memoria.
+ *  - Por usuario: a quién bloquea, quién le bloquea y qué ayuntamientos le bloquean
+ *  - Por ayuntamiento: usuarios bloqueados
+ * Cada entrada se carga con una sola consulta y BlockService la invalida
+ * (tras el commit) al bloquear o desbloquear.
+ */
+@Component
+public class BlockGraphService {
+
+    private static final int MAX_USERS = 20_000;
+    private static final int MAX_AYUNTAMIENTOS = 1_000;
+
+    // Por si otra instancia bloquea/desbloquea: una entrada se recarga pasado este tiempo
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final BlockRepository blockRepository;
+
+    private final TtlCache<Long, UserBlocks> users = new TtlCache<>(MAX_USERS, TTL);
+    private final TtlCache<Long, LongIdSet> ayuntamientos = new TtlCache<>(MAX_AYUNTAMIENTOS, TTL);
+
+    public BlockGraphService(BlockRepository blockRepository) {
+        this.blockRepository = blockRepository;
+    }
+
+    private record UserBlocks(LongIdSet blocking, LongIdSet blockedBy, LongIdSet blockedByAyuntamientos) {}
+
+    /**
+     * Bloqueos vistos desde un usuario concreto (incluye los de su ayuntamiento).
+     * Se obtiene una vez por petición y se consulta en memoria para cada candidato.
+     */
+    public record BlockView(LongIdSet blocking,
+                            LongIdSet blockedBy,
+                            LongIdSet blockedByAyuntamientos,
+                            LongIdSet blockedByMyAyuntamiento) {
+
+        // Yo he bloqueado a este usuario
+        public boolean iBlock(Long userId) {
+            return blocking.contains(userId);
+        }
+
+        // Este usuario me ha bloqueado
+        public boolean blocksMe(Long userId) {
+            return blockedBy.contains(userId);
+        }
+
+        // Este ayuntamiento me ha bloqueado
+        public boolean ayuntamientoBlocksMe(Long ayuntamientoId) {
+            return blockedByAyuntamientos.contains(ayuntamientoId);
+        }
+
+        // Mi ayuntamiento ha bloqueado a este usuario
+        public boolean myAyuntamientoBlocks(Long userId) {
+            return blockedByMyAyuntamiento.contains(userId);
+        }
+
+        /** Cualquiera de los cuatro bloqueos oculta al usuario. */
+        public boolean hides(Long userId, Long ayuntamientoId) {
+            return iBlock(userId)
+                    || blocksMe(userId)
+                    || ayuntamientoBlocksMe(ayuntamientoId)
+                    || myAyuntamientoBlocks(userId);
+        }
+    }
+
+    // ======================================================
+    // 🔍 Lectura
+    // ======================================================
+
+    public BlockView viewFor(User user) {
+        UserBlocks mine = users.computeIfAbsent(user.getId(), this::loadUser);
+
+        LongIdSet byMyAyuntamiento = user.getAyuntamiento() != null
+                ? blockedByAyuntamiento(user.getAyuntamiento().getId())
+                : LongIdSet.EMPTY;
+
+        return new BlockView(mine.blocking(), mine.blockedBy(), mine.blockedByAyuntamientos(), byMyAyuntamiento);
+    }
+
+    public LongIdSet blockedByAyuntamiento(Long ayuntamientoId) {
+        return ayuntamientos.computeIfAbsent(ayuntamientoId,
+                id -> LongIdSet.of(blockRepository.findBlockedUserIdsByAyuntamientoId(id)));
+    }
+
+    private UserBlocks loadUser(Long userId) {
+        List<Long> blocking = new ArrayList<>();
+        List<Long> blockedBy = new ArrayList<>();
+        List<Long> blockedByAyuntamientos = new ArrayList<>();
+
+        // Filas: [blockedByUserId, blockedByAyuntamientoId, blockedUserId]
+        for (Object[] row : blockRepository.findBlockEdgesForUser(userId)) {
+            Long byUser = (Long) row[0];
+            Long byAyto = (Long) row[1];
+            Long blocked = (Long) row[2];
+
+            if (userId.equals(byUser)) {
+                blocking.add(blocked);
+            } else if (userId.equals(blocked)) {
+                if (byUser != null) blockedBy.add(byUser);
+                if (byAyto != null) blockedByAyuntamientos.add(byAyto);
+            }
+        }
+
+        return new UserBlocks(
+                LongIdSet.of(blocking),
+                LongIdSet.of(blockedBy),
+                LongIdSet.of(blockedByAyuntamientos)
+        );
+    }
+
+    // ======================================================
+    // ✏️ Invalidación (la llama BlockService tras el commit)
+    // ======================================================
+
+    public void onUserBlockChanged(Long blockerId, Long blockedId) {
+        TransactionUtils.afterCommit(() -> {
+            users.invalidate(blockerId);
+            users.invalidate(blockedId);
+        });
+    }
+
+    public void onAyuntamientoBlockChanged(Long ayuntamientoId, Long blockedId) {
+        TransactionUtils.afterCommit(() -> {
+            ayuntamientos.invalidate(ayuntamientoId);
+            users.invalidate(blockedId);
+        });
+    }
+}
@@ -19,6 +19,9 @@ public class BlockService {
     private final AyuntamientoRepository ayuntamientoRepository;
     private final UserRepository userRepository;
     private final FriendshipRepository friendshipRepository;
+    private final FeedTimelineStore timelineStore;
+    private final BlockGraphService blockGraph;
+    private final PrincipalCache principalCache;
 
     @Transactional
     public void bloquearUsuarioDesdeAyuntamiento(Ayuntamiento ayuntamiento, User usuario) {
@@ -33,6 +36,7 @@ public class BlockService {
         block.setBlockedUser(usuario);
         block.setBlockedByAyuntamiento(ayuntamiento);
         blockRepository.save(block);
+        blockGraph.onAyuntamientoBlockChanged(ayuntamiento.getId(), usuario.getId());
 
         // 3. Asignar al usuario al ayuntamiento con ID 99999
         Ayuntamiento fakeAyto = ayuntamientoRepository.findByCodigoPostal("99999")
@@ -42,6 +46,7 @@ public class BlockService {
 
         // 4. Guardar usuario actualizado
         userRepository.save(usuario);
+        principalCache.evict(usuario.getId());
     }
 
 
@@ -68,6 +73,7 @@ public class BlockService {
 
             if (friendship.getStatus() == FriendshipStatus.ACCEPTED) {
                 friendshipRepository.delete(friendship);
+                timelineStore.onFriendshipRemoved(bloqueante.getId(), bloqueado.getId());
             }
         }
 
@@ -78,6 +84,7 @@ public class BlockService {
         block.setBlockedUser(bloqueado);
         block.setBlockedByUser(bloqueante);
         blockRepository.save(block);
+        blockGraph.onUserBlockChanged(bloqueante.getId(), bloqueado.getId());
     }
 
 
@@ -87,6 +94,7 @@ public class BlockService {
     @Transactional
     public void desbloquearUsuarioDesdeUsuario(Long bloqueanteId, Long bloqueadoId) {
         blockRepository.deleteByBlockedByUser_IdAndBlockedUser_Id(bloqueanteId, bloqueadoId);
+        blockGraph.onUserBlockChanged(bloqueanteId, bloqueadoId);
     }
 
 
@@ -96,5 +104,6 @@ public class BlockService {
     @Transactional
     public void desbloquearUsuarioDesdeAyuntamiento(Long ayuntamientoId, Long bloqueadoId) {
         blockRepository.deleteByBlockedByAyuntamiento_IdAndBlockedUser_Id(ayuntamientoId, bloqueadoId);
+        blockGraph.onAyuntamientoBlockChanged(ayuntamientoId, bloqueadoId);
     }
 }
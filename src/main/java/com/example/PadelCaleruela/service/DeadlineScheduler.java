@@ -0,0 +1,93 @@
+package com.example.PadelCaleruela.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planificador de plazos en memoria (cola de prioridad por instante de disparo).
+ * Cada plazo tiene una clave ("reservation-cancel:42"...) para poder
+ * reprogramarlo o anularlo. Se pierde al reiniciar: cada dueño lo reconstruye
+ * desde BD al arrancar.
+ */
+@Component
+public class DeadlineScheduler {
+
+    private static final int THREADS = 2;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<String, Deadline> pending = new ConcurrentHashMap<>();
+
+    /** Un plazo concreto: la identidad permite quitarlo del mapa sin pisar a uno más nuevo. */
+    private static final class Deadline {
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = future;
+            if (f != null) f.cancel(false);
+        }
+    }
+
+    public DeadlineScheduler() {
+        this.executor = new ScheduledThreadPoolExecutor(
+                THREADS,
+                Thread.ofPlatform().name("deadline-", 0).daemon().factory()
+        );
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /** Programa (o reprograma) la tarea para el instante indicado. Si ya pasó, se ejecuta ya. */
+    public void schedule(String key, LocalDateTime at, Runnable task) {
+        long delayMs = Math.max(0, Duration.between(LocalDateTime.now(), at).toMillis());
+
+        Deadline deadline = new Deadline();
+        Deadline previous = pending.put(key, deadline);
+        if (previous != null) previous.cancel();
+
+        deadline.future = executor.schedule(() -> run(key, deadline, task), delayMs, TimeUnit.MILLISECONDS);
+        if (deadline.cancelled) deadline.future.cancel(false); // cancelado mientras se programaba
+    }
+
+    /** Igual que schedule, pero no toca un plazo que aún no se haya disparado. */
+    public void scheduleIfAbsent(String key, LocalDateTime at, Runnable task) {
+        if (pending.containsKey(key)) return;
+
+        schedule(key, at, task);
+    }
+
+    public void cancel(String key) {
+        Deadline deadline = pending.remove(key);
+        if (deadline != null) deadline.cancel();
+    }
+
+    /** Plazos programados que aún no se han disparado. */
+    public int size() {
+        return pending.size();
+    }
+
+    private void run(String key, Deadline deadline, Runnable task) {
+        // Al dispararse deja de estar pendiente (solo si nadie lo ha sustituido ya)
+        pending.remove(key, deadline);
+        if (deadline.cancelled) return;
+
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.err.println("⚠ Error ejecutando plazo " + key + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package com.example.PadelCaleruela.service;
 
+import com.example.PadelCaleruela.util.RateLimiter;
 import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Year;
+import java.util.*;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -18,6 +25,8 @@ import java.util.regex.Pattern;
 public class EmailService {
 
     private final JavaMailSender mailSender;
+    private final OutboxService outboxService;
+    private final EmailTemplates templates;
 
     @Value("${app.mail.from}")
     private String from;
@@ -33,8 +42,31 @@ public class EmailService {
             Pattern.compile("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
 
 
-    public EmailService(JavaMailSender mailSender) {
+    // 🌟 URL DEL LOGO (cabecera de todos los emails)
+    private static final String LOGO_URL =
+            "http://192.168.1.62:8080/uploads/posts/2/b8321976-0677-408f-a041-7f69d06d5a21_LogoBoostPlay.jpg";
+
+    // Máximo que espera una tanda por el límite de ritmo antes de devolverse al outbox
+    private static final Duration MAX_RATE_WAIT = Duration.ofSeconds(10);
+
+    /** Correo pendiente de envío; el id es el del mensaje del outbox. */
+    public record OutgoingEmail(Long id, String to, String subject, String htmlContent) {}
+
+    // Límite de ritmo del proveedor SMTP (p.ej. Gmail corta si se envía en ráfaga)
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+
+    public EmailService(JavaMailSender mailSender,
+                        OutboxService outboxService,
+                        EmailTemplates templates,
+                        @Value("${app.mail.rate-per-second:5}") double ratePerSecond,
+                        @Value("${app.mail.burst:20}") int burst,
+                        @Value("${app.mail.batch-size:20}") int batchSize) {
         this.mailSender = mailSender;
+        this.outboxService = outboxService;
+        this.templates = templates;
+        this.rateLimiter = new RateLimiter(ratePerSecond, burst);
+        this.batchSize = Math.max(1, Math.min(batchSize, burst));
     }
 
     // ======================================================
@@ -84,67 +116,164 @@ public class EmailService {
 
 
     // ======================================================
-    // EMAIL HTML (asíncrono seguro)
+    // EMAIL HTML (vía outbox)
     // ======================================================
 
-    @Async
+    /**
+     * Encola el email en el outbox dentro de la transacción actual.
+     * Lo envía OutboxRelay tras el commit (con reintentos).
+     */
     public void sendHtmlEmail(String to, String subject, String htmlContent) {
-        validateEmail(to);
-        validateHtml(htmlContent);
+        try {
+            validateEmail(to);
+            validateHtml(htmlContent);
+        } catch (IllegalArgumentException ex) {
+            // Como cuando el envío era @Async: el llamador no se entera, solo se registra
+            log.error("❌ Email HTML descartado para {}: {}", to, ex.getMessage());
+            return;
+        }
 
+        outboxService.enqueueEmail(to, subject, htmlContent);
+    }
+
+    /**
+     * Renderiza una plantilla de EmailTemplates y la encola como email HTML.
+     * Punto de entrada común para todos los emails transaccionales.
+     */
+    public void sendTemplate(String to, String subject, EmailTemplates.Template template, Map<String, ?> vars) {
+        sendHtmlEmail(to, subject, templates.render(template, vars));
+    }
+
+    /**
+     * Envío síncrono real por SMTP de un solo correo; lanza excepción si falla.
+     */
+    public void deliverHtmlEmail(String to, String subject, String htmlContent) {
+        RuntimeException error = deliverHtmlEmails(List.of(new OutgoingEmail(0L, to, subject, htmlContent))).get(0L);
+        if (error != null) throw error;
+    }
+
+    /**
+     * Envío síncrono por SMTP de varios correos. Lo usa OutboxRelay.
+     * Cada tanda de hasta {@code batchSize} correos va por una única conexión SMTP
+     * (un solo handshake/login) y respeta el límite de ritmo del proveedor.
+     *
+     * @return errores por id del correo (vacío si todo salió bien). Un
+     *         IllegalArgumentException indica que reintentar no sirve.
+     */
+    public Map<Long, RuntimeException> deliverHtmlEmails(List<OutgoingEmail> emails) {
+        Map<Long, RuntimeException> failures = new HashMap<>();
+
+        for (int i = 0; i < emails.size(); i += batchSize) {
+            sendSession(emails.subList(i, Math.min(i + batchSize, emails.size())), failures);
+        }
+        return failures;
+    }
+
+    private void sendSession(List<OutgoingEmail> emails, Map<Long, RuntimeException> failures) {
+
+        // 1️⃣ Construir mensajes (los inválidos se descartan sin tocar el SMTP)
+        Map<MimeMessage, Long> ids = new IdentityHashMap<>();
+        List<MimeMessage> messages = new ArrayList<>();
+
+        for (OutgoingEmail email : emails) {
+            try {
+                MimeMessage message = buildHtmlMessage(email);
+                ids.put(message, email.id());
+                messages.add(message);
+            } catch (IllegalArgumentException ex) {
+                failures.put(email.id(), ex);
+            } catch (MessagingException ex) {
+                log.error("❌ Error preparando email HTML para {}: {}", email.to(), ex.getMessage());
+                failures.put(email.id(), new IllegalArgumentException("No se pudo preparar el correo HTML."));
+            }
+        }
+        if (messages.isEmpty()) return;
+
+        // 2️⃣ Límite de ritmo del proveedor
         try {
-            MimeMessage mimeMessage = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-
-            helper.setFrom(String.format("%s <%s>", fromName, from));
-            helper.setTo(to);
-            helper.setSubject(subject);
-
-            // 🌟 URL DEL LOGO (como me diste)
-            String logoUrl = "http://192.168.1.62:8080/uploads/posts/2/b8321976-0677-408f-a041-7f69d06d5a21_LogoBoostPlay.jpg";
-
-            // ===============================
-            // ✨ TEMPLATE PROFESIONAL
-            // ===============================
-            String emailTemplate = """
-                <div style="font-family: Arial, Helvetica, sans-serif; background-color: #f6f8fb; padding: 30px;">
-                
-                    <div style="max-width: 600px; margin: auto; background: #ffffff; border-radius: 12px;
-                                box-shadow: 0 4px 12px rgba(0,0,0,0.1); overflow: hidden;">
-                                
-                        <!-- HEADER -->
-                        <div style="background: #111827; padding: 20px; text-align: center;">
-                            <img src="%s" alt="BoostPlay" style="max-height: 70px; border-radius: 8px;" />
-                        </div>
-
-                        <!-- CONTENT -->
-                        <div style="padding: 30px; font-size: 16px; color: #333;">
-                            %s
-                        </div>
-
-                        <!-- FOOTER -->
-                        <div style="background: #f1f5f9; padding: 20px; text-align: center; font-size: 13px; color: #6b7280;">
-                            <p style="margin: 0; font-weight: bold; color: #111827;">BoostPlay</p>
-                            <p style="margin: 5px 0;">El motor que impulsa tu comunidad deportiva.</p>
-                            <p style="margin: 5px 0;">📧 boostplay4@gmail.com</p>
-                            <p style="font-size: 12px; color: #94a3b8; margin-top: 10px;">
-                                © %d BoostPlay. Todos los derechos reservados.
-                            </p>
-                        </div>
-                    </div>
-                </div>
-                """.formatted(logoUrl, htmlContent, java.time.Year.now().getValue());
-
-            helper.setText(emailTemplate, true);
-
-            mailSender.send(mimeMessage);
-
-            log.info("📨 Email HTML enviado a {}", to);
-
-        } catch (MessagingException | MailException ex) {
-            log.error("❌ Error enviando email HTML a {}: {}", to, ex.getMessage());
-            throw new RuntimeException("No se pudo enviar el correo HTML.");
+            if (!rateLimiter.acquire(messages.size(), MAX_RATE_WAIT)) {
+                failAll(ids, failures, "Límite de envío del proveedor SMTP alcanzado.");
+                return;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failAll(ids, failures, "Envío de correo interrumpido.");
+            return;
         }
+
+        // 3️⃣ Una sola conexión SMTP para toda la tanda
+        try {
+            mailSender.send(messages.toArray(MimeMessage[]::new));
+            log.info("📨 {} email(s) HTML enviados en una sesión SMTP", messages.size());
+
+        } catch (MailSendException ex) {
+            Map<Object, Exception> failed = ex.getFailedMessages();
+            if (failed.isEmpty()) {
+                log.error("❌ Error en sesión SMTP ({} emails): {}", messages.size(), ex.getMessage());
+                failAll(ids, failures, "No se pudo enviar el correo HTML.");
+                return;
+            }
+
+            failed.forEach((message, cause) -> {
+                Long id = ids.get(message);
+                if (id == null) return;
+                log.error("❌ Error enviando email HTML (outbox {}): {}", id, cause.getMessage());
+                failures.put(id, isPermanentRejection(cause)
+                        ? new IllegalArgumentException("Destinatario rechazado por el servidor de correo.")
+                        : new RuntimeException("No se pudo enviar el correo HTML."));
+            });
+
+        } catch (MailException ex) {
+            log.error("❌ Error en sesión SMTP ({} emails): {}", messages.size(), ex.getMessage());
+            failAll(ids, failures, "No se pudo enviar el correo HTML.");
+        }
+    }
+
+    private MimeMessage buildHtmlMessage(OutgoingEmail email) throws MessagingException {
+        validateEmail(email.to());
+        validateHtml(email.htmlContent());
+
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+        helper.setFrom(String.format("%s <%s>", fromName, from));
+        helper.setTo(email.to());
+        helper.setSubject(email.subject());
+        helper.setText(wrapInTemplate(email.htmlContent()), true);
+
+        return mimeMessage;
+    }
+
+    /**
+     * true solo si el servidor rechazó el correo de forma definitiva (respuesta 5xx
+     * o destinatario inválido). Las respuestas 4xx (421, 450, 451, 452...) también
+     * llegan como SendFailedException, pero son temporales y se reintentan.
+     */
+    static boolean isPermanentRejection(Exception cause) {
+        for (Exception e = cause; e != null; e = e instanceof MessagingException me ? me.getNextException() : null) {
+            if (e instanceof SMTPSendFailedException smtp) return smtp.getReturnCode() >= 500;
+            if (e instanceof SMTPAddressFailedException smtp) return smtp.getReturnCode() >= 500;
+        }
+
+        // Sin código SMTP: nos fiamos de las listas de direcciones del propio JavaMail
+        if (cause instanceof SendFailedException failed) {
+            boolean invalid = failed.getInvalidAddresses() != null && failed.getInvalidAddresses().length > 0;
+            boolean pending = failed.getValidUnsentAddresses() != null && failed.getValidUnsentAddresses().length > 0;
+            return invalid && !pending;
+        }
+        return false;
+    }
+
+    private static void failAll(Map<MimeMessage, Long> ids, Map<Long, RuntimeException> failures, String reason) {
+        ids.values().forEach(id -> failures.put(id, new RuntimeException(reason)));
+    }
+
+    private String wrapInTemplate(String htmlContent) {
+        return templates.render(EmailTemplates.Template.LAYOUT, Map.of(
+                "logoUrl", LOGO_URL,
+                "contenido", htmlContent,
+                "anio", Year.now().getValue()
+        ));
     }
 
 }
@@ -0,0 +1,106 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.util.HtmlTemplate;
+import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Plantillas de los emails transaccionales (src/main/resources/templates/email).
+ * Se leen y compilan una sola vez al arrancar; si falta alguna, la app no arranca.
+ */
+@Component
+public class EmailTemplates {
+
+    public enum Template {
+        LAYOUT("layout.html"),
+        LISTA_ITEM("lista-item.html"),
+        RESERVA_CONFIRMADA("reserva-confirmada.html"),
+        CODIGO_CERRADURA("codigo-cerradura.html"),
+        RESERVA_CANCELADA("reserva-cancelada.html"),
+        CODIGO_RECUPERACION("codigo-recuperacion.html"),
+        REGISTRO("registro.html"),
+        USUARIO_CREADO("usuario-creado.html"),
+        SUPERADMIN_CREADO("superadmin-creado.html"),
+        AYUNTAMIENTO_CREADO("ayuntamiento-creado.html"),
+        PUERTA_ABIERTA("puerta-abierta.html"),
+        LIGA_FINALIZADA("liga-finalizada.html"),
+        LIGA_CAMPEONES("liga-campeones.html"),
+        LIGA_RANKING_FILA("liga-ranking-fila.html");
+
+        private final String file;
+
+        Template(String file) {
+            this.file = file;
+        }
+    }
+
+    // 🗓 Formatos compartidos (inmutables, seguros entre hilos)
+    public static final Locale ES = Locale.of("es", "ES");
+    public static final DateTimeFormatter FECHA_LARGA =
+            DateTimeFormatter.ofPattern("EEEE d 'de' MMMM 'a las' HH:mm", ES);
+    public static final DateTimeFormatter FECHA_HORA =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm", ES);
+
+    private static final String BASE_PATH = "templates/email/";
+
+    private final Map<Template, HtmlTemplate> compiled = new EnumMap<>(Template.class);
+
+    @PostConstruct
+    void compileAll() {
+        for (Template t : Template.values()) {
+            ClassPathResource resource = new ClassPathResource(BASE_PATH + t.file);
+            try (InputStream in = resource.getInputStream()) {
+                compiled.put(t, HtmlTemplate.compile(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalStateException("Plantilla de email inválida: " + t.file, e);
+            }
+        }
+        System.out.println("📧 Plantillas de email compiladas: " + compiled.size());
+    }
+
+    public String render(Template template, Map<String, ?> vars) {
+        return compiled.get(template).render(vars);
+    }
+
+    public void renderTo(StringBuilder out, Template template, Map<String, ?> vars) {
+        compiled.get(template).renderTo(out, vars);
+    }
+
+    /**
+     * Variables de plantilla a partir de pares clave/valor. A diferencia de
+     * {@code Map.of}, admite valores nulos (p.ej. un usuario sin nombre completo),
+     * que la plantilla renderiza vacíos.
+     */
+    public static Map<String, Object> vars(Object... keyValues) {
+        if (keyValues.length % 2 != 0) {
+            throw new IllegalArgumentException("Variables de plantilla: pares clave/valor incompletos");
+        }
+        Map<String, Object> vars = new HashMap<>(keyValues.length);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            vars.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return vars;
+    }
+
+    /** Renderiza una plantilla por elemento, todo en el mismo buffer (filas de tabla, listas...). */
+    public <T> String renderEach(Template template, Collection<T> items, Function<T, Map<String, ?>> vars) {
+        HtmlTemplate compiledTemplate = compiled.get(template);
+        StringBuilder out = new StringBuilder(items.size() * 128);
+        for (T item : items) {
+            compiledTemplate.renderTo(out, vars.apply(item));
+        }
+        return out.toString();
+    }
+}
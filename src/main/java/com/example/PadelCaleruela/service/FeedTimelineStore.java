@@ -0,0 +1,229 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.model.Post;
+import com.example.PadelCaleruela.model.Visibility;
+import com.example.PadelCaleruela.repository.FriendshipRepository;
+import com.example.PadelCaleruela.repository.PostRepository;
+import com.example.PadelCaleruela.util.FeedCursor;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import com.example.PadelCaleruela.util.TtlCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Timeline "home" materializado por usuario (fan-out-on-write).
+ *
+ * Cada usuario con el feed abierto tiene un buffer acotado con los ids de los
+ * posts de sus amistades, del más nuevo al más antiguo. createPost empuja el
+ * post a los timelines ya cargados; el resto se construye desde BD la primera
+ * vez que se lee. Con app.feed.fanout=read (por defecto) no hace nada y el
+ * feed sigue usando la consulta con Friendship.
+ */
+@Component
+public class FeedTimelineStore {
+
+    // Posts por timeline: de sobra para la ventana de 24h del feed
+    private static final int TIMELINE_CAPACITY = 500;
+    private static final Duration FEED_WINDOW = Duration.ofHours(24);
+
+    // Timelines en memoria; al caducar se reconstruyen (también cubre otras instancias)
+    private static final int MAX_TIMELINES = 10_000;
+    private static final Duration TIMELINE_TTL = Duration.ofMinutes(30);
+
+    private final PostRepository postRepository;
+    private final FriendshipRepository friendshipRepository;
+    private final boolean fanOutOnWrite;
+
+    private final TtlCache<Long, Timeline> timelines = new TtlCache<>(MAX_TIMELINES, TIMELINE_TTL);
+
+    public FeedTimelineStore(PostRepository postRepository,
+                             FriendshipRepository friendshipRepository,
+                             @Value("${app.feed.fanout:read}") String fanoutMode) {
+        this.postRepository = postRepository;
+        this.friendshipRepository = friendshipRepository;
+        this.fanOutOnWrite = "write".equalsIgnoreCase(fanoutMode);
+    }
+
+    private record Entry(Long postId, Long authorId, LocalDateTime createdAt) {
+
+        boolean isBefore(FeedCursor cursor) {
+            int cmp = createdAt.compareTo(cursor.createdAt());
+            return cmp < 0 || (cmp == 0 && postId < cursor.id());
+        }
+
+        boolean isNewerThan(Entry other) {
+            int cmp = createdAt.compareTo(other.createdAt());
+            return cmp > 0 || (cmp == 0 && postId > other.postId());
+        }
+    }
+
+    /** Buffer circular acotado, ordenado del más nuevo al más antiguo. */
+    private static final class Timeline {
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+        synchronized void add(Entry entry) {
+            if (entries.stream().anyMatch(e -> e.postId().equals(entry.postId()))) return;
+
+            // Caso normal: el post es el más reciente → va delante
+            if (entries.isEmpty() || entry.isNewerThan(entries.peekFirst())) {
+                entries.addFirst(entry);
+            } else {
+                // Caso raro (p.ej. vuelve a ser visible): insertar en su sitio
+                List<Entry> copy = new ArrayList<>(entries);
+                int i = 0;
+                while (i < copy.size() && copy.get(i).isNewerThan(entry)) i++;
+                copy.add(i, entry);
+                entries.clear();
+                entries.addAll(copy);
+            }
+
+            while (entries.size() > TIMELINE_CAPACITY) {
+                entries.pollLast();
+            }
+        }
+
+        synchronized void removePost(Long postId) {
+            entries.removeIf(e -> e.postId().equals(postId));
+        }
+
+        synchronized void removeAuthor(Long authorId) {
+            entries.removeIf(e -> e.authorId().equals(authorId));
+        }
+
+        synchronized List<FeedCursor> range(LocalDateTime minDate, FeedCursor before, int limit) {
+            List<FeedCursor> keys = new ArrayList<>(limit);
+            Iterator<Entry> it = entries.iterator();
+
+            while (it.hasNext() && keys.size() < limit) {
+                Entry e = it.next();
+                if (e.createdAt().isBefore(minDate)) break; // el resto es más antiguo
+                if (e.isBefore(before)) keys.add(new FeedCursor(e.createdAt(), e.postId()));
+            }
+
+            return keys;
+        }
+    }
+
+    public boolean isFanOutOnWrite() {
+        return fanOutOnWrite;
+    }
+
+    // ======================================================
+    // 🔍 Lectura: rango del timeline
+    // ======================================================
+
+    /**
+     * Posiciones (createdAt, id del post) del timeline anteriores al cursor, del
+     * más nuevo al más antiguo. Sirven también de cursor para seguir leyendo.
+     */
+    public List<FeedCursor> range(Long userId, LocalDateTime minDate, FeedCursor before, int limit) {
+        return timelines.computeIfAbsent(userId, this::build).range(minDate, before, limit);
+    }
+
+    private Timeline build(Long userId) {
+        Timeline timeline = new Timeline();
+
+        postRepository.findRecentFeedForUser(
+                userId,
+                LocalDateTime.now().minus(FEED_WINDOW),
+                FeedCursor.START.createdAt(),
+                FeedCursor.START.id(),
+                PageRequest.of(0, TIMELINE_CAPACITY)
+        ).forEach(p -> timeline.entries.addLast(entryOf(p)));
+
+        return timeline;
+    }
+
+    // ======================================================
+    // ✏️ Escritura (fan-out) y correcciones — siempre tras el commit
+    // ======================================================
+
+    /** Empuja el post a los timelines cargados de todas sus amistades aceptadas. */
+    public void onPostCreated(Post post) {
+        if (!fanOutOnWrite || post.getVisibility() == Visibility.PRIVATE) return;
+
+        Entry entry = entryOf(post);
+        Set<Long> audience = audienceOf(post.getUser().getId());
+
+        TransactionUtils.afterCommit(() -> audience.forEach(userId -> {
+            Timeline timeline = timelines.get(userId);
+            if (timeline != null) timeline.add(entry);
+            else timelines.invalidate(userId); // descarta un build en curso que no lo vería
+        }));
+    }
+
+    /** Retira el post de los timelines cargados de las amistades de su autor. */
+    public void onPostDeleted(Post post) {
+        if (!fanOutOnWrite) return;
+
+        Long postId = post.getId();
+        Set<Long> audience = audienceOf(post.getUser().getId());
+
+        TransactionUtils.afterCommit(() -> audience.forEach(userId -> {
+            Timeline timeline = timelines.get(userId);
+            if (timeline != null) timeline.removePost(postId);
+            else timelines.invalidate(userId);
+        }));
+    }
+
+    /** PRIVATE → se retira de los timelines; FRIENDS/PUBLIC → se (re)inserta. */
+    public void onVisibilityChanged(Post post) {
+        if (!fanOutOnWrite) return;
+
+        if (post.getVisibility() == Visibility.PRIVATE) {
+            onPostDeleted(post);
+        } else {
+            onPostCreated(post);
+        }
+    }
+
+    /** Amistad eliminada (o bloqueo): cada uno deja de ver los posts del otro. */
+    public void onFriendshipRemoved(Long userId, Long otherUserId) {
+        if (!fanOutOnWrite) return;
+
+        TransactionUtils.afterCommit(() -> {
+            Timeline mine = timelines.get(userId);
+            if (mine != null) mine.removeAuthor(otherUserId);
+            else timelines.invalidate(userId);
+
+            Timeline theirs = timelines.get(otherUserId);
+            if (theirs != null) theirs.removeAuthor(userId);
+            else timelines.invalidate(otherUserId);
+        });
+    }
+
+    /** Nueva amistad: los dos timelines se reconstruyen en la siguiente lectura. */
+    public void onFriendshipAdded(Long userId, Long otherUserId) {
+        if (!fanOutOnWrite) return;
+
+        TransactionUtils.afterCommit(() -> {
+            timelines.invalidate(userId);
+            timelines.invalidate(otherUserId);
+        });
+    }
+
+    // ======================================================
+    // 🔧 Utilidades
+    // ======================================================
+
+    // Amistades aceptadas en cualquier dirección (misma semántica que el feed)
+    private Set<Long> audienceOf(Long authorId) {
+        Set<Long> audience = new HashSet<>(friendshipRepository.findAcceptedFriendIdsByUserId(authorId));
+        audience.addAll(friendshipRepository.findAcceptedUserIdsByFriendId(authorId));
+        return audience;
+    }
+
+    private static Entry entryOf(Post p) {
+        return new Entry(p.getId(), p.getUser().getId(), p.getCreatedAt());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.PadelCaleruela.service;
+
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.MulticastMessage;
+import com.google.firebase.messaging.Notification;
+import com.google.firebase.messaging.SendResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Component
+public class FirebasePushSender implements PushSender {
+
+    @Override
+    public List<Result> sendBatch(List<String> tokens, String title, String body) {
+
+        MulticastMessage message = MulticastMessage.builder()
+                .setNotification(Notification.builder()
+                        .setTitle(title)
+                        .setBody(body)
+                        .build())
+                .addAllTokens(tokens)
+                .build();
+
+        try {
+            BatchResponse response = FirebaseMessaging.getInstance().sendEachForMulticast(message);
+
+            List<Result> results = new ArrayList<>(tokens.size());
+            for (SendResponse r : response.getResponses()) {
+                results.add(r.isSuccessful() ? Result.OK : classify(r.getException()));
+            }
+            return results;
+
+        } catch (FirebaseMessagingException fme) {
+            // Falla la llamada entera (red, credenciales...) → todo el lote se reintenta
+            System.out.println("⚠ Error enviando lote push (" + tokens.size() + " tokens): " + fme.getMessage());
+            return Collections.nCopies(tokens.size(), Result.RETRYABLE);
+        }
+    }
+
+    private Result classify(FirebaseMessagingException e) {
+        MessagingErrorCode code = e != null ? e.getMessagingErrorCode() : null;
+        if (code == null) return Result.RETRYABLE;
+
+        return switch (code) {
+            case UNREGISTERED -> Result.UNREGISTERED;
+            case UNAVAILABLE, INTERNAL, QUOTA_EXCEEDED -> Result.RETRYABLE;
+            default -> Result.FAILED;
+        };
+    }
+}
@@ -25,6 +25,8 @@ public class FriendshipService {
     private final UserNotificationService userNotificationService;
     private final NotificationFactory notificationFactory;
     private final NotificationAppService notificationAppService;
+    private final FeedTimelineStore timelineStore;
+    private final BadgeService badgeService;
 
 
     // 🔹 Enviar solicitud de amistad
@@ -62,6 +64,7 @@ public class FriendshipService {
             if (existing.getStatus() == FriendshipStatus.REJECTED) {
                 existing.setStatus(FriendshipStatus.PENDING);
                 friendshipRepository.save(existing);
+                badgeService.changed(toUserId);
                 return;
             }
 
@@ -76,6 +79,7 @@ public class FriendshipService {
         f.setFriend(to);
         f.setStatus(FriendshipStatus.PENDING);
         friendshipRepository.save(f);
+        badgeService.changed(to.getId());
 
         try {
             userNotificationService.sendToUser(
@@ -161,6 +165,8 @@ public class FriendshipService {
 
         f.setStatus(FriendshipStatus.ACCEPTED);
         friendshipRepository.save(f);
+        timelineStore.onFriendshipAdded(userId, friendId);
+        badgeService.changed(userId);
 
         // ---------------------------------------------------------
         //  🔥 Crear la NOTIFICACIÓN en base de datos (solo BD)
@@ -219,6 +225,7 @@ public class FriendshipService {
 
         friendship.setStatus(FriendshipStatus.REJECTED);
         friendshipRepository.save(friendship);
+        badgeService.changed(userId);
     }
 
 
@@ -235,6 +242,8 @@ public class FriendshipService {
             if (fr.getStatus() != FriendshipStatus.ACCEPTED) {
                 fr.setStatus(FriendshipStatus.ACCEPTED);
                 friendshipRepository.save(fr);
+                timelineStore.onFriendshipAdded(followerId, followedId);
+                badgeService.changed(followedId);
             }
             return;
         }
@@ -251,6 +260,7 @@ public class FriendshipService {
         f.setStatus(FriendshipStatus.ACCEPTED);
 
         friendshipRepository.save(f);
+        timelineStore.onFriendshipAdded(followerId, followedId);
     }
 
 
@@ -294,6 +304,7 @@ public class FriendshipService {
         }
 
         friendshipRepository.delete(friendship);
+        timelineStore.onFriendshipRemoved(userId, friendId);
     }
 
 
@@ -371,7 +382,7 @@ public class FriendshipService {
             throw new AccessDeniedException("No puedes ver solicitudes de otro usuario.");
         }
 
-        return friendshipRepository.countPendingByUserId(userId);
+        return badgeService.get(userId).getFriendRequests();
     }
 
     public boolean hasPending(Long userId) {
@@ -420,6 +431,8 @@ public class FriendshipService {
 
         if (friendship.isPresent()) {
             friendshipRepository.delete(friendship.get());
+            timelineStore.onFriendshipRemoved(userId, friendId);
+            badgeService.changedAll(List.of(userId, friendId));
             return "Amistad eliminada correctamente.";
         } else {
             return "No existe una relación de amistad entre estos usuarios.";
@@ -0,0 +1,11 @@
+package com.example.PadelCaleruela.service;
+
+/**
+ * Refresh token inexistente, caducado, revocado o ya usado. Los controladores lo devuelven como 401.
+ */
+public class InvalidRefreshTokenException extends RuntimeException {
+
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
@@ -23,6 +23,7 @@ public class InvitationService {
     private final UserNotificationService userNotificationService;
     private final NotificationFactory notificationFactory;
     private final NotificationAppService notificationAppService;
+    private final BadgeService badgeService;
 
 
     public InvitationService(InvitationRepository invitationRepository,
@@ -30,7 +31,8 @@ public class InvitationService {
                              UserRepository userRepository,
                              AuthService authService,UserNotificationService userNotificationService,
                              NotificationAppService notificationAppService,
-                             NotificationFactory notificationFactory) {
+                             NotificationFactory notificationFactory,
+                             BadgeService badgeService) {
         this.invitationRepository = invitationRepository;
         this.reservationRepository = reservationRepository;
         this.userRepository = userRepository;
@@ -38,6 +40,7 @@ public class InvitationService {
         this.userNotificationService=userNotificationService;
         this.notificationAppService=notificationAppService;
         this.notificationFactory=notificationFactory;
+        this.badgeService=badgeService;
     }
 
 
@@ -103,6 +106,7 @@ public class InvitationService {
 
             reservationRepository.save(reservation);
             invitationRepository.saveAll(allForUser);
+            badgeService.changed(receiver.getId());
 
             // ----------------------------------------------------------------------
             // 🔔 NOTIFICACIONES PUSH + BASE DE DATOS
@@ -150,6 +154,7 @@ public class InvitationService {
 
             reservationRepository.save(reservation);
             invitationRepository.save(invitation);
+            badgeService.changed(receiver.getId());
 
             // ----------------------------------------------------------------------
             // 🔔 NOTIFICACIÓN DE RECHAZO (PUSH + BD)
@@ -256,6 +261,7 @@ public class InvitationService {
 
         reservation.getJugadores().add(joiningUser);
         reservationRepository.save(reservation);
+        badgeService.changed(joiningUser.getId());
 
 
         // -----------------------------------------------------------------
@@ -387,14 +393,8 @@ public class InvitationService {
             throw new AccessDeniedException("No puedes ver invitaciones de otro usuario.");
         }
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-
-        // 🔹 Contamos solo las del mismo ayuntamiento
-        return invitationRepository.findByReceiverAndStatus(user, InvitationStatus.PENDING)
-                .stream()
-                .filter(inv -> inv.getSender().getAyuntamiento().equals(user.getAyuntamiento()))
-                .count();
+        // 🔹 Solo las del mismo ayuntamiento (contador en memoria, ver BadgeService)
+        return badgeService.get(userId).getInvitations();
     }
 
 
@@ -1,13 +1,19 @@
 package com.example.PadelCaleruela.service;
 
 import com.example.PadelCaleruela.CustomUserDetails;
+import com.example.PadelCaleruela.util.TtlCache;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,6 +30,59 @@ public class JwtService {
     // ⏳ Duración recomendada (7 días)
     private static final long EXPIRATION_MS = 1000L * 60 * 60 * 24 * 7;
 
+    /** Atributo de la petición donde JwtAuthenticationFilter deja los claims ya verificados. */
+    public static final String CLAIMS_ATTR = JwtService.class.getName() + ".claims";
+
+    // 🧠 Tokens verificados recientemente (hash SHA-256 → claims), hasta su expiración
+    private static final int VERIFIED_CACHE_SIZE = 20_000;
+    private static final Duration VERIFIED_CACHE_TTL = Duration.ofMinutes(10);
+
+    // Clave y parser se construyen una sola vez (son inmutables y thread-safe)
+    private final Key signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(signingKey)
+            .build();
+
+    private final TtlCache<String, Claims> verified = new TtlCache<>(VERIFIED_CACHE_SIZE, VERIFIED_CACHE_TTL);
+
+    // ============================================================
+    // VERIFICACIÓN (una sola vez por token)
+    // ============================================================
+
+    /**
+     * Verifica firma y expiración y devuelve los claims.
+     * Si el mismo token se verificó hace poco, se sirve de la caché sin volver a parsearlo.
+     *
+     * @throws JwtException             token manipulado, expirado o mal formado
+     * @throws IllegalArgumentException token vacío
+     */
+    public Claims verify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Token vacío");
+        }
+
+        String digest = digest(token);
+        Claims cached = verified.get(digest);
+        if (cached != null) return cached;
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            verified.put(digest, claims, expiration.toInstant());
+        }
+        return claims;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
     // ============================================================
     // EXTRACTORES
     // ============================================================
@@ -71,7 +130,7 @@ public class JwtService {
                 .setSubject(subject)
                 .setIssuedAt(new Date(now))
                 .setExpiration(new Date(now + EXPIRATION_MS))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -81,40 +140,21 @@ public class JwtService {
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
         try {
-            final String username = extractUsername(token);
-            return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+            return isValidFor(verify(token), userDetails);
         } catch (JwtException | IllegalArgumentException e) {
             return false; // token manipulado, expirado, inválido, etc.
         }
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /** Igual que {@link #isTokenValid} pero con claims ya verificados (sin volver a parsear). */
+    public boolean isValidFor(Claims claims, UserDetails userDetails) {
+        // Una entrada de la caché puede sobrevivir unos ms a su expiración
+        return userDetails.getUsername().equals(claims.getSubject())
+                && claims.getExpiration() != null
+                && claims.getExpiration().after(new Date());
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> resolver) {
-        Claims claims = extractAllClaims(token);
-        return resolver.apply(claims);
-    }
-
-    // ============================================================
-    // CLAIMS INTERNOS
-    // ============================================================
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return resolver.apply(verify(token));
     }
 }
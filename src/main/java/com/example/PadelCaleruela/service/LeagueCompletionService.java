@@ -19,6 +19,7 @@ public class LeagueCompletionService {
     private final LeagueMatchRepository matchRepository;
     private final LeagueTeamRankingService rankingService;
     private final EmailService emailService;
+    private final EmailTemplates emailTemplates;
     private final AuthService authService;
 
     public LeagueCompletionService(
@@ -26,12 +27,14 @@ public class LeagueCompletionService {
             LeagueMatchRepository matchRepository,
             LeagueTeamRankingService rankingService,
             EmailService emailService,
+            EmailTemplates emailTemplates,
             AuthService authService
     ) {
         this.leagueRepository = leagueRepository;
         this.matchRepository = matchRepository;
         this.rankingService = rankingService;
         this.emailService = emailService;
+        this.emailTemplates = emailTemplates;
         this.authService = authService;
     }
 
@@ -132,47 +135,30 @@ public class LeagueCompletionService {
             LeagueTeamRankingDTO champion,
             List<LeagueTeamRankingDTO> ranking
     ) {
-        StringBuilder html = new StringBuilder();
-        html.append("<html><body style='font-family:Arial,sans-serif;color:#333;'>");
-        html.append("<h2>🏁 ¡La liga <strong>").append(league.getName()).append("</strong> ha finalizado!</h2>");
-        html.append("<p>Te informamos que todos los partidos se han completado.</p>");
-
-        if (champion != null) {
-            html.append("<h3>🏆 Campeones:</h3>");
-            html.append("<p><strong>")
-                    .append(String.join(" & ", champion.getPlayerNames()))
-                    .append("</strong> con ")
-                    .append(champion.getPoints())
-                    .append(" puntos.</p>");
-        }
-
-        html.append("<hr><h4>Clasificación final:</h4>");
-        html.append("<table style='border-collapse:collapse;width:100%;'>");
-        html.append("<tr>")
-                .append("<th style='border:1px solid #ddd;padding:8px;'>Posición</th>")
-                .append("<th style='border:1px solid #ddd;padding:8px;'>Pareja</th>")
-                .append("<th style='border:1px solid #ddd;padding:8px;'>PJ</th>")
-                .append("<th style='border:1px solid #ddd;padding:8px;'>PG</th>")
-                .append("<th style='border:1px solid #ddd;padding:8px;'>PP</th>")
-                .append("<th style='border:1px solid #ddd;padding:8px;'>Puntos</th>")
-                .append("</tr>");
-
+        String campeones = champion == null ? "" :
+                emailTemplates.render(EmailTemplates.Template.LIGA_CAMPEONES, EmailTemplates.vars(
+                        "pareja", String.join(" & ", champion.getPlayerNames()),
+                        "puntos", champion.getPoints()
+                ));
+
+        // Todas las filas en el mismo buffer
+        StringBuilder filas = new StringBuilder(ranking.size() * 512);
         for (int i = 0; i < ranking.size(); i++) {
             LeagueTeamRankingDTO r = ranking.get(i);
-            html.append("<tr>")
-                    .append("<td style='border:1px solid #ddd;padding:8px;text-align:center;'>").append(i + 1).append("</td>")
-                    .append("<td style='border:1px solid #ddd;padding:8px;'>").append(String.join(" & ", r.getPlayerNames())).append("</td>")
-                    .append("<td style='border:1px solid #ddd;padding:8px;text-align:center;'>").append(r.getMatchesPlayed()).append("</td>")
-                    .append("<td style='border:1px solid #ddd;padding:8px;text-align:center;'>").append(r.getMatchesWon()).append("</td>")
-                    .append("<td style='border:1px solid #ddd;padding:8px;text-align:center;'>").append(r.getMatchesLost()).append("</td>")
-                    .append("<td style='border:1px solid #ddd;padding:8px;text-align:center;font-weight:bold;'>").append(r.getPoints()).append("</td>")
-                    .append("</tr>");
+            emailTemplates.renderTo(filas, EmailTemplates.Template.LIGA_RANKING_FILA, EmailTemplates.vars(
+                    "posicion", i + 1,
+                    "pareja", String.join(" & ", r.getPlayerNames()),
+                    "pj", r.getMatchesPlayed(),
+                    "pg", r.getMatchesWon(),
+                    "pp", r.getMatchesLost(),
+                    "puntos", r.getPoints()
+            ));
         }
 
-        html.append("</table>");
-        html.append("<p style='margin-top:20px;'>¡Gracias por usar <strong>PadelApp</strong>! 🎾</p>");
-        html.append("</body></html>");
-
-        return html.toString();
+        return emailTemplates.render(EmailTemplates.Template.LIGA_FINALIZADA, EmailTemplates.vars(
+                "liga", league.getName(),
+                "campeones", campeones,
+                "filas", filas
+        ));
     }
 }
@@ -24,6 +24,7 @@ public class LeagueInvitationService {
     private final UserNotificationService userNotificationService;
     private final NotificationAppService notificationAppService;
     private final NotificationFactory notificationFactory;
+    private final BadgeService badgeService;
 
 
     public LeagueInvitationService(
@@ -33,7 +34,8 @@ public class LeagueInvitationService {
             AuthService authService,
             UserNotificationService userNotificationService,
             NotificationAppService notificationAppService,
-            NotificationFactory notificationFactory
+            NotificationFactory notificationFactory,
+            BadgeService badgeService
     ) {
         this.invitationRepository = invitationRepository;
         this.leagueRepository = leagueRepository;
@@ -42,6 +44,7 @@ public class LeagueInvitationService {
         this.userNotificationService=userNotificationService;
         this.notificationAppService=notificationAppService;
         this.notificationFactory=notificationFactory;
+        this.badgeService=badgeService;
     }
 
     public LeagueInvitationDTO sendInvitation(Long leagueId, Long senderId, Long receiverId, LeagueInvitationType type) {
@@ -84,6 +87,7 @@ public class LeagueInvitationService {
         invitation.setSentAt(LocalDateTime.now());
 
         invitationRepository.save(invitation);
+        badgeService.changed(receiver.getId());
 
         // 🔔 Enviar notificación push al jugador invitado
         try {
@@ -109,14 +113,8 @@ public class LeagueInvitationService {
             throw new AccessDeniedException("No puedes ver invitaciones de otro usuario.");
         }
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-
-        // Filtramos por mismo ayuntamiento
-        return invitationRepository.findByReceiverIdAndStatus(userId, InvitationStatus.PENDING)
-                .stream()
-                .filter(inv -> inv.getSender().getAyuntamiento().equals(user.getAyuntamiento()))
-                .count();
+        // Solo las del mismo ayuntamiento (contador en memoria, ver BadgeService)
+        return badgeService.get(userId).getLeagueInvitations();
     }
 
 
@@ -238,6 +236,7 @@ public class LeagueInvitationService {
         }
 
         invitationRepository.save(invitation);
+        badgeService.changed(receiver.getId());
     }
 
     private void sendAndSaveNotification(
@@ -39,6 +39,7 @@ public class LeagueService {
     private final UserNotificationService userNotificationService;
     private final NotificationFactory notificationFactory;
     private final NotificationAppService notificationAppService;
+    private final BadgeService badgeService;
 
     public LeagueService(
             LeagueRepository leagueRepository,
@@ -53,7 +54,8 @@ public class LeagueService {
             FileStorageService fileStorageService,
             UserNotificationService userNotificationService,
             NotificationAppService notificationAppService,
-            NotificationFactory notificationFactory
+            NotificationFactory notificationFactory,
+            BadgeService badgeService
     ) {
         this.leagueRepository = leagueRepository;
         this.userRepository = userRepository;
@@ -67,6 +69,7 @@ public class LeagueService {
         this.userNotificationService=userNotificationService;
         this.notificationFactory=notificationFactory;
         this.notificationAppService=notificationAppService;
+        this.badgeService=badgeService;
     }
 
 
@@ -407,6 +410,7 @@ public class LeagueService {
                 .ifPresent(inv -> {
                     inv.setStatus(InvitationStatus.ACCEPTED);
                     leagueInvitationRepository.save(inv);
+                    badgeService.changed(playerId);
                 });
 
         boolean alreadyInLeague = league.getPlayers().stream()
@@ -517,6 +521,7 @@ public class LeagueService {
         User creator = league.getCreator();
 
         // 1️⃣ Borrar dependencias
+        badgeService.changedAll(leagueInvitationRepository.findReceiverIdsByLeague(league));
         leagueInvitationRepository.deleteAllByLeague(league);
         leagueMatchRepository.deleteAllByLeague(league);
         leagueTeamRankingRepository.deleteAllByLeague(league);
@@ -0,0 +1,101 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.model.Notification;
+import com.example.PadelCaleruela.model.NotificationType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agrupa los likes de un post durante una ventana corta y genera una sola
+ * notificación ("Ana y 12 personas más han dado me gusta a tu publicación").
+ * Un post viral produce una notificación + un push por ventana, no uno por like.
+ * La ventana vive en memoria: si la instancia cae, se pierde ese aviso agrupado.
+ */
+@Component
+@RequiredArgsConstructor
+public class LikeNotificationCoalescer {
+
+    private static final long WINDOW_SECONDS = 30;
+
+    private final DeadlineScheduler deadlineScheduler;
+    private final NotificationAppService notificationAppService;
+    private final NotificationFactory notificationFactory;
+    private final UserNotificationService userNotificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    /** Likes acumulados de un post dentro de la ventana actual */
+    private record PendingLikes(Long ownerId, Long firstLikerId, String firstLikerName, long count) {
+
+        PendingLikes plusOne() {
+            return new PendingLikes(ownerId, firstLikerId, firstLikerName, count + 1);
+        }
+    }
+
+    private final Map<Long, PendingLikes> pending = new ConcurrentHashMap<>();
+
+    /** Apunta un like nuevo. Llamar tras el commit del like. */
+    public void onLiked(Long postId, Long ownerId, Long likerId, String likerName) {
+        pending.merge(postId,
+                new PendingLikes(ownerId, likerId, likerName, 1),
+                (current, added) -> current.plusOne());
+
+        scheduleFlush(postId);
+    }
+
+    private void scheduleFlush(Long postId) {
+        deadlineScheduler.scheduleIfAbsent(
+                key(postId),
+                LocalDateTime.now().plusSeconds(WINDOW_SECONDS),
+                () -> flush(postId)
+        );
+    }
+
+    // ======================================================
+    // 🔔 Cierre de ventana
+    // ======================================================
+
+    private void flush(Long postId) {
+        try {
+            publish(postId, pending.remove(postId));
+        } finally {
+            // Likes llegados mientras se cerraba la ventana: si su scheduleIfAbsent
+            // vio este cierre aún en marcha, nadie más los va a recoger
+            if (pending.containsKey(postId)) {
+                scheduleFlush(postId);
+            }
+        }
+    }
+
+    private void publish(Long postId, PendingLikes likes) {
+        if (likes == null) return;
+
+        NotificationType type = NotificationType.POST_LIKED;
+
+        String title = notificationFactory.getTitle(type);
+        String message = notificationFactory.getGroupedMessage(type, likes.firstLikerName(), likes.count() - 1);
+
+        // Notificación interna + push (outbox) en la misma transacción
+        transactionTemplate.executeWithoutResult(status -> {
+            Notification n = new Notification();
+            n.setUserId(likes.ownerId());        // dueño del post
+            n.setSenderId(likes.firstLikerId()); // primer like de la ventana
+            n.setType(type);
+            n.setTitle(title);
+            n.setMessage(message);
+            n.setExtraData(postId.toString());   // ID del post para abrirlo
+
+            notificationAppService.saveNotification(n);
+
+            userNotificationService.sendToUser(likes.ownerId(), title, message);
+        });
+    }
+
+    private static String key(Long postId) {
+        return "like-notify:" + postId;
+    }
+}
@@ -3,8 +3,12 @@ package com.example.PadelCaleruela.service;
 import com.example.PadelCaleruela.model.*;
 import com.example.PadelCaleruela.repository.LikeRepository;
 import com.example.PadelCaleruela.repository.PostRepository;
+import com.example.PadelCaleruela.util.TransactionUtils;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -15,9 +19,7 @@ public class LikeService {
     private final LikeRepository likeRepository;
     private final AuthService authService;
     private final PostRepository postRepository;
-    private final NotificationAppService notificationAppService;
-    private final NotificationFactory notificationFactory;
-    private final UserNotificationService userNotificationService;
+    private final LikeNotificationCoalescer likeNotificationCoalescer;
 
     // 👍 Dar like
     @Transactional
@@ -28,49 +30,19 @@ public class LikeService {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("Post no encontrado"));
 
-        User owner = post.getUser(); // dueño del post
+        Long ownerId = post.getUser().getId(); // dueño del post
 
-        // ❌ Si ya dio like → evitar duplicado
-        if (likeRepository.existsByUserAndPost(liker, post)) {
+        // ❤️ Insert idempotente: si ya dio like, el unique lo descarta y no hay nada más que hacer
+        if (likeRepository.insertIgnore(liker.getId(), post.getId()) == 0) {
             return;
         }
 
-        // ❤️ Guardamos el like
-        Like like = new Like();
-        like.setUser(liker);
-        like.setPost(post);
-        likeRepository.save(like);
-
-        // ============================
-        // 🔔 Notificación interna (BD)
-        // ============================
-        NotificationType type = NotificationType.POST_LIKED;
-
-        String title = notificationFactory.getTitle(type);
-        String message = notificationFactory.getMessage(type, liker.getUsername());
-
-        Notification n = new Notification();
-        n.setUserId(owner.getId());      // dueño del post
-        n.setSenderId(liker.getId());    // quien da like
-        n.setType(type);
-        n.setTitle(title);
-        n.setMessage(message);
-        n.setExtraData(post.getId().toString()); // ID del post para abrirlo
-
-        notificationAppService.saveNotification(n);
-
-        // ============================
-        // 📲 PUSH NOTIFICATION
-        // ============================
-        try {
-            userNotificationService.sendToUser(
-                    owner.getId(),          // receptor
-                    liker.getUsername(),    // nombre del que da like
-                    NotificationType.POST_LIKED
-            );
-        } catch (Exception e) {
-            throw new RuntimeException("Error enviando push de like", e);
-        }
+        postRepository.addToLikeCount(post.getId(), 1);
+
+        // 🔔 Notificación (BD + push) agrupada por ventana, tras el commit
+        TransactionUtils.afterCommit(() ->
+                likeNotificationCoalescer.onLiked(post.getId(), ownerId, liker.getId(), liker.getUsername())
+        );
     }
 
 
@@ -81,15 +53,24 @@ public class LikeService {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("Post no encontrado"));
 
-        likeRepository.deleteByUserAndPost(user, post);
+        if (likeRepository.deleteByUserIdAndPostId(user.getId(), post.getId()) > 0) {
+            postRepository.addToLikeCount(post.getId(), -1);
+        }
     }
 
     // 🔢 Obtener número de likes
     public long getLikes(Long postId) {
-        Post post = postRepository.findById(postId)
+        return postRepository.findLikeCountById(postId)
                 .orElseThrow(() -> new RuntimeException("Post no encontrado"));
+    }
 
-        return likeRepository.countByPost(post);
+    // 🧮 Recalcula los contadores desfasados: al arrancar (rellena la columna nueva) y cada noche a las 4:30
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 30 4 * * *")
+    public void reconcileLikeCounts() {
+        int fixed = postRepository.reconcileLikeCounts();
+        if (fixed > 0) {
+            System.out.println("🧮 Contadores de likes corregidos: " + fixed);
+        }
     }
 }
-
@@ -3,9 +3,9 @@ package com.example.PadelCaleruela.service;
 import com.example.PadelCaleruela.dto.LockPasswordDTO;
 import com.example.PadelCaleruela.model.LockPassword;
 import com.example.PadelCaleruela.repository.LockPasswordRepository;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -16,6 +16,9 @@ import java.util.List;
 public class LockPasswordService {
 
     private final LockPasswordRepository lockPasswordRepository;
+    private final DeadlineScheduler deadlineScheduler;
+
+    private static final long EXPIRY_GRACE_MINUTES = 5;
 
     public List<LockPasswordDTO> getPasswordsByReservation(Long reservationId) {
 
@@ -32,21 +35,40 @@ public class LockPasswordService {
         }).toList();
     }
 
-    // 🔥 Ejecuta cada minuto
-    @Scheduled(fixedRate = 60_000)
-    @Transactional
-    public void cleanExpiredPasswords() {
+    // ======================================================
+    // ⏰ Caducidad: se borra 5 minutos después de endTime
+    // ======================================================
+
+    public void scheduleExpiry(Long lockPasswordId, LocalDateTime endTime) {
+        deadlineScheduler.scheduleIfAbsent(
+                "lock-password:" + lockPasswordId,
+                endTime.plusMinutes(EXPIRY_GRACE_MINUTES),
+                () -> deleteExpired(lockPasswordId)
+        );
+    }
 
-        LocalDateTime now = LocalDateTime.now();
+    /**
+     * Solo al arrancar: borra de una vez las que caducaron con la app parada
+     * y programa las demás (id, endTime). Las nuevas se programan al crearse.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildExpiries() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(EXPIRY_GRACE_MINUTES);
 
-        // 5 minutos después de endTime
-        LocalDateTime threshold = now.minusMinutes(5);
+        int deleted = lockPasswordRepository.deleteByEndTimeBefore(cutoff);
+        if (deleted > 0) {
+            System.out.println("🧹 Eliminadas " + deleted + " contraseñas caducadas al arrancar");
+        }
 
-        List<LockPassword> expired = lockPasswordRepository.findAllByEndTimeBefore(threshold);
+        for (Object[] row : lockPasswordRepository.findExpiriesAfter(cutoff)) {
+            scheduleExpiry((Long) row[0], (LocalDateTime) row[1]);
+        }
+    }
 
-        if (!expired.isEmpty()) {
-            lockPasswordRepository.deleteAll(expired);
-            System.out.println("🧹 Eliminadas " + expired.size() + " contraseñas expiradas.");
+    private void deleteExpired(Long lockPasswordId) {
+        if (lockPasswordRepository.existsById(lockPasswordId)) {
+            lockPasswordRepository.deleteById(lockPasswordId);
+            System.out.println("🧹 Eliminada contraseña expirada " + lockPasswordId);
         }
     }
 }
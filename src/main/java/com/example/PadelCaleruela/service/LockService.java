@@ -13,6 +13,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -158,27 +159,20 @@ public class LockService {
 
         // 6. Construir mensajes
         String subject = "Aviso: Puerta abierta al llegar un usuario";
-        String html = """
-            <h2>Incidencia detectada</h2>
-            <p>El usuario <strong>%s</strong> ha llegado a la pista y ha encontrado la 
-            puerta abierta.</p>
-            <p>Se recomienda contactar con las ultimas personas que utilizaron las instalaciones.</p>
-            """.formatted(user.getFullName());
+        Map<String, Object> emailVars = EmailTemplates.vars("usuario", user.getFullName());
 
         String pushTitle = "Puerta detectada abierta";
         String pushBody = "El usuario " + user.getFullName() + " encontró la puerta  abierta.";
 
         // 7. Enviar Email
         if (emailAyuntamiento != null && !emailAyuntamiento.isBlank()) {
-            emailService.sendHtmlEmail(emailAyuntamiento, subject, html);
+            emailService.sendTemplate(emailAyuntamiento, subject, EmailTemplates.Template.PUERTA_ABIERTA, emailVars);
         } else {
         }
 
         // 8. Enviar Push a los administradores
         if (!latestTokens.isEmpty()) {
-            for (String token : latestTokens) {
-                notificationService.sendPush(token, pushTitle, pushBody);
-            }
+            notificationService.sendPushToAll(latestTokens, pushTitle, pushBody);
         } else {
         }
 
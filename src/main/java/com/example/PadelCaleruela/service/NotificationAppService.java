@@ -2,61 +2,111 @@ package com.example.PadelCaleruela.service;
 
 import com.example.PadelCaleruela.dto.NotificationDTO;
 import com.example.PadelCaleruela.model.Notification;
+import com.example.PadelCaleruela.model.NotificationType;
 import com.example.PadelCaleruela.model.User;
 import com.example.PadelCaleruela.repository.NotificationRepository;
 import com.example.PadelCaleruela.repository.UserRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Service
 public class NotificationAppService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    // Clases de tipo: las ADMIN_* van a la bandeja administrativa, el resto a la campana
+    private static final Set<NotificationType> ADMIN_TYPES = EnumSet.noneOf(NotificationType.class);
+    private static final Set<NotificationType> USER_TYPES = EnumSet.noneOf(NotificationType.class);
+
+    static {
+        for (NotificationType t : NotificationType.values()) {
+            (t.name().startsWith("ADMIN_") ? ADMIN_TYPES : USER_TYPES).add(t);
+        }
+    }
+
     private final NotificationRepository repository;
     private final UserRepository userRepository;
+    private final BadgeService badgeService;
 
-    public NotificationAppService(NotificationRepository repo, UserRepository userRepo) {
+    public NotificationAppService(NotificationRepository repo, UserRepository userRepo, BadgeService badgeService) {
         this.repository = repo;
         this.userRepository = userRepo;
+        this.badgeService = badgeService;
     }
 
     // Guardar notificación
     public void saveNotification(Notification notification) {
         repository.save(notification);
+        badgeService.changed(notification.getUserId());
     }
 
-    // Obtener notificaciones normales
+    // Obtener notificaciones normales (solo no leídas)
     public List<NotificationDTO> getUserNotifications(Long userId) {
-        return fetchNotifications(userId, false)  // trae SOLO no-admin
-                .stream()
-                .filter(n -> !n.isReadFlag())      // solo no leídas
-                .collect(Collectors.toList());
+        return getUserNotifications(userId, 0, DEFAULT_PAGE_SIZE);
+    }
+
+    public List<NotificationDTO> getUserNotifications(Long userId, Integer page, Integer size) {
+        return toDTOs(repository.findUnreadPageByUserIdAndTypeIn(userId, USER_TYPES, pageOf(page, size)));
     }
 
     public long countUnread(Long userId) {
-        return repository.countUnreadByUserId(userId);
+        return badgeService.get(userId).getNotifications();
     }
 
 
     // Obtener notificaciones administrativas
     public List<NotificationDTO> getAdminNotifications(Long userId) {
-        return fetchNotifications(userId, true);
+        return getAdminNotifications(userId, 0, DEFAULT_PAGE_SIZE);
+    }
+
+    public List<NotificationDTO> getAdminNotifications(Long userId, Integer page, Integer size) {
+        return toDTOs(repository.findPageByUserIdAndTypeIn(userId, ADMIN_TYPES, pageOf(page, size)));
+    }
+
+    private static Pageable pageOf(Integer page, Integer size) {
+        int p = (page == null || page < 0) ? 0 : page;
+        int s = (size == null || size <= 0) ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        return PageRequest.of(p, s);
     }
 
-    private List<NotificationDTO> fetchNotifications(Long userId, boolean adminOnly) {
-        return repository.findByUserIdOrderByCreatedAtDesc(userId)
-                .stream()
-                .filter(n -> adminOnly
-                        ? n.getType().name().startsWith("ADMIN_")
-                        : !n.getType().name().startsWith("ADMIN_"))
-                .map(n -> {
-                    User sender = (n.getSenderId() != null)
-                            ? userRepository.findById(n.getSenderId()).orElse(null)
-                            : null;
-                    return toDTO(n, sender);
-                })
-                .collect(Collectors.toList());
+    /**
+     * Conversión de una página: todos los remitentes se resuelven en una sola consulta
+     * (id, username, imagen) en lugar de un findById por notificación.
+     */
+    private List<NotificationDTO> toDTOs(List<Notification> notifications) {
+        if (notifications.isEmpty()) return List.of();
+
+        Set<Long> senderIds = new HashSet<>();
+        for (Notification n : notifications) {
+            if (n.getSenderId() != null) senderIds.add(n.getSenderId());
+        }
+
+        Map<Long, Object[]> senders = new HashMap<>();
+        if (!senderIds.isEmpty()) {
+            for (Object[] row : userRepository.findSenderInfoByIdIn(senderIds)) {
+                senders.put((Long) row[0], row);
+            }
+        }
+
+        List<NotificationDTO> result = new ArrayList<>(notifications.size());
+        for (Notification n : notifications) {
+            NotificationDTO dto = toDTO(n, null);
+
+            Object[] sender = (n.getSenderId() != null) ? senders.get(n.getSenderId()) : null;
+            if (sender != null) {
+                dto.setSenderId((Long) sender[0]);
+                dto.setSenderName((String) sender[1]);
+                dto.setSenderImageUrl((String) sender[2]);
+            }
+
+            result.add(dto);
+        }
+        return result;
     }
 
     // Marcar una como leída
@@ -71,15 +121,14 @@ public class NotificationAppService {
 
         notif.setReadFlag(true);
         repository.save(notif);
+        badgeService.changed(userId);
     }
 
-    // Marcar todas como leídas
+    // Marcar todas como leídas (un solo UPDATE)
+    @Transactional
     public void markAllAsRead(Long userId) {
-        List<Notification> notifs =
-                repository.findByUserIdAndReadFlagFalseOrderByCreatedAtDesc(userId);
-
-        notifs.forEach(n -> n.setReadFlag(true));
-        repository.saveAll(notifs);
+        repository.markAllAsReadByUserId(userId);
+        badgeService.changed(userId);
     }
 
     // Conversión a DTO
@@ -148,4 +148,19 @@ public class NotificationFactory {
         };
     }
 
+    /**
+     * 👉 Mensaje agrupado: "Ana y 3 personas más han dado me gusta a tu publicación".
+     * Con others = 0 es el mensaje normal del tipo.
+     */
+    public String getGroupedMessage(NotificationType type, String senderName, long others) {
+        if (others <= 0) return getMessage(type, senderName);
+
+        String andOthers = senderName + " y " + others + (others == 1 ? " persona más" : " personas más");
+
+        return switch (type) {
+            case POST_LIKED -> andOthers + " han dado me gusta a tu publicación";
+            default -> getMessage(type, andOthers);
+        };
+    }
+
 }
@@ -1,49 +1,95 @@
 package com.example.PadelCaleruela.service;
 
 import com.example.PadelCaleruela.repository.DeviceTokenRepository;
-import com.google.firebase.messaging.FirebaseMessaging;
-import com.google.firebase.messaging.FirebaseMessagingException;
-import com.google.firebase.messaging.Message;
-import com.google.firebase.messaging.Notification;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class NotificationService {
 
     private final DeviceTokenRepository tokenRepository;
+    private final PushSender pushSender;
+    private final PushDispatcher pushDispatcher;
 
-    public void sendPush(String token, String title, String body) {
+    /**
+     * 📤 Envío asíncrono: se encola tras el commit y lo envían los workers
+     * en lotes (con reintentos y limpieza de tokens caducados).
+     */
+    public void sendPushToAll(List<String> tokens, String title, String body) {
+        pushDispatcher.dispatch(tokens, title, body);
+    }
 
-        if (token == null || token.isBlank()) {
-            return;
+    /**
+     * Algunos tokens han tenido un fallo temporal. Lleva solo esos tokens para que
+     * el outbox reintente a ellos y no repita el push a los que ya lo recibieron.
+     */
+    public static class PartialPushException extends RuntimeException {
+
+        private final List<String> retryTokens;
+
+        public PartialPushException(List<String> retryTokens, int total) {
+            super("Push con fallo temporal en " + retryTokens.size() + " de " + total + " tokens");
+            this.retryTokens = List.copyOf(retryTokens);
         }
 
-        Message message = Message.builder()
-                .setNotification(Notification.builder()
-                        .setTitle(title)
-                        .setBody(body)
-                        .build())
-                .setToken(token)
-                .build();
+        public List<String> getRetryTokens() {
+            return retryTokens;
+        }
+    }
 
-        try {
+    /**
+     * 📤 Envío síncrono (lo usa OutboxRelay): vuelve cuando FCM ha contestado.
+     * Borra los tokens caducados y, si quedan fallos temporales, lanza
+     * PartialPushException con esos tokens para que el outbox los reintente.
+     */
+    public void sendPushToAllNow(List<String> tokens, String title, String body) {
+        List<String> valid = tokens.stream()
+                .filter(t -> t != null && !t.isBlank())
+                .distinct()
+                .toList();
 
-            FirebaseMessaging.getInstance().send(message);
+        List<String> unregistered = new ArrayList<>();
+        List<String> retryable = new ArrayList<>();
 
-        } catch (FirebaseMessagingException fme) {
+        for (int from = 0; from < valid.size(); from += PushSender.MAX_BATCH_SIZE) {
+            List<String> batch = valid.subList(from, Math.min(from + PushSender.MAX_BATCH_SIZE, valid.size()));
+            PushSender.Failures failures = PushSender.classify(batch, pushSender.sendBatch(batch, title, body));
+            unregistered.addAll(failures.unregistered());
+            retryable.addAll(failures.retryable());
+        }
 
-            if ("UNREGISTERED".equals(fme.getErrorCode())) {
-                System.out.println("⚠ Token inválido → eliminado: " + token);
-                tokenRepository.deleteByToken(token);
-                return;
-            }
+        if (!unregistered.isEmpty()) {
+            tokenRepository.deleteByTokenIn(unregistered);
+            System.out.println("⚠ Tokens inválidos eliminados: " + unregistered.size());
+        }
+
+        if (!retryable.isEmpty()) {
+            throw new PartialPushException(retryable, valid.size());
+        }
+    }
+
+    /**
+     * Envío síncrono a un único token (p.ej. la notificación de prueba).
+     */
+    public void sendPush(String token, String title, String body) {
 
-            throw new RuntimeException("Error enviando push: " + fme.getErrorCode(), fme);
+        if (token == null || token.isBlank()) {
+            return;
+        }
 
-        } catch (Exception ex) {
-            throw new RuntimeException("Error inesperado enviando push: " + ex.getMessage(), ex);
+        PushSender.Result result = pushSender.sendBatch(List.of(token), title, body).get(0);
+
+        switch (result) {
+            case OK -> { }
+            case UNREGISTERED -> {
+                System.out.println("⚠ Token inválido → eliminado: " + token);
+                tokenRepository.deleteByTokenIn(List.of(token));
+            }
+            default -> throw new RuntimeException("Error enviando push: " + result);
         }
     }
 
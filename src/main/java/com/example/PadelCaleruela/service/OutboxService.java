@@ -0,0 +1,60 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.AuthenticatedPrincipal;
+import com.example.PadelCaleruela.model.OutboxChannel;
+import com.example.PadelCaleruela.model.OutboxMessage;
+import com.example.PadelCaleruela.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Escritura en el outbox de notificaciones.
+ * Se une a la transacción del llamador: si hace rollback, el mensaje no existe.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxMessageRepository outboxRepository;
+    private final PrincipalCache principalCache;
+
+    @Transactional
+    public void enqueuePush(Long userId, String title, String body) {
+        OutboxMessage m = new OutboxMessage();
+        m.setChannel(OutboxChannel.PUSH);
+        m.setUserId(userId);
+        m.setAyuntamientoId(ayuntamientoOf(userId));
+        m.setTitle(title);
+        m.setBody(body);
+        outboxRepository.save(m);
+    }
+
+    @Transactional
+    public void enqueueEmail(String to, String subject, String htmlContent) {
+        OutboxMessage m = new OutboxMessage();
+        m.setChannel(OutboxChannel.EMAIL);
+        m.setRecipient(to);
+        m.setAyuntamientoId(currentAyuntamientoId());
+        m.setTitle(subject);
+        m.setBody(htmlContent);
+        outboxRepository.save(m);
+    }
+
+    // ======================================================
+    // 🏛 Ayuntamiento del mensaje (para repartir turnos en OutboxRelay)
+    // ======================================================
+
+    // Push → ayuntamiento del destinatario (caché de principals, sin consulta normalmente)
+    private Long ayuntamientoOf(Long userId) {
+        if (userId == null) return null;
+        AuthenticatedPrincipal p = principalCache.get(userId);
+        return p != null ? p.ayuntamientoId() : null;
+    }
+
+    // Email → ayuntamiento de quien provoca el envío (null en tareas programadas)
+    private Long currentAyuntamientoId() {
+        AuthenticatedPrincipal current = AuthenticatedPrincipal.current();
+        return current != null ? current.ayuntamientoId() : null;
+    }
+}
@@ -24,6 +24,7 @@ public class PasswordService {
     private final EmailService emailService;
     private final PasswordEncoder passwordEncoder;
     private final AuthService authService;
+    private final RefreshTokenService refreshTokenService;
 
     /**
      * 1️⃣ El usuario solicita recuperación de contraseña
@@ -58,17 +59,9 @@ public class PasswordService {
         tokenRepository.save(token);
 
         // Enviar correo
-        String html = """
-            <div style="font-family: Arial, sans-serif; color: #333;">
-                <h2>Recuperación de contraseña 🔐</h2>
-                <p>Hola %s,</p>
-                <p>Tu código de verificación es:</p>
-                <h3 style="color:#0b5ed7;">%s</h3>
-                <p>El código caduca en 10 minutos.</p>
-            </div>
-            """.formatted(user.getUsername(), code);
-
-        emailService.sendHtmlEmail(user.getEmail(), "Código de recuperación", html);
+        emailService.sendTemplate(user.getEmail(), "Código de recuperación",
+                EmailTemplates.Template.CODIGO_RECUPERACION,
+                EmailTemplates.vars("usuario", user.getUsername(), "codigo", code));
     }
 
     /**
@@ -125,6 +118,7 @@ public class PasswordService {
         // Cambiar contraseña
         targetUser.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(targetUser);
+        refreshTokenService.revokeAllForUser(targetUser.getId());
 
         // Eliminar token usado
         tokenRepository.delete(token);
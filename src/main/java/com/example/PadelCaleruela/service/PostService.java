@@ -2,9 +2,13 @@ package com.example.PadelCaleruela.service;
 
 import com.example.PadelCaleruela.AppProperties;
 import com.example.PadelCaleruela.dto.PostDTO;
+import com.example.PadelCaleruela.dto.PostPageDTO;
 import com.example.PadelCaleruela.model.*;
 import com.example.PadelCaleruela.repository.*;
+import com.example.PadelCaleruela.util.FeedCursor;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,12 +19,17 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 @Service
 public class PostService {
@@ -30,65 +39,95 @@ public class PostService {
     private final UserService userService;
     private final AppProperties appProperties;
 
-    private final UserSeenPostRepository userSeenPostRepository;
+    private final SeenPostBuffer seenPostBuffer;
 
-    private final BlockRepository blockRepository;
+    private final BlockGraphService blockGraph;
     private final LikeRepository likeRepository;
     private  final AuthService authService;
+    private final FeedTimelineStore timelineStore;
+
+    // 📜 Tamaño de página de los feeds
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 50;
 
     public PostService(PostRepository repo,
                        UserRepository userRepository,
                        UserService userService,
                        AppProperties appProperties,
-                       UserSeenPostRepository userSeenPostRepository,
-                       BlockRepository blockRepository,
+                       SeenPostBuffer seenPostBuffer,
+                       BlockGraphService blockGraph,
                        LikeRepository likeRepository,
-                       AuthService authService
+                       AuthService authService,
+                       FeedTimelineStore timelineStore
     ) {
         this.postRepository = repo;
         this.userRepository = userRepository;
         this.userService = userService;
         this.appProperties=appProperties;
-        this.userSeenPostRepository=userSeenPostRepository;
-        this.blockRepository=blockRepository;
+        this.seenPostBuffer=seenPostBuffer;
+        this.blockGraph=blockGraph;
         this.likeRepository=likeRepository;
         this.authService=authService;
+        this.timelineStore=timelineStore;
     }
 
-    // 🔹 Feed personalizado para el usuario autenticado
+    // 🔹 Feed personalizado para el usuario autenticado (paginado por cursor)
     //    - Posts de usuarios que sigue (PUBLIC + FRIENDS)
-    //    - Sus propios posts (incluye PRIVATE)
-    //    - Posts PUBLIC de su ayuntamiento
-    public List<PostDTO> getFeed(User currentUser) {
+    //    - Sus propios posts (solo FRIENDS)
+    public PostPageDTO getFeed(User currentUser, String cursor, Integer size) {
 
         Long userId = currentUser.getId();
         LocalDateTime minDate = LocalDateTime.now().minusHours(24);
+        FeedCursor before = FeedCursor.decode(cursor);
+        int pageSize = clampPageSize(size);
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
+
+        // Posts de personas que sigo:
+        //  - fan-out-on-write → rango del timeline materializado
+        //  - fan-out-on-read  → consulta con Friendship
+        List<Post> posts;
+        if (timelineStore.isFanOutOnWrite()) {
+            posts = timelinePage(userId, minDate, before, pageSize + 1);
+        } else {
+            posts = postRepository.findRecentFeedForUser(
+                    userId, minDate, before.createdAt(), before.id(), fetch);
+        }
 
-        // Posts de personas que sigo
-        List<Post> posts = postRepository.findRecentFeedForUser(userId, minDate);
-
-        // Mis propios posts (solo FRIENDS o PUBLIC)
-        List<Post> misPosts = postRepository
-                .findByUserIdAndCreatedAtGreaterThanEqual(userId, minDate)
-                .stream()
-                .filter(p ->p.getVisibility() == Visibility.FRIENDS)
-                .toList();
+        // Mis propios posts (solo FRIENDS)
+        List<Post> misPosts = postRepository.findRecentByUserIdAndVisibility(
+                userId, Visibility.FRIENDS, minDate, before.createdAt(), before.id(), fetch);
 
         // Mezclamos feed + mis posts sin duplicados
-        List<Post> combinados = Stream.concat(posts.stream(), misPosts.stream())
-                .distinct()
-                .toList();
+        PostPage page = mergePage(pageSize, posts, misPosts);
 
-        return combinados.stream()
-                .map(this::convertToDTO)
-                .toList();
+        return new PostPageDTO(convertToDTOs(page.posts()), page.nextCursor());
     }
 
 
 
+    /**
+     * Lee del timeline hasta tener {@code wanted} posts visibles o agotarlo.
+     * Posts borrados o pasados a PRIVATE se caen al cargarlos: sin seguir
+     * leyendo, la página saldría corta y el feed acabaría antes de tiempo.
+     */
+    private List<Post> timelinePage(Long userId, LocalDateTime minDate, FeedCursor before, int wanted) {
+        List<Post> posts = new ArrayList<>(wanted);
+        FeedCursor from = before;
 
+        while (posts.size() < wanted) {
+            List<FeedCursor> keys = timelineStore.range(userId, minDate, from, wanted - posts.size());
+            if (keys.isEmpty()) break;
 
+            List<Long> ids = keys.stream().map(FeedCursor::id).toList();
+            postRepository.findAllWithUserByIdIn(ids).stream()
+                    .filter(p -> p.getVisibility() != Visibility.PRIVATE)
+                    .forEach(posts::add);
 
+            from = keys.get(keys.size() - 1);
+        }
+
+        return posts;
+    }
 
     // 🔹 Feed de otro usuario (solo para SuperAdmin)
     public List<PostDTO> getFeedForUserId(Long targetUserId, User currentUser) {
@@ -96,96 +135,91 @@ public class PostService {
             throw new AccessDeniedException("Solo SuperAdmin puede ver el feed de otros usuarios.");
         }
         List<Post> posts = postRepository.findFeedForUser(targetUserId);
-        return posts.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(posts);
     }
 
-    // 🔹 Feed público: posts PUBLIC del ayuntamiento del usuario
-    public List<PostDTO> getPublicFeed(User currentUser) {
+    // 🔹 Feed público: posts PUBLIC del ayuntamiento del usuario (paginado por cursor)
+    public PostPageDTO getPublicFeed(User currentUser, String cursor, Integer size) {
 
         Ayuntamiento ayto = currentUser.getAyuntamiento();
         Long userId = currentUser.getId();
 
-        if (ayto == null) return List.of();
+        if (ayto == null) return new PostPageDTO(List.of(), null);
 
         Long ayId = ayto.getId();
         LocalDateTime minDate = LocalDateTime.now().minusHours(24);
+        FeedCursor before = FeedCursor.decode(cursor);
+        int pageSize = clampPageSize(size);
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
 
         // 1️⃣ Traemos tus posts (siempre)
-        List<Post> misPosts = postRepository
-                .findByUserIdAndCreatedAtGreaterThanEqual(userId, minDate)
-                .stream()
-                .filter(p -> p.getVisibility() == Visibility.PUBLIC)
-                .toList();
+        List<Post> misPosts = postRepository.findRecentByUserIdAndVisibility(
+                userId, Visibility.PUBLIC, minDate, before.createdAt(), before.id(), fetch);
 
         // 2️⃣ Traemos los demás posts públicos no seguidos
         List<Post> otros = postRepository.findRecentPublicPostsNotFollowed(
-                userId, ayId, minDate
+                userId, ayId, minDate, before.createdAt(), before.id(), fetch
         );
 
-        // 3️⃣ Unimos ambas listas
-        List<Post> posts = Stream.concat(misPosts.stream(), otros.stream())
-                .distinct()
-                .toList();
-
-        // === Bloqueos ===
-        Set<Long> yoBloqueo = blockRepository.findByBlockedByUser(currentUser)
-                .stream().map(b -> b.getBlockedUser().getId()).collect(Collectors.toSet());
-
-        Set<Long> meBloquearon = blockRepository.findByBlockedUser(currentUser)
-                .stream().filter(b -> b.getBlockedByUser() != null)
-                .map(b -> b.getBlockedByUser().getId()).collect(Collectors.toSet());
-
-        Set<Long> aytoBloquea = blockRepository.findByBlockedByAyuntamiento(ayto)
-                .stream().map(b -> b.getBlockedUser().getId()).collect(Collectors.toSet());
+        // 3️⃣ Unimos ambas listas (el cursor se calcula antes de filtrar bloqueos)
+        PostPage page = mergePage(pageSize, misPosts, otros);
+        List<Post> posts = page.posts();
 
-        Set<Long> aytosQueMeBloquearon = blockRepository.findByBlockedUser(currentUser)
-                .stream().filter(b -> b.getBlockedByAyuntamiento() != null)
-                .map(b -> b.getBlockedByAyuntamiento().getId()).collect(Collectors.toSet());
+        // === Bloqueos (en memoria, desde el grafo de bloqueos) ===
+        BlockGraphService.BlockView blocks = blockGraph.viewFor(currentUser);
 
         // === Filtrado final ===
-        return posts.stream()
+        List<Post> visibles = posts.stream()
                 .filter(p -> p.getVisibility() == Visibility.PUBLIC ||
                         p.getUser().getId().equals(userId)) // 🔥 Tus posts siempre entran
-                .filter(p -> !yoBloqueo.contains(p.getUser().getId()))
-                .filter(p -> !meBloquearon.contains(p.getUser().getId()))
-                .filter(p -> !aytoBloquea.contains(p.getUser().getId()))
-                .filter(p -> !aytosQueMeBloquearon.contains(ayId))
-                .map(this::convertToDTO)
+                .filter(p -> !blocks.iBlock(p.getUser().getId()))
+                .filter(p -> !blocks.blocksMe(p.getUser().getId()))
+                .filter(p -> !blocks.myAyuntamientoBlocks(p.getUser().getId()))
+                .filter(p -> !blocks.ayuntamientoBlocksMe(ayId))
                 .toList();
+
+        return new PostPageDTO(convertToDTOs(visibles), page.nextCursor());
     }
 
 
 
 
 
-    /** 👉 Registrar que un post fue visto */
+    /** 👉 Registrar que un post fue visto (se guarda en bloque, ver SeenPostBuffer) */
     public void markAsSeen(Long userId, Long postId) {
-        if (!userSeenPostRepository.existsByUserIdAndPostId(userId, postId)) {
-            UserSeenPost seen = new UserSeenPost();
-            seen.setUserId(userId);
-            seen.setPostId(postId);
-            seen.setSeenAt(LocalDateTime.now());
-            userSeenPostRepository.save(seen);
-        }
+        seenPostBuffer.record(userId, postId);
     }
 
-    // 🔹 Posts de un usuario concreto, respetando visibilidad
-    public List<PostDTO> getPostsByUser(Long ownerId, User currentUser) {
+    // 🔹 Posts de un usuario concreto, respetando visibilidad (paginado por cursor)
+    public PostPageDTO getPostsByUser(Long ownerId, User currentUser, String cursor, Integer size) {
         User owner = userRepository.findById(ownerId)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado."));
 
-        List<Post> posts = postRepository.findByUserId(ownerId);
+        FeedCursor before = FeedCursor.decode(cursor);
+        int pageSize = clampPageSize(size);
 
-        return posts.stream()
-                .filter(p -> canUserViewPostPerfil(currentUser, p))
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        PostPage page = mergePage(pageSize, postRepository.findByUserId(
+                ownerId, before.createdAt(), before.id(), PageRequest.of(0, pageSize + 1)));
+        List<Post> posts = page.posts();
+
+        // Todos los posts son del mismo dueño: el "¿lo sigo?" se consulta una sola vez
+        boolean followsOwner = currentUser != null
+                && userService.isFollowing(currentUser.getId(), owner.getId());
+
+        List<Post> visibles = posts.stream()
+                .filter(p -> canUserViewPostPerfil(currentUser, p, () -> followsOwner))
+                .toList();
+
+        return new PostPageDTO(convertToDTOs(visibles), page.nextCursor());
     }
 
 
     private boolean canUserViewPostPerfil(User viewer, Post post) {
+        return canUserViewPostPerfil(viewer, post,
+                () -> userService.isFollowing(viewer.getId(), post.getUser().getId()));
+    }
+
+    private boolean canUserViewPostPerfil(User viewer, Post post, BooleanSupplier followsOwner) {
         if (viewer == null || post == null) return false;
 
         User owner = post.getUser();
@@ -201,7 +235,6 @@ public class PostService {
         }
 
         Visibility visibility = post.getVisibility();
-        boolean followsOwner = userService.isFollowing(viewer.getId(), owner.getId());
 
         switch (visibility) {
 
@@ -211,7 +244,7 @@ public class PostService {
 
             case FRIENDS:
                 // 🔥 Solo si lo sigo
-                return followsOwner;
+                return followsOwner.getAsBoolean();
 
             case PUBLIC:
                 // 🔥 Todos pueden verlo
@@ -284,6 +317,7 @@ public class PostService {
         }
 
         Post saved = postRepository.save(post);
+        timelineStore.onPostCreated(saved);
         return convertToDTO(saved);
     }
 
@@ -323,6 +357,7 @@ public class PostService {
         }
 
         // Solo mensaje, resultado y visibilidad; no se cambia el usuario ni ayuntamiento
+        Visibility previous = post.getVisibility();
         post.setMessage(postDTO.getMessage());
         post.setMatchResult(postDTO.getMatchResult());
         if (postDTO.getVisibility() != null) {
@@ -330,6 +365,9 @@ public class PostService {
         }
 
         Post updated = postRepository.save(post);
+        if (updated.getVisibility() != previous) {
+            timelineStore.onVisibilityChanged(updated);
+        }
         return convertToDTO(updated);
     }
 
@@ -342,6 +380,7 @@ public class PostService {
             throw new AccessDeniedException("No tienes permiso para eliminar este post.");
         }
 
+        timelineStore.onPostDeleted(post);
         postRepository.delete(post);
     }
 
@@ -361,12 +400,104 @@ public class PostService {
 
         // Guardamos y devolvemos DTO
         Post saved = postRepository.save(post);
+        timelineStore.onVisibilityChanged(saved);
         return convertToDTO(saved);
     }
 
 
-    // 🔹 Conversión entidad → DTO
+    // ==========================================
+    // 📜 PAGINACIÓN POR CURSOR (createdAt, id)
+    // ==========================================
+
+    private record PostPage(List<Post> posts, String nextCursor) {}
+
+    private static final Comparator<Post> NEWEST_FIRST =
+            Comparator.comparing(Post::getCreatedAt)
+                    .thenComparing(Post::getId)
+                    .reversed();
+
+    // 🔹 Versiones sin paginar para clientes que no mandan cursor/size (misma forma de antes):
+    //    recorren todas las páginas con el tamaño máximo
+    public List<PostDTO> getFeed(User currentUser) {
+        return allPages(cursor -> getFeed(currentUser, cursor, MAX_PAGE_SIZE));
+    }
+
+    public List<PostDTO> getPublicFeed(User currentUser) {
+        return allPages(cursor -> getPublicFeed(currentUser, cursor, MAX_PAGE_SIZE));
+    }
+
+    public List<PostDTO> getPostsByUser(Long ownerId, User currentUser) {
+        return allPages(cursor -> getPostsByUser(ownerId, currentUser, cursor, MAX_PAGE_SIZE));
+    }
+
+    private static List<PostDTO> allPages(Function<String, PostPageDTO> pageFetcher) {
+        List<PostDTO> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            PostPageDTO page = pageFetcher.apply(cursor);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    private int clampPageSize(Integer size) {
+        if (size == null || size <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Mezcla fuentes ya ordenadas (createdAt DESC, id DESC), quita duplicados
+     * y corta a pageSize. Cada fuente se pide con pageSize + 1 filas, así
+     * sabemos si queda algo sin una consulta de conteo.
+     */
+    @SafeVarargs
+    private PostPage mergePage(int pageSize, List<Post>... sources) {
+        Map<Long, Post> byId = new HashMap<>();
+        for (List<Post> source : sources) {
+            source.forEach(p -> byId.putIfAbsent(p.getId(), p));
+        }
+
+        List<Post> merged = byId.values().stream()
+                .sorted(NEWEST_FIRST)
+                .toList();
+
+        if (merged.size() <= pageSize) {
+            return new PostPage(merged, null);
+        }
+
+        List<Post> page = merged.subList(0, pageSize);
+        Post last = page.get(page.size() - 1);
+        return new PostPage(page, new FeedCursor(last.getCreatedAt(), last.getId()).encode());
+    }
+
+
+    // 🔹 Conversión entidad → DTO (un solo post)
     private PostDTO convertToDTO(Post post) {
+        return convertToDTOs(List.of(post)).get(0);
+    }
+
+    /**
+     * Conversión en bloque para feeds y perfiles.
+     * Presupuesto fijo por página, sin importar cuántos posts tenga:
+     *  - el nº de likes viene ya en el post (likeCount desnormalizado)
+     *  - 1 consulta de "likes míos" sobre los ids de la página
+     *  - el usuario actual se resuelve una sola vez (memoizado por petición)
+     */
+    private List<PostDTO> convertToDTOs(List<Post> posts) {
+        if (posts.isEmpty()) return List.of();
+
+        List<Long> postIds = posts.stream().map(Post::getId).toList();
+
+        Long currentUserId = authService.getCurrentPrincipal().id();
+        Set<Long> likedByMe = new HashSet<>(likeRepository.findLikedPostIds(currentUserId, postIds));
+
+        return posts.stream()
+                .map(p -> toDTO(p, p.getLikeCount(), likedByMe.contains(p.getId())))
+                .toList();
+    }
+
+    private PostDTO toDTO(Post post, long likes, boolean liked) {
         PostDTO dto = new PostDTO();
 
         dto.setId(post.getId());
@@ -380,11 +511,7 @@ public class PostService {
         dto.setUserImageUrl(post.getUser().getProfileImageUrl());
 
         // 🔥 Añadimos likes
-        long likes = likeRepository.countByPost(post);
         dto.setLikesCount(likes);
-
-        User current = authService.getCurrentUser();
-        boolean liked = likeRepository.existsByUserAndPost(current, post);
         dto.setLikedByCurrentUser(liked);
 
         return dto;
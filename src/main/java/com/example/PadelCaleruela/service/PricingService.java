@@ -5,37 +5,112 @@ import com.example.PadelCaleruela.model.Tarifa;
 import com.example.PadelCaleruela.model.TarifaFranja;
 import com.example.PadelCaleruela.repository.TarifaFranjaRepository;
 import com.example.PadelCaleruela.repository.TarifaRepository;
+import com.example.PadelCaleruela.util.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
 public class PricingService {
 
+    // Por si otra instancia modifica tarifas: una tabla compilada se recompila pasado este tiempo
+    private static final Duration SCHEDULE_TTL = Duration.ofMinutes(10);
+
     private final TarifaRepository tarifaRepo;
     private final TarifaFranjaRepository franjaRepo;
 
+    // 💶 Tabla de precios compilada por ayuntamiento (una entrada por hora)
+    private final Map<Long, PriceSchedule> schedules = new ConcurrentHashMap<>();
+    // Sube con cada invalidate: una compilación que empezó antes no se publica
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Precio por hora ya resuelto a partir de Tarifa + TarifaFranja.
+     * Una entrada null significa: sin franja y sin tarifa base.
+     */
+    private record PriceSchedule(BigDecimal[] byHour, Instant compiledAt) {
+
+        boolean isExpired() {
+            return compiledAt.plus(SCHEDULE_TTL).isBefore(Instant.now());
+        }
+    }
+
     public BigDecimal calcularPrecio(LocalDateTime start, Ayuntamiento ay) {
+        return calcularPrecio(start.toLocalTime(), ay.getId());
+    }
 
-        int hora = start.getHour();
+    public BigDecimal calcularPrecio(LocalTime hora, Long ayuntamientoId) {
+        BigDecimal precio = getSchedule(ayuntamientoId).byHour()[hora.getHour()];
+
+        if (precio == null) {
+            throw new RuntimeException("No hay tarifa base definida para este ayuntamiento");
+        }
+
+        return precio;
+    }
+
+    /**
+     * Descarta la tabla compilada del ayuntamiento. Se llama tras crear,
+     * actualizar o eliminar tarifas y franjas (después del commit).
+     */
+    public void invalidate(Long ayuntamientoId) {
+        if (ayuntamientoId == null) return;
+        TransactionUtils.afterCommit(() -> schedules.compute(ayuntamientoId, (k, cur) -> {
+            versions.merge(k, 1L, Long::sum);
+            return null;
+        }));
+    }
 
-        // 1️⃣ Buscar franja especial
-        List<TarifaFranja> franjas = franjaRepo.findByAyuntamiento(ay);
+    // ======================================================
+    // 🔧 Compilación
+    // ======================================================
 
-        for (TarifaFranja f : franjas) {
-            if (hora >= f.getHoraInicio() && hora < f.getHoraFin()) {
-                return f.getPrecio();
+    private PriceSchedule getSchedule(Long ayuntamientoId) {
+        PriceSchedule schedule = schedules.get(ayuntamientoId);
+
+        if (schedule != null && !schedule.isExpired()) return schedule;
+
+        long version = versions.getOrDefault(ayuntamientoId, 0L);
+        PriceSchedule candidate = compile(ayuntamientoId);
+
+        // Si se invalidó mientras compilábamos, se usa para esta llamada pero no se publica
+        schedules.compute(ayuntamientoId, (k, cur) ->
+                versions.getOrDefault(k, 0L) == version ? candidate : cur);
+
+        return candidate;
+    }
+
+    private PriceSchedule compile(Long ayuntamientoId) {
+
+        BigDecimal base = tarifaRepo.findByAyuntamientoId(ayuntamientoId)
+                .map(Tarifa::getPrecioBase)
+                .orElse(null);
+
+        List<TarifaFranja> franjas = franjaRepo.findByAyuntamientoId(ayuntamientoId);
+
+        BigDecimal[] byHour = new BigDecimal[24];
+
+        for (int hour = 0; hour < 24; hour++) {
+            byHour[hour] = base;
+
+            // 1️⃣ La primera franja que contiene la hora gana (mismo orden que antes)
+            for (TarifaFranja f : franjas) {
+                if (hour >= f.getHoraInicio() && hour < f.getHoraFin()) {
+                    byHour[hour] = f.getPrecio();
+                    break;
+                }
             }
         }
 
-        // 2️⃣ Precio base
-        Tarifa tarifa = tarifaRepo.findByAyuntamiento(ay)
-                .orElseThrow(() -> new RuntimeException("No hay tarifa base definida para este ayuntamiento"));
-
-        return tarifa.getPrecioBase();
+        return new PriceSchedule(byHour, Instant.now());
     }
 }
@@ -0,0 +1,48 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.AuthenticatedPrincipal;
+import com.example.PadelCaleruela.repository.UserRepository;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import com.example.PadelCaleruela.util.TtlCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Caché acotada de {@link AuthenticatedPrincipal} por id de usuario.
+ * Los cambios de rol, ayuntamiento, estado o borrado la invalidan tras el commit;
+ * el TTL cubre los cambios hechos desde otra instancia.
+ * Cada invalidación se apunta también en {@link TokenRevocations}, para que los
+ * tokens emitidos antes del cambio dejen de valer tal cual.
+ */
+@Component
+@RequiredArgsConstructor
+public class PrincipalCache {
+
+    private static final int MAX_SIZE = 10_000;
+    private static final Duration TTL = Duration.ofSeconds(60);
+
+    private final UserRepository userRepository;
+    private final TokenRevocations tokenRevocations;
+
+    private final TtlCache<Long, AuthenticatedPrincipal> cache = new TtlCache<>(MAX_SIZE, TTL);
+
+    /** Devuelve el principal del usuario o null si ya no existe. */
+    public AuthenticatedPrincipal get(Long userId) {
+        return cache.computeIfAbsent(userId, id ->
+                userRepository.findById(id)
+                        .map(AuthenticatedPrincipal::of)
+                        .orElse(null));
+    }
+
+    public void evict(Long userId) {
+        if (userId == null) return;
+        TransactionUtils.afterCommit(() -> cache.invalidate(userId));
+        tokenRevocations.markChanged(userId);
+    }
+
+    public void evictAll() {
+        TransactionUtils.afterCommit(cache::invalidateAll);
+    }
+}
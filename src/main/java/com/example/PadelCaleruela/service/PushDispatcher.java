@@ -0,0 +1,140 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.repository.DeviceTokenRepository;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola de envíos push.
+ * Las peticiones se encolan (tras el commit si hay transacción) y un pool acotado
+ * de hilos virtuales las envía en lotes de hasta 500 tokens. Los fallos temporales
+ * se reintentan con backoff exponencial y los tokens UNREGISTERED se borran en bloque.
+ */
+@Component
+@RequiredArgsConstructor
+public class PushDispatcher {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int WORKERS = 4;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(2);
+
+    private final PushSender pushSender;
+    private final DeviceTokenRepository tokenRepository;
+
+    private final BlockingQueue<PushJob> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong rejected = new AtomicLong();
+
+    private ExecutorService workers;
+    private ScheduledExecutorService retries;
+
+    private record PushJob(List<String> tokens, String title, String body, int attempt) {}
+
+    @PostConstruct
+    void start() {
+        workers = Executors.newFixedThreadPool(WORKERS, Thread.ofVirtual().name("push-", 0).factory());
+        retries = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("push-retry").daemon().factory());
+
+        for (int i = 0; i < WORKERS; i++) {
+            workers.submit(this::drain);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        retries.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // ======================================================
+    // 📤 Encolar
+    // ======================================================
+
+    /** Encola el mensaje para todos los tokens; no bloquea al llamador. */
+    public void dispatch(List<String> tokens, String title, String body) {
+        List<String> valid = tokens.stream()
+                .filter(t -> t != null && !t.isBlank())
+                .distinct()
+                .toList();
+
+        if (valid.isEmpty()) return;
+
+        TransactionUtils.afterCommit(() -> {
+            for (int from = 0; from < valid.size(); from += PushSender.MAX_BATCH_SIZE) {
+                List<String> batch = valid.subList(from, Math.min(from + PushSender.MAX_BATCH_SIZE, valid.size()));
+                enqueue(new PushJob(List.copyOf(batch), title, body, 1));
+            }
+        });
+    }
+
+    private void enqueue(PushJob job) {
+        if (!queue.offer(job)) {
+            long total = rejected.incrementAndGet();
+            System.out.println("⚠ Cola push llena: descartado lote de " + job.tokens().size()
+                    + " tokens (descartados en total: " + total + ")");
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    // ======================================================
+    // ⚙️ Workers
+    // ======================================================
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                send(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.out.println("⚠ Error inesperado en worker push: " + e.getMessage());
+            }
+        }
+    }
+
+    private void send(PushJob job) {
+        PushSender.Failures failures = PushSender.classify(
+                job.tokens(), pushSender.sendBatch(job.tokens(), job.title(), job.body()));
+
+        List<String> unregistered = failures.unregistered();
+        List<String> retry = failures.retryable();
+
+        // 🧹 Limpieza en bloque de tokens caducados
+        if (!unregistered.isEmpty()) {
+            tokenRepository.deleteByTokenIn(unregistered);
+            System.out.println("⚠ Tokens inválidos eliminados: " + unregistered.size());
+        }
+
+        // 🔁 Reintento con backoff exponencial (2s, 4s, 8s)
+        if (!retry.isEmpty()) {
+            if (job.attempt() >= MAX_ATTEMPTS) {
+                System.out.println("⚠ Push descartado tras " + job.attempt() + " intentos (" + retry.size() + " tokens)");
+                return;
+            }
+
+            long delay = BASE_BACKOFF.toMillis() << (job.attempt() - 1);
+            PushJob next = new PushJob(retry, job.title(), job.body(), job.attempt() + 1);
+            retries.schedule(() -> enqueue(next), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.PadelCaleruela.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Envío de notificaciones push a un lote de tokens.
+ * La implementación real es FirebasePushSender; en tests se puede registrar
+ * un bean falso que devuelva los resultados que interesen.
+ */
+public interface PushSender {
+
+    // Máximo de tokens por llamada (límite de FCM sendEach)
+    int MAX_BATCH_SIZE = 500;
+
+    enum Result {
+        OK,
+        UNREGISTERED, // token caducado o desinstalado → se borra
+        RETRYABLE,    // fallo temporal (cuota, indisponible...) → se reintenta
+        FAILED        // fallo definitivo para ese token
+    }
+
+    /**
+     * Envía el mismo mensaje a todos los tokens (como mucho MAX_BATCH_SIZE).
+     * Devuelve un resultado por token, en el mismo orden.
+     */
+    List<Result> sendBatch(List<String> tokens, String title, String body);
+
+    /** Tokens de un lote que no han ido bien, según lo que hay que hacer con ellos. */
+    record Failures(List<String> unregistered, List<String> retryable) {}
+
+    /**
+     * Clasifica los resultados de sendBatch (mismo orden que {@code batch}).
+     * Un token sin resultado cuenta como fallo temporal.
+     */
+    static Failures classify(List<String> batch, List<Result> results) {
+        List<String> unregistered = new ArrayList<>();
+        List<String> retryable = new ArrayList<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            Result r = i < results.size() ? results.get(i) : Result.RETRYABLE;
+            switch (r) {
+                case UNREGISTERED -> unregistered.add(batch.get(i));
+                case RETRYABLE -> retryable.add(batch.get(i));
+                default -> { }
+            }
+        }
+
+        return new Failures(unregistered, retryable);
+    }
+}
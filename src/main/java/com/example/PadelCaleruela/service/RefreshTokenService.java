@@ -0,0 +1,128 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.model.RefreshToken;
+import com.example.PadelCaleruela.repository.RefreshTokenRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Refresh tokens rotatorios: opacos, de un solo uso y guardados como hash.
+ * Permiten renovar el JWT sin volver a pasar por BCrypt en cada sesión.
+ */
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    /** Resultado de un refresco: para qué usuario y el nuevo refresh token en claro. */
+    public record Rotation(Long userId, String refreshToken) {}
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${app.auth.refresh-token-days:30}")
+    private int refreshTokenDays;
+
+    /** Nueva familia (login/registro en un dispositivo). Devuelve el token en claro. */
+    @Transactional
+    public String issue(Long userId) {
+        return create(userId, UUID.randomUUID().toString(), LocalDateTime.now().plusDays(refreshTokenDays));
+    }
+
+    /**
+     * Consume el token y emite el siguiente de la misma familia.
+     * Si el token ya se había usado o revocado, revoca la familia entera
+     * (la revocación se guarda aunque se lance la excepción).
+     */
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public Rotation rotate(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            throw new InvalidRefreshTokenException("Refresh token requerido");
+        }
+
+        RefreshToken current = refreshTokenRepository.findByTokenHashForUpdate(hash(rawToken))
+                .orElseThrow(() -> new InvalidRefreshTokenException("Refresh token no válido"));
+
+        if (current.isRevoked() || current.getUsedAt() != null) {
+            // ⚠️ Reutilización: alguien tiene una copia → fuera toda la familia
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            System.out.println("⚠️ Refresh token reutilizado (usuario " + current.getUserId()
+                    + "), familia " + current.getFamilyId() + " revocada");
+            throw new InvalidRefreshTokenException("Refresh token no válido");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (current.getExpiresAt().isBefore(now)) {
+            throw new InvalidRefreshTokenException("Refresh token caducado");
+        }
+
+        current.setUsedAt(now);
+
+        // La caducidad es de la familia: rotar no la alarga (login cada refresh-token-days)
+        return new Rotation(current.getUserId(),
+                create(current.getUserId(), current.getFamilyId(), current.getExpiresAt()));
+    }
+
+    /** Logout de un dispositivo: revoca la familia del token (si existe). */
+    @Transactional
+    public void revoke(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) return;
+        refreshTokenRepository.findByTokenHashForUpdate(hash(rawToken))
+                .ifPresent(t -> refreshTokenRepository.revokeFamily(t.getFamilyId()));
+    }
+
+    /** Cambio de contraseña, borrado...: todas las sesiones del usuario tendrán que hacer login. */
+    @Transactional
+    public void revokeAllForUser(Long userId) {
+        if (userId == null) return;
+        refreshTokenRepository.revokeAllByUserId(userId);
+    }
+
+    // 🧹 Cada noche: fuera los caducados (los usados/revocados se quedan hasta caducar
+    //    para poder detectar reutilizaciones)
+    @Scheduled(cron = "0 0 5 * * *")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = refreshTokenRepository.deleteByExpiresAtBefore(LocalDateTime.now());
+        if (deleted > 0) {
+            System.out.println("🧹 Refresh tokens: " + deleted + " caducados eliminados");
+        }
+    }
+
+    private String create(Long userId, String familyId, LocalDateTime familyExpiresAt) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String raw = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(raw));
+        token.setUserId(userId);
+        token.setFamilyId(familyId);
+        token.setExpiresAt(familyExpiresAt);
+        refreshTokenRepository.save(token);
+
+        return raw;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.WelockClient;
+import com.example.PadelCaleruela.model.*;
+import com.example.PadelCaleruela.repository.LockPasswordRepository;
+import com.example.PadelCaleruela.repository.LockRepository;
+import com.example.PadelCaleruela.repository.ReservationRepository;
+import com.example.PadelCaleruela.util.BoundedExecutor;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Códigos Welock de una reserva pagada.
+ *
+ * Se generan después del commit del pago y fuera del hilo del webhook:
+ *   1️⃣ lectura de reserva y cerraduras (transacción corta)
+ *   2️⃣ una petición a Welock por cerradura, todas en paralelo y con timeout
+ *   3️⃣ guardado de las claves + emails de confirmación (otra transacción corta)
+ * Ningún hilo se queda esperando: la fase 3 arranca cuando terminan las peticiones.
+ *
+ * Lo que se pierda por el camino (cola llena, reinicio, Welock caído o lento) lo
+ * recoge el barrido periódico: reservas CONFIRMED sin clave en alguna cerradura.
+ *
+ * La fase 1 alquila la reserva en BD (FOR UPDATE SKIP LOCKED + lockCodesLeaseUntil),
+ * así que dos instancias no piden claves para la misma reserva; la fase 3 lo libera.
+ * Si la instancia cae a medias, el alquiler caduca y el barrido la retoma.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReservationLockCodes {
+
+    // Formato EXACTO que espera Welock para los periodos de las claves
+    private static final DateTimeFormatter WELOCK_TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int SWEEP_BATCH_SIZE = 50;
+    // Más que lo que pueden tardar las peticiones a Welock y el guardado
+    private static final int LEASE_MINUTES = 5;
+
+    private final ReservationRepository reservationRepository;
+    private final LockRepository lockRepository;
+    private final LockPasswordRepository lockPasswordRepository;
+    private final LockPasswordService lockPasswordService;
+    private final WelockClient welockClient;
+    private final EmailService emailService;
+    private final EmailTemplates emailTemplates;
+    private final TransactionTemplate transactionTemplate;
+    private final BoundedExecutor ioExecutor;
+
+    private record LockTarget(Long lockId, String deviceNumber, String bleName) {}
+
+    private record Plan(LocalDateTime start, LocalDateTime end, List<LockTarget> locks) {}
+
+    // Reservas con una generación en curso en esta instancia (webhook o barrido, no las dos)
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Programa la generación para cuando haga commit la transacción actual
+     * (o ya mismo si no hay ninguna). Nunca lanza: si no se puede encolar,
+     * la recoge el barrido.
+     */
+    public void generateAfterCommit(Long reservationId) {
+        TransactionUtils.afterCommit(() -> start(reservationId, true));
+    }
+
+    /**
+     * 🔁 Cada 2 minutos (y al arrancar): reintenta las reservas confirmadas
+     * a las que les falta alguna clave.
+     */
+    @Scheduled(fixedDelay = 120_000)
+    public void sweepMissing() {
+        try {
+            List<Long> ids = reservationRepository.findConfirmedIdsMissingLockPasswords(
+                    LocalDateTime.now(), PageRequest.of(0, SWEEP_BATCH_SIZE));
+
+            for (Long id : ids) {
+                if (!start(id, false)) break; // cola llena: siguiente vuelta
+            }
+        } catch (Exception ex) {
+            System.err.println("⚠️ Error buscando reservas sin códigos Welock: " + ex.getMessage());
+        }
+    }
+
+    // false si el executor rechaza el trabajo
+    private boolean start(Long reservationId, boolean firstAttempt) {
+        if (!inFlight.add(reservationId)) return true;
+
+        try {
+            ioExecutor.execute(() -> generate(reservationId, firstAttempt));
+            return true;
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(reservationId);
+            System.err.println("⚠️ Cola llena: los códigos Welock de la reserva " + reservationId + " quedan para el barrido");
+            return false;
+        }
+    }
+
+    private void generate(Long reservationId, boolean firstAttempt) {
+        boolean handedOff = false;
+        try {
+            // 1️⃣ Alquiler de la reserva + cerraduras que aún no tienen clave (por si se repite)
+            Plan plan = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                Reservation r = reservationRepository.findForLockCodesLease(reservationId, now).orElse(null);
+                if (r == null || r.getStatus() != ReservationStatus.CONFIRMED) return null; // otra instancia la tiene
+                r.setLockCodesLeaseUntil(now.plusMinutes(LEASE_MINUTES));
+
+                Set<Long> done = new HashSet<>();
+                lockPasswordRepository.findByReservationId(reservationId)
+                        .forEach(lp -> done.add(lp.getLock().getId()));
+
+                List<LockTarget> locks = lockRepository.findLocksByPistaId(r.getPista().getId()).stream()
+                        .filter(l -> !done.contains(l.getId()))
+                        .map(l -> new LockTarget(l.getId(), l.getDeviceNumber(), l.getBleName()))
+                        .toList();
+
+                // Apertura 5 min antes y cierre 5 min después, en cuartos de hora
+                return new Plan(
+                        roundWelockStart(r.getStartTime().minusMinutes(5)),
+                        roundWelockEnd(r.getEndTime().plusMinutes(5)),
+                        locks
+                );
+            });
+            if (plan == null) return;
+            if (plan.locks().isEmpty() && !firstAttempt) return;
+
+            String startTs = plan.start().format(WELOCK_TS);
+            String endTs = plan.end().format(WELOCK_TS);
+
+            // 2️⃣ Todas las cerraduras a la vez
+            Map<LockTarget, CompletableFuture<String>> calls = new LinkedHashMap<>();
+            for (LockTarget lock : plan.locks()) {
+                // Sin hilo por llamada: plazo, bulkhead y circuito los pone WelockClient
+                calls.put(lock, welockClient.generateTempPasswordAsync(
+                        lock.deviceNumber(),
+                        lock.bleName(),
+                        startTs,
+                        endTs,
+                        0
+                ));
+            }
+
+            // 3️⃣ Cuando acaben todas (bien, mal o por timeout)
+            CompletableFuture.allOf(calls.values().toArray(CompletableFuture[]::new))
+                    .whenComplete((ignored, error) -> {
+                        // Las claves ya existen en Welock: si la cola está llena no se tiran
+                        Runnable task = () -> save(reservationId, plan, calls, firstAttempt);
+                        try {
+                            ioExecutor.execute(task);
+                        } catch (RejectedExecutionException ex) {
+                            Thread.startVirtualThread(task);
+                        }
+                    });
+            handedOff = true;
+
+        } catch (Exception ex) {
+            System.err.println("⚠️ Error generando códigos Welock de la reserva " + reservationId + ": " + ex.getMessage());
+        } finally {
+            if (!handedOff) inFlight.remove(reservationId);
+        }
+    }
+
+    /**
+     * Guarda las claves obtenidas; las fallidas quedan para el barrido.
+     * Los emails salen en el primer intento (con lo que haya) y otra vez cuando
+     * un reintento completa las claves que faltaban.
+     */
+    private void save(Long reservationId, Plan plan, Map<LockTarget, CompletableFuture<String>> calls, boolean firstAttempt) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Reservation r = reservationRepository.findById(reservationId).orElse(null);
+                if (r == null) return;
+                r.setLockCodesLeaseUntil(null);
+
+                int failed = 0;
+                for (Map.Entry<LockTarget, CompletableFuture<String>> call : calls.entrySet()) {
+                    LockTarget lock = call.getKey();
+                    String password;
+                    try {
+                        password = call.getValue().join();
+                    } catch (CompletionException ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        System.err.println("⚠️ Error generando código Welock para lock " + lock.deviceNumber() + ": " + cause);
+                        failed++;
+                        continue;
+                    }
+
+                    System.out.println("🔐 Código Welock para lock " + lock.deviceNumber() + ": " + password);
+
+                    LockPassword lp = new LockPassword();
+                    lp.setLock(lockRepository.getReferenceById(lock.lockId()));
+                    lp.setReservation(r);
+                    lp.setPassword(password);
+                    lp.setStartTime(plan.start());
+                    lp.setEndTime(plan.end());
+
+                    lockPasswordRepository.save(lp);
+                    TransactionUtils.afterCommit(() -> lockPasswordService.scheduleExpiry(lp.getId(), lp.getEndTime()));
+                }
+
+                // 📩 Emails con los códigos (se encolan en el outbox de esta misma transacción)
+                boolean completedNow = failed == 0 && !calls.isEmpty();
+                if (firstAttempt || completedNow) {
+                    sendConfirmationEmails(r);
+                }
+            });
+        } catch (Exception ex) {
+            System.err.println("⚠️ Error guardando códigos Welock de la reserva " + reservationId + ": " + ex.getMessage());
+        } finally {
+            inFlight.remove(reservationId);
+        }
+    }
+
+    // =====================================================================================
+    // 📩 EMAILS
+    // =====================================================================================
+    private void sendConfirmationEmails(Reservation r) {
+
+        Set<User> jugadores = r.getJugadores();
+        String creador = r.getUser().getFullName();
+        LocalDateTime fechaHora = r.getStartTime();
+
+        // 🗓 Fecha bonita en español
+        String fechaFormateada = fechaHora.format(EmailTemplates.FECHA_LARGA);
+
+        // 🔐 Recuperar los códigos Welock asociados a esta reserva
+        List<LockPassword> passwords = lockPasswordRepository.findByReservationId(r.getId());
+
+        // 📨 Plantilla HTML (se renderiza una vez para todos los jugadores)
+        String html = emailTemplates.render(EmailTemplates.Template.RESERVA_CONFIRMADA, EmailTemplates.vars(
+                "creador", creador,
+                "fecha", fechaFormateada,
+                "jugadores", emailTemplates.renderEach(EmailTemplates.Template.LISTA_ITEM, jugadores,
+                        j -> EmailTemplates.vars("texto", j.getFullName())),
+                "codigos", emailTemplates.renderEach(EmailTemplates.Template.CODIGO_CERRADURA, passwords,
+                        lp -> EmailTemplates.vars(
+                                "cerradura", lp.getLock().getName(),
+                                "codigo", lp.getPassword(),
+                                "desde", lp.getStartTime().format(EmailTemplates.FECHA_HORA),
+                                "hasta", lp.getEndTime().format(EmailTemplates.FECHA_HORA)
+                        ))
+        ));
+
+        // 📩 Enviar email a cada jugador
+        for (User jugador : jugadores) {
+            if (jugador.getEmail() != null && !jugador.getEmail().isEmpty()) {
+                emailService.sendHtmlEmail(
+                        jugador.getEmail(),
+                        "🎾 Reserva confirmada - " + fechaFormateada,
+                        html
+                );
+            }
+        }
+    }
+
+
+    // =====================================================================================
+    // 🔧 Redondeo a cuartos de hora (Welock solo acepta :00, :15, :30, :45)
+    // =====================================================================================
+    private LocalDateTime roundWelockStart(LocalDateTime t) {
+        // Queremos 5 minutos antes
+        LocalDateTime target = t.minusMinutes(5);
+
+        int minute = target.getMinute();
+        int mod = minute % 15;
+
+        // Si ya cae en un cuarto de hora → perfecto
+        if (mod == 0) {
+            return target.withSecond(0).withNano(0);
+        }
+
+        // Minuto anterior permitido
+        int down = minute - mod;
+
+        // Minuto siguiente permitido
+        int up = down + 15;
+
+        // Evaluamos cuál está más cerca de "t - 5"
+        int distDown = Math.abs(minute - down);
+        int distUp = Math.abs(up - minute);
+
+        int chosen = (distDown <= distUp) ? down : up;
+
+        // Si se pasa de 60 → subimos hora
+        if (chosen >= 60) {
+            return target.plusHours(1)
+                    .withMinute(0)
+                    .withSecond(0)
+                    .withNano(0);
+        }
+
+        return target.withMinute(chosen).withSecond(0).withNano(0);
+    }
+
+
+    private LocalDateTime roundWelockEnd(LocalDateTime t) {
+        // Queremos 5 minutos después
+        LocalDateTime target = t.plusMinutes(5);
+
+        int minute = target.getMinute();
+        int mod = minute % 15;
+
+        if (mod == 0) {
+            return target.withSecond(0).withNano(0);
+        }
+
+        int down = minute - mod;
+        int up = down + 15;
+
+        int distDown = Math.abs(minute - down);
+        int distUp = Math.abs(up - minute);
+
+        int chosen = (distDown <= distUp) ? down : up;
+
+        if (chosen >= 60) {
+            return target.plusHours(1)
+                    .withMinute(0)
+                    .withSecond(0)
+                    .withNano(0);
+        }
+
+        return target.withMinute(chosen).withSecond(0).withNano(0);
+    }
+}
@@ -3,21 +3,23 @@ package com.example.PadelCaleruela.service;
 import com.example.PadelCaleruela.dto.*;
 import com.example.PadelCaleruela.model.*;
 import com.example.PadelCaleruela.repository.*;
+import com.example.PadelCaleruela.util.TransactionUtils;
 import jakarta.mail.MessagingException;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -31,16 +33,25 @@ public class ReservationService {
     private final InvitationRepository invitationRepository;
     private final PaymentRepository paymentRepository;
     private final EmailService emailService;
+    private final EmailTemplates emailTemplates;
     private final AuthService authService;
     private final PricingService pricingService;
-    private final TarifaRepository tarifaRepo;
-    private final TarifaFranjaRepository franjaRepo;
     private final UserNotificationService userNotificationService;
     private final NotificationAppService notificationAppService;
     private final NotificationFactory notificationFactory;
     private final PistaRepository pistaRepository;
-    @PersistenceContext
-    private EntityManager entityManager;
+    private final ReservationSlotIndex slotIndex;
+    private final DeadlineScheduler deadlineScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final BadgeService badgeService;
+    private final LockRepository lockRepository;
+    private final ReservationSlotClaims slotClaims;
+
+    private static final long PAYMENT_REMINDER_MINUTES = 10;
+    private static final long PAYMENT_DEADLINE_MINUTES = 15;
+    // El barrido solo toca lo que el plazo en memoria ya debería haber cancelado
+    private static final long OVERDUE_GRACE_MINUTES = 5;
+    private static final int OVERDUE_SWEEP_BATCH_SIZE = 100;
 
     // 🔹 Crear reserva con duración fija de 1h30min
     @Transactional
@@ -92,6 +103,12 @@ public class ReservationService {
 
         reservation.setPista(pista);  // 🔥 ASIGNACIÓN FINAL
 
+        // 🚦 Atajo: si el índice ya ve el slot ocupado, ni lo intentamos
+        if (slotIndex.getDay(pista.getAyuntamiento().getId(), start.toLocalDate())
+                .containsKey(new ReservationSlotIndex.SlotKey(pista.getId(), start.toLocalTime()))) {
+            throw new SlotAlreadyTakenException("Esta pista ya está reservada a esa hora.");
+        }
+
 
 // Jugadores incluye al creador
         Set<User> jugadores = new HashSet<>();
@@ -100,6 +117,16 @@ public class ReservationService {
 
         Reservation saved = reservationRepository.save(reservation);
 
+        // 🎯 La BD decide: unique (pista_id, start_time) en reservation_slot_claims
+        slotClaims.claim(pista.getId(), start, saved.getId());
+
+        slotIndex.refresh(saved);
+
+        // ⏰ Aviso y cancelación por falta de pago, justo a su hora
+        Long savedId = saved.getId();
+        LocalDateTime createdAt = saved.getCreatedAt();
+        TransactionUtils.afterCommit(() -> scheduleUnpaidDeadlines(savedId, createdAt));
+
 
         // Invitaciones
         if (dto.getJugadores() != null && !dto.getJugadores().isEmpty()) {
@@ -126,6 +153,7 @@ public class ReservationService {
                     inv.setStatus(InvitationStatus.PENDING);
                     inv.setCreatedAt(LocalDateTime.now());
                     invitationRepository.save(inv);
+                    badgeService.changed(invited.getId());
 
                     // 🔹 Enviar notificación push
                     try {
@@ -204,6 +232,7 @@ public class ReservationService {
                 last.setStatus(InvitationStatus.PENDING);
                 last.setCreatedAt(LocalDateTime.now());
                 invitationRepository.save(last);
+                badgeService.changed(invited.getId());
 
                 invToNotify = last;
 
@@ -216,6 +245,7 @@ public class ReservationService {
                 inv.setStatus(InvitationStatus.PENDING);
                 inv.setCreatedAt(LocalDateTime.now());
                 invitationRepository.save(inv);
+                badgeService.changed(invited.getId());
 
                 invToNotify = inv;
             }
@@ -273,71 +303,153 @@ public class ReservationService {
 
 
 
-    // 🔹 Cancelar reservas no pagadas después de 15 minutos
-    @Transactional
-    public void cancelUnpaidReservations() {
-        LocalDateTime limit = LocalDateTime.now().minusMinutes(15);
-        List<Reservation> toCancel = reservationRepository.findByPaidFalseAndCreatedAtBefore(limit);
+    // ======================================================
+    // ⏰ PLAZOS DE PAGO (aviso a los 10 min, cancelación a los 15)
+    // ======================================================
+
+    /**
+     * Programa el aviso y la cancelación de una reserva impagada.
+     * Se llama tras el commit de createReservation y al reconstruir al arrancar.
+     */
+    public void scheduleUnpaidDeadlines(Long reservationId, LocalDateTime createdAt) {
+        deadlineScheduler.scheduleIfAbsent(
+                reminderKey(reservationId),
+                createdAt.plusMinutes(PAYMENT_REMINDER_MINUTES),
+                () -> transactionTemplate.executeWithoutResult(s -> remindUnpaidReservation(reservationId))
+        );
 
-        if (toCancel.isEmpty()) return;
+        deadlineScheduler.scheduleIfAbsent(
+                cancelKey(reservationId),
+                createdAt.plusMinutes(PAYMENT_DEADLINE_MINUTES),
+                () -> transactionTemplate.executeWithoutResult(s -> cancelUnpaidReservation(reservationId))
+        );
+    }
 
-        for (Reservation r : toCancel) {
+    /** Anula los plazos (reserva pagada o cancelada antes de tiempo). */
+    public void clearUnpaidDeadlines(Long reservationId) {
+        deadlineScheduler.cancel(reminderKey(reservationId));
+        deadlineScheduler.cancel(cancelKey(reservationId));
+    }
+
+    /**
+     * Reconstruye los plazos desde BD con una sola consulta (id, createdAt),
+     * solo al arrancar: las reservas nuevas se programan tras su commit.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildUnpaidDeadlines() {
+        List<Object[]> pending = reservationRepository.findUnpaidPendingDeadlines();
 
-            // Copia de jugadores antes de limpiar
-            List<User> jugadoresOriginales =
-                    (r.getJugadores() != null)
-                            ? List.copyOf(r.getJugadores())
-                            : List.of();
+        for (Object[] row : pending) {
+            scheduleUnpaidDeadlines((Long) row[0], (LocalDateTime) row[1]);
+        }
 
-            invitationRepository.deleteAllByReservationId(r.getId());
-            r.setStatus(ReservationStatus.CANCELED);
+        if (!pending.isEmpty()) {
+            System.out.println("⏰ Plazos de pago programados para " + pending.size() + " reservas pendientes.");
+        }
+    }
 
+    /**
+     * 🔁 Cada 5 minutos: cancela las impagadas cuyo plazo venció y siguen
+     * PENDING (tarea del plazo que falló, o plazo perdido sin reiniciar).
+     * Cada reserva va en su propia transacción.
+     */
+    @Scheduled(fixedDelay = 300_000, initialDelay = 300_000)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void sweepOverdueUnpaid() {
+        List<Long> ids;
+        try {
+            ids = reservationRepository.findOverdueUnpaidIds(
+                    LocalDateTime.now().minusMinutes(PAYMENT_DEADLINE_MINUTES + OVERDUE_GRACE_MINUTES),
+                    PageRequest.of(0, OVERDUE_SWEEP_BATCH_SIZE));
+        } catch (Exception ex) {
+            System.err.println("⚠️ Error buscando reservas impagadas vencidas: " + ex.getMessage());
+            return;
+        }
+
+        for (Long id : ids) {
             try {
-                User creator = r.getUser();
-
-                // ----------------------------------------------------------
-                // 🔥 1) Notificar al creador
-                // ----------------------------------------------------------
-                if (creator != null) {
-                    sendAndSaveNotification(
-                            creator,
-                            creator,
-                            NotificationType.RESERVATION_TIME_CANCELLED,
-                            r
-                    );
-                }
+                transactionTemplate.executeWithoutResult(s -> cancelUnpaidReservation(id));
+                clearUnpaidDeadlines(id);
+            } catch (Exception ex) {
+                System.err.println("⚠️ Error cancelando la reserva impagada " + id + ": " + ex.getMessage());
+            }
+        }
 
-                // ----------------------------------------------------------
-                // 🔥 2) Notificar jugadores originales
-                // ----------------------------------------------------------
-                for (User invited : jugadoresOriginales) {
-                    if (invited == null) continue;
-                    if (creator != null && invited.getId().equals(creator.getId())) continue;
-
-                    sendAndSaveNotification(
-                            invited,
-                            creator,
-                            NotificationType.RESERVATION_TIME_CANCELLED,
-                            r
-                    );
-                }
+        if (!ids.isEmpty()) {
+            System.out.println("🧹 Barrido de impagadas: " + ids.size() + " reservas vencidas revisadas.");
+        }
+    }
 
-            } catch (Exception e) {
-                System.out.println("⚠ Error enviando notificación de reserva cancelada: " + e.getMessage());
+    private static String reminderKey(Long reservationId) {
+        return "reservation-reminder:" + reservationId;
+    }
+
+    private static String cancelKey(Long reservationId) {
+        return "reservation-cancel:" + reservationId;
+    }
+
+    // 🔹 Cancelar una reserva no pagada a los 15 minutos
+    public void cancelUnpaidReservation(Long reservationId) {
+        Reservation r = reservationRepository.findById(reservationId).orElse(null);
+
+        // Ya pagada, cancelada o eliminada → nada que hacer
+        if (r == null || r.isPaid() || r.getStatus() != ReservationStatus.PENDING) return;
+
+        // Copia de jugadores antes de limpiar
+        List<User> jugadoresOriginales =
+                (r.getJugadores() != null)
+                        ? List.copyOf(r.getJugadores())
+                        : List.of();
+
+        badgeService.changedAll(invitationRepository.findReceiverIdsByReservationId(r.getId()));
+        invitationRepository.deleteAllByReservationId(r.getId());
+        r.setStatus(ReservationStatus.CANCELED);
+        slotIndex.refresh(r);
+        slotClaims.release(r.getId());
+
+        try {
+            User creator = r.getUser();
+
+            // ----------------------------------------------------------
+            // 🔥 1) Notificar al creador
+            // ----------------------------------------------------------
+            if (creator != null) {
+                sendAndSaveNotification(
+                        creator,
+                        creator,
+                        NotificationType.RESERVATION_TIME_CANCELLED,
+                        r
+                );
             }
 
-            // Limpieza final
-            if (r.getJugadores() != null) {
-                r.getJugadores().clear();
+            // ----------------------------------------------------------
+            // 🔥 2) Notificar jugadores originales
+            // ----------------------------------------------------------
+            for (User invited : jugadoresOriginales) {
+                if (invited == null) continue;
+                if (creator != null && invited.getId().equals(creator.getId())) continue;
+
+                sendAndSaveNotification(
+                        invited,
+                        creator,
+                        NotificationType.RESERVATION_TIME_CANCELLED,
+                        r
+                );
             }
+
+        } catch (Exception e) {
+            System.out.println("⚠ Error enviando notificación de reserva cancelada: " + e.getMessage());
         }
 
-        reservationRepository.saveAll(toCancel);
+        // Limpieza final
+        if (r.getJugadores() != null) {
+            r.getJugadores().clear();
+        }
 
-        entityManager.flush();
-        entityManager.clear();
+        reservationRepository.save(r);
 
-        System.out.println("🔸 Canceladas automáticamente " + toCancel.size() + " reservas impagas.");
+        System.out.println("🔸 Reserva " + r.getId() + " cancelada automáticamente por falta de pago.");
     }
 
     private void sendAndSaveNotification(
@@ -380,71 +492,43 @@ public class ReservationService {
 
 
 
-    // 🔹 Ejecutar automáticamente cada 1 minutos
-    @Scheduled(fixedRate = 60000) // 300000 ms = 5 min 60000 ms=1 min
-    public void autoCancelPendingReservations() {
-        cancelUnpaidReservations();
-    }
-
-
     // 🔔 Aviso cuando queden 5 minutos para pagar (a los 10 minutos de creada)
-    @Scheduled(fixedRate = 60000) // se ejecuta cada minuto
-    @Transactional
-    public void notifyReserveAlmostExpired() {
-
-        LocalDateTime now = LocalDateTime.now();
-
-        // Reservas con 10 minutos desde su creación (faltan 5 para cancelar)
-        LocalDateTime thresholdStart = now.minusMinutes(11); // para evitar microsegundos raros
-        LocalDateTime thresholdEnd = now.minusMinutes(9);
+    public void remindUnpaidReservation(Long reservationId) {
+        Reservation r = reservationRepository.findById(reservationId).orElse(null);
+        if (r == null || r.isPaid() || r.getStatus() != ReservationStatus.PENDING) return;
 
-        List<Reservation> pending = reservationRepository
-                .findByPaidFalseAndStatusAndCreatedAtBetween(
-                        ReservationStatus.PENDING,
-                        thresholdStart,
-                        thresholdEnd
-                );
-
-        if (pending.isEmpty()) return;
-
-        for (Reservation r : pending) {
-
-            User creator = r.getUser();
-            if (creator == null) continue;
+        User creator = r.getUser();
+        if (creator == null) return;
 
-            // -----------------------------------------------------
-            // 🔔 1) Enviar Notificación PUSH al creador
-            // -----------------------------------------------------
-            try {
-                userNotificationService.sendToUser(
-                        creator.getId(),
-                        "Sistema",
-                        NotificationType.PAYMENT_REMINDER
-                );
-            } catch (Exception e) {
-                System.err.println("⚠ Error enviando push (faltan 5 min): " + e.getMessage());
-            }
+        // -----------------------------------------------------
+        // 🔔 1) Enviar Notificación PUSH al creador
+        // -----------------------------------------------------
+        try {
+            userNotificationService.sendToUser(
+                    creator.getId(),
+                    "Sistema",
+                    NotificationType.PAYMENT_REMINDER
+            );
+        } catch (Exception e) {
+            System.err.println("⚠ Error enviando push (faltan 5 min): " + e.getMessage());
+        }
 
-            // -----------------------------------------------------
-            // 🔔 2) Guardar notificación en BD (opcional)
-            // -----------------------------------------------------
-            Notification n = new Notification();
-            n.setUserId(creator.getId());
-            n.setSenderId(null);  // sistema
-            n.setType(NotificationType.PAYMENT_REMINDER);
-            n.setTitle("Quedan 5 minutos para pagar tu reserva");
-            n.setMessage("Tu reserva está a punto de cancelarse por falta de pago.");
-            n.setExtraData("""
+        // -----------------------------------------------------
+        // 🔔 2) Guardar notificación en BD (opcional)
+        // -----------------------------------------------------
+        Notification n = new Notification();
+        n.setUserId(creator.getId());
+        n.setSenderId(null);  // sistema
+        n.setType(NotificationType.PAYMENT_REMINDER);
+        n.setTitle("Quedan 5 minutos para pagar tu reserva");
+        n.setMessage("Tu reserva está a punto de cancelarse por falta de pago.");
+        n.setExtraData("""
             {
               "reservationId": %d
             }
         """.formatted(r.getId()));
 
-            notificationAppService.saveNotification(n);
-        }
-
-        System.out.println("🔔 Avisos enviados a " + pending.size() +
-                " reservas pendientes (faltan 5 minutos).");
+        notificationAppService.saveNotification(n);
     }
 
 
@@ -464,8 +548,11 @@ public class ReservationService {
             reservations = reservationRepository.findByStartTimeBetweenAndAyuntamientoId(startOfDay, endOfDay, ayId);
         }
 
+        // 👥 Jugadores de todas las reservas del día en una sola consulta
+        Map<Long, List<PlayerRow>> players = loadPlayers(idsOf(reservations));
+
         return reservations.stream()
-                .map(this::toDTO)
+                .map(r -> toDTO(r, players.getOrDefault(r.getId(), List.of())))
                 .toList();
     }
 
@@ -609,6 +696,7 @@ public class ReservationService {
         User creator = reservation.getUser();
 
         // Eliminar invitaciones
+        badgeService.changedAll(invitationRepository.findReceiverIdsByReservationId(reservationId));
         invitationRepository.deleteAllByReservationId(reservationId);
 
         // Eliminar pago si existe
@@ -618,34 +706,19 @@ public class ReservationService {
 
         // Cambiar estado
         reservation.setStatus(ReservationStatus.CANCELED);
+        slotIndex.refresh(reservation);
+        slotClaims.release(reservationId);
+        TransactionUtils.afterCommit(() -> clearUnpaidDeadlines(reservationId));
 
         // ---------------------------
         // 📩 ENVÍO DE EMAILS (igual)
         // ---------------------------
         LocalDateTime fechaHora = reservation.getStartTime();
         String creador = reservation.getUser().getFullName();
-        String fechaFormateada = fechaHora.format(
-                DateTimeFormatter.ofPattern("EEEE d 'de' MMMM 'a las' HH:mm", new Locale("es", "ES"))
-        );
+        String fechaFormateada = fechaHora.format(EmailTemplates.FECHA_LARGA);
 
-        StringBuilder jugadoresList = new StringBuilder();
-        for (User jugador : jugadores) {
-            jugadoresList.append("<li>").append(jugador.getFullName()).append("</li>");
-        }
-
-        String html = """
-    <div style="font-family: Arial, sans-serif; color: #333;">
-        <h2 style="color: #d32f2f;">Reserva Cancelada</h2>
-        <p>Hola,</p>
-        <p>La reserva ha sido <strong>cancelada</strong> por <b>%s</b>.</p>
-        <p><strong>Fecha y hora:</strong> %s</p>
-        <p><strong>Jugadores de la reserva:</strong></p>
-        <ul>%s</ul>
-        <p>Si crees que esto fue un error, contacta con el administrador.</p>
-        <hr>
-        <p style="font-size: 0.9rem; color: #555;">Club de Pádel Caleruela</p>
-    </div>
-    """.formatted(creador, fechaFormateada, jugadoresList);
+        String html = cancellationEmail(creador, fechaFormateada, jugadores,
+                "<p>Si crees que esto fue un error, contacta con el administrador.</p>");
 
         for (User jugador : jugadores) {
             if (jugador.getEmail() != null && !jugador.getEmail().isEmpty()) {
@@ -680,6 +753,17 @@ public class ReservationService {
 
 
 
+    // 📩 Email de reserva cancelada (mismo HTML para todos los jugadores)
+    private String cancellationEmail(String creador, String fecha, Collection<User> jugadores, String aviso) {
+        return emailTemplates.render(EmailTemplates.Template.RESERVA_CANCELADA, EmailTemplates.vars(
+                "creador", creador,
+                "fecha", fecha,
+                "jugadores", emailTemplates.renderEach(EmailTemplates.Template.LISTA_ITEM, jugadores,
+                        j -> EmailTemplates.vars("texto", j.getFullName())),
+                "aviso", aviso
+        ));
+    }
+
     @Transactional
     public void updateReservationStatusToCanceled(Long reservationId, Long userId) {
         Reservation reservation = reservationRepository.findById(reservationId)
@@ -692,6 +776,7 @@ public class ReservationService {
         List<User> jugadores = new ArrayList<>(reservation.getJugadores());
         User creator = reservation.getUser();
 
+        badgeService.changedAll(invitationRepository.findReceiverIdsByReservationId(reservationId));
         invitationRepository.deleteAllByReservationId(reservationId);
 
         if (reservation.getPayment() != null) {
@@ -700,33 +785,18 @@ public class ReservationService {
         }
 
         reservation.setStatus(ReservationStatus.CANCELED);
+        slotIndex.refresh(reservation);
+        slotClaims.release(reservationId);
+        TransactionUtils.afterCommit(() -> clearUnpaidDeadlines(reservationId));
 
         // ---------------------------
         // 📩 EMAILS (sin cambios)
         // ---------------------------
         LocalDateTime fechaHora = reservation.getStartTime();
-        String fechaFormateada = fechaHora.format(
-                DateTimeFormatter.ofPattern("EEEE d 'de' MMMM 'a las' HH:mm", new Locale("es", "ES"))
-        );
+        String fechaFormateada = fechaHora.format(EmailTemplates.FECHA_LARGA);
         String creador = creator.getFullName();
 
-        StringBuilder jugadoresList = new StringBuilder();
-        for (User jugador : jugadores) {
-            jugadoresList.append("<li>").append(jugador.getFullName()).append("</li>");
-        }
-
-        String html = """
-    <div style="font-family: Arial, sans-serif; color: #333;">
-        <h2 style="color: #d32f2f;">Reserva Cancelada</h2>
-        <p>Hola,</p>
-        <p>La reserva ha sido <strong>cancelada</strong> por <b>%s</b>.</p>
-        <p><strong>Fecha y hora:</strong> %s</p>
-        <p><strong>Jugadores de la reserva:</strong></p>
-        <ul>%s</ul>
-        <hr>
-        <p style="font-size: 0.9rem; color: #555;">Club de Pádel Caleruela</p>
-    </div>
-    """.formatted(creador, fechaFormateada, jugadoresList);
+        String html = cancellationEmail(creador, fechaFormateada, jugadores, "");
 
         for (User jugador : jugadores) {
             if (jugador.getEmail() != null && !jugador.getEmail().isEmpty()) {
@@ -761,33 +831,6 @@ public class ReservationService {
 
 
 
-    private BigDecimal calcularPrecio(LocalTime hora, Ayuntamiento a) {
-
-        // 1️⃣ Obtener tarifa base del ayuntamiento
-        Tarifa tarifa = tarifaRepo.findByAyuntamientoId(a.getId())
-                .orElseThrow(() -> new IllegalStateException(
-                        "El ayuntamiento no tiene una tarifa configurada"
-                ));
-
-        // 2️⃣ Obtener franjas especiales
-        List<TarifaFranja> franjas = franjaRepo.findByAyuntamientoId(a.getId());
-
-        int hour = hora.getHour();
-
-        // 3️⃣ Buscar si la hora cae en alguna franja
-        for (TarifaFranja fr : franjas) {
-            // Ej: 10:00 cae entre 9 y 12
-            if (hour >= fr.getHoraInicio() && hour < fr.getHoraFin()) {
-                return fr.getPrecio();
-            }
-        }
-
-        // 4️⃣ Si no está dentro de ninguna franja → precio base
-        return tarifa.getPrecioBase();
-    }
-
-
-
     // 🔹 Devuelve las horas disponibles de un día
     // 🔹 Genera los slots disponibles de un día
     public List<HourSlotDTO> getAvailableHours(LocalDate date) {
@@ -795,25 +838,26 @@ public class ReservationService {
         User current = authService.getCurrentUser();
         Ayuntamiento ay = current.getAyuntamiento();
 
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
+        // 🗂 Ocupación del día desde el índice en memoria (una consulta ligera por día)
+        Map<ReservationSlotIndex.SlotKey, SlotOccupancyDTO> ocupacion =
+                slotIndex.getDay(ay.getId(), date);
 
-        List<Reservation> reservations;
-        if (authService.isSuperAdmin()) {
-            reservations = reservationRepository
-                    .findByStartTimeBetween(startOfDay, endOfDay)
-                    .stream()
-                    .filter(r -> r.getStatus() != ReservationStatus.CANCELED)
-                    .toList();
-        } else {
-            reservations = reservationRepository
-                    .findByStartTimeBetweenAndAyuntamientoId(
-                            startOfDay, endOfDay, ay.getId()
-                    );
-        }
+        // Solo las reservas ocupadas se cargan: reserva + creador, jugadores e invitaciones
+        // en 3 consultas para todo el día (no por pista, slot ni jugador)
+        List<Long> idsOcupadas = ocupacion.values().stream()
+                .map(SlotOccupancyDTO::getReservationId)
+                .toList();
+
+        Map<Long, Reservation> reservasOcupadas = idsOcupadas.isEmpty()
+                ? Map.of()
+                : reservationRepository.findAllWithDetailsByIdIn(idsOcupadas).stream()
+                        .collect(Collectors.toMap(Reservation::getId, r -> r));
+
+        Map<Long, List<PlayerRow>> jugadoresPorReserva = loadPlayers(idsOcupadas);
+        InvitationStates invitaciones = loadInvitationStates(idsOcupadas);
 
         List<Pista> pistas = pistaRepository.findByAyuntamientoIdAndActivaTrue(ay.getId());
-        Long currentUserId = resolveCurrentUserId();
+        Long currentUserId = current.getId();
 
         List<HourSlotDTO> result = new ArrayList<>();
 
@@ -851,15 +895,13 @@ public class ReservationService {
 
             for (LocalTime slot : slots) {
 
-                Reservation reservation = reservations.stream()
-                        .filter(r -> r.getPista() != null)
-                        .filter(r -> r.getPista().getId().equals(pista.getId()))
-                        .filter(r -> r.getStartTime().toLocalTime().equals(slot))
-                        .filter(r -> r.getStatus() != ReservationStatus.CANCELED)
-                        .findFirst()
-                        .orElse(null);
+                SlotOccupancyDTO ocupado =
+                        ocupacion.get(new ReservationSlotIndex.SlotKey(pista.getId(), slot));
+                Reservation reservation = ocupado != null
+                        ? reservasOcupadas.get(ocupado.getReservationId())
+                        : null;
 
-                BigDecimal precio = calcularPrecio(slot, ay);
+                BigDecimal precio = pricingService.calcularPrecio(slot, ay.getId());
 
                 if (reservation != null) {
                     String status = switch (reservation.getStatus()) {
@@ -872,22 +914,21 @@ public class ReservationService {
                             reservation.getUser() != null &&
                             reservation.getUser().getId().equals(currentUserId);
 
-                    List<PlayerInfoDTO> players = reservation.getJugadores().stream()
-                            .filter(p -> !reservation.isPlayerRejected(p))
+                    List<PlayerInfoDTO> players = jugadoresPorReserva
+                            .getOrDefault(reservation.getId(), List.of()).stream()
+                            .filter(p -> !invitaciones.isRejected(reservation.getId(), p.id()))
                             .map(p -> {
-                                boolean accepted = invitationRepository
-                                        .findByReservationAndReceiver(reservation, p)
-                                        .map(inv -> inv.getStatus() == InvitationStatus.ACCEPTED)
-                                        .orElse(true);
+                                InvitationStatus invStatus = invitaciones.latestOf(reservation.getId(), p.id());
+                                boolean accepted = invStatus == null || invStatus == InvitationStatus.ACCEPTED;
 
                                 return new PlayerInfoDTO(
-                                        p.getId(),
-                                        p.getUsername(),
-                                        p.getProfileImageUrl() != null
-                                                ? p.getProfileImageUrl()
-                                                : "https://ui-avatars.com/api/?name=" + p.getUsername(),
+                                        p.id(),
+                                        p.username(),
+                                        p.profileImageUrl() != null
+                                                ? p.profileImageUrl()
+                                                : "https://ui-avatars.com/api/?name=" + p.username(),
                                         accepted,
-                                        p.getStatus()
+                                        p.status()
                                 );
                             })
                             .toList();
@@ -938,35 +979,83 @@ public class ReservationService {
 
 
 
-    private Long resolveCurrentUserId() {
-        try {
-            var ctx = SecurityContextHolder.getContext();
-            if (ctx == null) return null;
+    // ======================================================
+    // 👥 Jugadores e invitaciones en bloque (vistas de día y listados)
+    // ======================================================
 
-            var auth = ctx.getAuthentication();
-            if (auth == null || !auth.isAuthenticated()) return null;
+    /** Fila plana de jugador (sin cargar la entidad User) */
+    private record PlayerRow(Long id, String username, String fullName, String email,
+                             String profileImageUrl, UserStatus status) {
 
-            // Evita el "anonymousUser"
-            if ("anonymousUser".equalsIgnoreCase(String.valueOf(auth.getPrincipal()))) {
-                return null;
-            }
+        static PlayerRow of(User u) {
+            return new PlayerRow(u.getId(), u.getUsername(), u.getFullName(), u.getEmail(),
+                    u.getProfileImageUrl(), u.getStatus());
+        }
 
-            String key;
-            Object principal = auth.getPrincipal();
+        UserDTO toBasicDTO() {
+            UserDTO u = new UserDTO();
+            u.setId(id);
+            u.setUsername(username);
+            u.setFullName(fullName);
+            u.setEmail(email);
+            return u;
+        }
+    }
 
-            if (principal instanceof org.springframework.security.core.userdetails.UserDetails ud) {
-                key = ud.getUsername(); // suele ser username o email según tu UserDetailsService
-            } else {
-                key = auth.getName();   // fallback: lo que ponga el token
-            }
+    /** Última invitación de cada jugador y jugadores con alguna invitación rechazada, por reserva */
+    private record InvitationStates(Map<Long, Map<Long, InvitationStatus>> latest,
+                                    Map<Long, Set<Long>> rejected) {
 
-            return userRepository.findByUsernameOrEmail(key)
-                    .map(User::getId)
-                    .orElse(null);
+        InvitationStatus latestOf(Long reservationId, Long userId) {
+            return latest.getOrDefault(reservationId, Map.of()).get(userId);
+        }
 
-        } catch (Exception e) {
-            return null;
+        boolean isRejected(Long reservationId, Long userId) {
+            return rejected.getOrDefault(reservationId, Set.of()).contains(userId);
+        }
+    }
+
+    private static List<Long> idsOf(List<Reservation> reservations) {
+        return reservations.stream().map(Reservation::getId).toList();
+    }
+
+    // Jugadores de varias reservas (una consulta)
+    private Map<Long, List<PlayerRow>> loadPlayers(Collection<Long> reservationIds) {
+        if (reservationIds.isEmpty()) return Map.of();
+
+        Map<Long, List<PlayerRow>> result = new HashMap<>();
+        for (Object[] row : reservationRepository.findPlayerRowsByReservationIds(reservationIds)) {
+            result.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(new PlayerRow(
+                    (Long) row[1],
+                    (String) row[2],
+                    (String) row[3],
+                    (String) row[4],
+                    (String) row[5],
+                    (UserStatus) row[6]
+            ));
+        }
+        return result;
+    }
+
+    // Estado de invitaciones de varias reservas (una consulta, filas de antigua a reciente)
+    private InvitationStates loadInvitationStates(Collection<Long> reservationIds) {
+        if (reservationIds.isEmpty()) return new InvitationStates(Map.of(), Map.of());
+
+        Map<Long, Map<Long, InvitationStatus>> latest = new HashMap<>();
+        Map<Long, Set<Long>> rejected = new HashMap<>();
+
+        for (Object[] row : invitationRepository.findStatusRowsByReservationIds(reservationIds)) {
+            Long reservationId = (Long) row[0];
+            Long receiverId = (Long) row[1];
+            InvitationStatus status = (InvitationStatus) row[2];
+
+            latest.computeIfAbsent(reservationId, id -> new HashMap<>()).put(receiverId, status);
+
+            if (status == InvitationStatus.REJECTED) {
+                rejected.computeIfAbsent(reservationId, id -> new HashSet<>()).add(receiverId);
+            }
         }
+        return new InvitationStates(latest, rejected);
     }
 
 
@@ -991,6 +1080,20 @@ public class ReservationService {
 
         List<Reservation> reservations = reservationRepository.findByUserOrderByStartTimeDesc(target);
 
+        // 👥 Jugadores y cerraduras de todas las reservas en bloque
+        Map<Long, List<PlayerRow>> players = loadPlayers(idsOf(reservations));
+
+        List<Long> pistaIds = reservations.stream()
+                .map(Reservation::getPista)
+                .filter(Objects::nonNull)
+                .map(Pista::getId)
+                .distinct()
+                .toList();
+
+        Set<Long> pistasConCerradura = pistaIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(lockRepository.findPistaIdsWithLocks(pistaIds));
+
         return reservations.stream().map(res -> {
 
             Pista pista = res.getPista();
@@ -1008,15 +1111,8 @@ public class ReservationService {
 
             // Jugadores igual que en tu StatustoDTO
             dto.setJugadores(
-                    res.getJugadores().stream()
-                            .map(user -> {
-                                UserDTO u = new UserDTO();
-                                u.setId(user.getId());
-                                u.setUsername(user.getUsername());
-                                u.setFullName(user.getFullName());
-                                u.setEmail(user.getEmail());
-                                return u;
-                            })
+                    players.getOrDefault(res.getId(), List.of()).stream()
+                            .map(PlayerRow::toBasicDTO)
                             .collect(Collectors.toList())
             );
 
@@ -1036,7 +1132,7 @@ public class ReservationService {
             // Datos de la pista
             dto.setPistaId(pista.getId());
             dto.setPistaNombre(pista.getNombre());
-            dto.setPistaTieneCerradura(!pista.getLocks().isEmpty());
+            dto.setPistaTieneCerradura(pistasConCerradura.contains(pista.getId()));
 
             return dto;
 
@@ -1095,6 +1191,10 @@ public class ReservationService {
 
 
     private ReservationDTO toDTO(Reservation reservation) {
+        return toDTO(reservation, reservation.getJugadores().stream().map(PlayerRow::of).toList());
+    }
+
+    private ReservationDTO toDTO(Reservation reservation, List<PlayerRow> jugadores) {
         ReservationDTO dto = new ReservationDTO();
         dto.setId(reservation.getId());
         dto.setUserId(reservation.getUser().getId());
@@ -1105,15 +1205,8 @@ public class ReservationService {
 
         // Mapea jugadores a UserDTO básicos
         dto.setJugadores(
-                reservation.getJugadores().stream()
-                        .map(user -> {
-                            UserDTO u = new UserDTO();
-                            u.setId(user.getId());
-                            u.setUsername(user.getUsername());
-                            u.setFullName(user.getFullName());
-                            u.setEmail(user.getEmail());
-                            return u;
-                        })
+                jugadores.stream()
+                        .map(PlayerRow::toBasicDTO)
                         .collect(Collectors.toList())
         );
         return dto;
@@ -1325,6 +1418,7 @@ public class ReservationService {
                 inv.setStatus(InvitationStatus.REJECTED);
                 invitationRepository.save(inv);
             });
+            badgeService.changed(user.getId());
         }
 
         // -------------------------------------------------------------------
@@ -1400,6 +1494,7 @@ public class ReservationService {
                 inv.setStatus(InvitationStatus.REJECTED);
                 invitationRepository.save(inv);
             });
+            badgeService.changed(kicked.getId());
         }
 
         // -------------------------------------------------------------------
@@ -1599,9 +1694,12 @@ public class ReservationService {
             );
         }
 
-        List<Reservation> publicReservations = reservationRepository.findPublicAvailableReservations(now);
+        // 👥 Jugadores e invitaciones de todas las reservas en bloque
+        List<Long> ids = idsOf(reservations);
+        Map<Long, List<PlayerRow>> players = loadPlayers(ids);
+        InvitationStates invitaciones = loadInvitationStates(ids);
 
-        return publicReservations.stream().map(res -> {
+        return reservations.stream().map(res -> {
             ReservationDTO dto = new ReservationDTO();
             dto.setId(res.getId());
             dto.setUserId(res.getUser().getId());
@@ -1613,14 +1711,14 @@ public class ReservationService {
             dto.setEsCreador(res.getUser().getId().equals(currentUserId));
 
             dto.setJugadores(
-                    res.getJugadores().stream()
-                            .filter(j -> !res.isPlayerRejected(j))
+                    players.getOrDefault(res.getId(), List.of()).stream()
+                            .filter(j -> !invitaciones.isRejected(res.getId(), j.id()))
                             .map(j -> {
                                 UserDTO userDTO = new UserDTO();
-                                userDTO.setId(j.getId());
-                                userDTO.setUsername(j.getUsername());
-                                userDTO.setFullName(j.getFullName());
-                                userDTO.setProfileImageUrl(j.getProfileImageUrl());
+                                userDTO.setId(j.id());
+                                userDTO.setUsername(j.username());
+                                userDTO.setFullName(j.fullName());
+                                userDTO.setProfileImageUrl(j.profileImageUrl());
                                 return userDTO;
                             })
                             .toList()
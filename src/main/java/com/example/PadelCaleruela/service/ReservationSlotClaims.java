@@ -0,0 +1,76 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.repository.ReservationSlotClaimRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reclamación de slots contra la BD (tabla reservation_slot_claims).
+ * Dos creaciones simultáneas del mismo slot: la segunda espera al lock de la
+ * clave única y, cuando la primera hace commit, ve que el slot ya tiene dueño → 409.
+ * Funciona igual con varias instancias.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReservationSlotClaims {
+
+    private final ReservationSlotClaimRepository claimRepository;
+
+    /**
+     * Reclama el slot para la reserva (misma transacción que su creación).
+     * Si la reclamación existente es de una reserva cancelada o borrada, se recupera.
+     */
+    public void claim(Long pistaId, LocalDateTime startTime, Long reservationId) {
+        try {
+            claimRepository.insertOrLockClaim(pistaId, startTime, reservationId);
+
+            Long owner = claimRepository.findClaimOwnerForUpdate(pistaId, startTime);
+            if (reservationId.equals(owner)) return;
+
+            // Ya había dueño: solo se recupera el slot si su reserva está cancelada o borrada
+            if (owner != null && claimRepository.countActiveReservationLocked(owner) > 0) {
+                throw new SlotAlreadyTakenException("Esta pista ya está reservada a esa hora.");
+            }
+            claimRepository.reassignClaim(pistaId, startTime, reservationId);
+
+        } catch (DataIntegrityViolationException | PessimisticLockingFailureException e) {
+            // Deadlock o timeout de lock con otra operación sobre el mismo slot → 409, no 500
+            throw new SlotAlreadyTakenException("Esta pista ya está reservada a esa hora.");
+        }
+    }
+
+    /** Libera el slot de la reserva (al cancelarla o borrarla). */
+    public void release(Long reservationId) {
+        if (reservationId == null) return;
+        claimRepository.deleteByReservationId(reservationId);
+    }
+
+    // ======================================================
+    // 🔧 Mantenimiento
+    // ======================================================
+
+    // Al arrancar: reserva activa futura sin reclamación → se le crea (idempotente)
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        int created = claimRepository.backfillActiveClaims(LocalDateTime.now().minusDays(1));
+        if (created > 0) {
+            System.out.println("🎯 Reclamaciones de slot creadas al arrancar: " + created);
+        }
+    }
+
+    // Cada noche (4:15): los slots pasados ya no se pueden reservar
+    @Scheduled(cron = "0 15 4 * * *")
+    @Transactional
+    public void purgePast() {
+        claimRepository.deleteByStartTimeBefore(LocalDateTime.now().minusDays(1));
+    }
+}
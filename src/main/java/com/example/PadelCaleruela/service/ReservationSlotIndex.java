@@ -0,0 +1,164 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.dto.SlotOccupancyDTO;
+import com.example.PadelCaleruela.model.Reservation;
+import com.example.PadelCaleruela.model.ReservationStatus;
+import com.example.PadelCaleruela.repository.ReservationRepository;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice en memoria de la ocupación de pistas por ayuntamiento y día.
+ * Clave: (pistaId, hora de inicio del slot). Se carga una vez por día con una
+ * consulta ligera y después se actualiza de forma incremental al crear,
+ * confirmar o cancelar reservas.
+ *
+ * Cada día lleva un contador de cambios: una carga solo se publica si nadie
+ * tocó ese día mientras se leía de BD (si no, ese cambio se perdería hasta el TTL).
+ */
+@Component
+@RequiredArgsConstructor
+public class ReservationSlotIndex {
+
+    // Por si otra instancia escribe en BD: un día cargado se recarga pasado este tiempo
+    private static final Duration DAY_TTL = Duration.ofMinutes(5);
+    // Recargas si hay escrituras durante la carga; después se sirve sin cachear
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final ReservationRepository reservationRepository;
+
+    private final Map<DayKey, DayOccupancy> days = new ConcurrentHashMap<>();
+    private final Map<DayKey, Long> versions = new ConcurrentHashMap<>();
+
+    public record SlotKey(Long pistaId, LocalTime time) {}
+
+    private record DayKey(Long ayuntamientoId, LocalDate date) {}
+
+    private static final class DayOccupancy {
+        private final Map<SlotKey, SlotOccupancyDTO> slots = new ConcurrentHashMap<>();
+        private final Instant loadedAt = Instant.now();
+
+        private boolean isExpired() {
+            return loadedAt.plus(DAY_TTL).isBefore(Instant.now());
+        }
+    }
+
+    // ======================================================
+    // 🔍 Lectura
+    // ======================================================
+
+    /** Ocupación (solo reservas no canceladas) de un ayuntamiento para un día. */
+    public Map<SlotKey, SlotOccupancyDTO> getDay(Long ayuntamientoId, LocalDate date) {
+        DayKey key = new DayKey(ayuntamientoId, date);
+        DayOccupancy day = days.get(key);
+
+        if (day == null || day.isExpired()) {
+            day = loadAndPublish(key);
+        }
+
+        return Collections.unmodifiableMap(day.slots);
+    }
+
+    private DayOccupancy loadAndPublish(DayKey key) {
+        DayOccupancy loaded = null;
+
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            long version = versions.getOrDefault(key, 0L);
+            loaded = load(key.ayuntamientoId(), key.date());
+
+            // Mismo compute que apply(): o el cambio entra antes (y no publicamos)
+            // o después (y se aplica sobre lo que acabamos de publicar)
+            DayOccupancy candidate = loaded;
+            DayOccupancy published = days.compute(key, (k, current) ->
+                    versions.getOrDefault(k, 0L) == version ? candidate : current);
+
+            if (published == loaded) return loaded;
+        }
+
+        return loaded;
+    }
+
+    private DayOccupancy load(Long ayuntamientoId, LocalDate date) {
+        DayOccupancy day = new DayOccupancy();
+
+        reservationRepository.findSlotOccupancy(
+                ayuntamientoId,
+                date.atStartOfDay(),
+                date.plusDays(1).atStartOfDay()
+        ).forEach(o -> day.slots.put(keyOf(o), o));
+
+        return day;
+    }
+
+    // ======================================================
+    // ✏️ Actualización incremental
+    // ======================================================
+
+    /**
+     * Refleja en el índice el estado actual de la reserva (alta, confirmación o
+     * cancelación). Si hay transacción activa se aplica tras el commit.
+     */
+    public void refresh(Reservation r) {
+        if (r == null || r.getId() == null || r.getPista() == null
+                || r.getAyuntamiento() == null || r.getStartTime() == null) {
+            return;
+        }
+
+        // Capturamos los valores ahora: tras el commit la entidad puede estar desconectada
+        DayKey dayKey = new DayKey(r.getAyuntamiento().getId(), r.getStartTime().toLocalDate());
+        SlotOccupancyDTO occupancy = new SlotOccupancyDTO(
+                r.getId(),
+                r.getPista().getId(),
+                r.getUser() != null ? r.getUser().getId() : null,
+                r.getStartTime(),
+                r.getStatus(),
+                r.isPublic()
+        );
+
+        TransactionUtils.afterCommit(() -> apply(dayKey, occupancy));
+    }
+
+    private void apply(DayKey dayKey, SlotOccupancyDTO occupancy) {
+        days.compute(dayKey, (k, day) -> {
+            versions.merge(k, 1L, Long::sum);
+            if (day != null) applyTo(day, occupancy); // día no cargado: se leerá de BD cuando se pida
+            return day;
+        });
+    }
+
+    private static void applyTo(DayOccupancy day, SlotOccupancyDTO occupancy) {
+        SlotKey slotKey = keyOf(occupancy);
+
+        if (occupancy.getStatus() == ReservationStatus.CANCELED) {
+            day.slots.computeIfPresent(slotKey, (k, current) ->
+                    current.getReservationId().equals(occupancy.getReservationId()) ? null : current);
+        } else {
+            day.slots.put(slotKey, occupancy);
+        }
+    }
+
+    private static SlotKey keyOf(SlotOccupancyDTO o) {
+        return new SlotKey(o.getPistaId(), o.getStartTime().toLocalTime());
+    }
+
+    // ======================================================
+    // 🧹 Limpieza de días pasados o caducados
+    // ======================================================
+    @Scheduled(fixedRate = 3_600_000) // cada hora
+    public void evictStaleDays() {
+        LocalDate today = LocalDate.now();
+        days.entrySet().removeIf(e ->
+                e.getKey().date().isBefore(today) || e.getValue().isExpired());
+        versions.keySet().removeIf(k -> k.date().isBefore(today));
+    }
+}
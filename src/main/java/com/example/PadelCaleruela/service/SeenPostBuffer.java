@@ -0,0 +1,92 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.util.TtlCache;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffer write-behind de "post visto".
+ * /seen solo apunta la pareja (userId, postId) en memoria; cada 300 ms se
+ * vuelca todo en un único batch INSERT IGNORE (la tabla tiene unique
+ * user_id + post_id). Un conjunto acotado de vistos recientes evita volver
+ * a escribir lo que ya se guardó.
+ */
+@Component
+public class SeenPostBuffer {
+
+    private static final String INSERT_IGNORE =
+            "INSERT IGNORE INTO user_seen_posts (user_id, post_id, seen_at) VALUES (?, ?, ?)";
+
+    private static final int JDBC_BATCH_SIZE = 500;
+
+    private static final int RECENT_MAX_SIZE = 200_000;
+    private static final Duration RECENT_TTL = Duration.ofHours(6);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private record SeenKey(Long userId, Long postId) {}
+
+    private final Map<SeenKey, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final TtlCache<SeenKey, Boolean> recentlySeen = new TtlCache<>(RECENT_MAX_SIZE, RECENT_TTL);
+
+    public SeenPostBuffer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Apunta el visto; la escritura en BD se hace en el siguiente volcado. */
+    public void record(Long userId, Long postId) {
+        SeenKey key = new SeenKey(userId, postId);
+
+        if (recentlySeen.get(key) != null) return;
+
+        pending.putIfAbsent(key, LocalDateTime.now());
+    }
+
+    // ======================================================
+    // 💾 Volcado
+    // ======================================================
+
+    @Scheduled(fixedDelay = 300)
+    public void flush() {
+        if (pending.isEmpty()) return;
+
+        List<Object[]> rows = new ArrayList<>();
+        List<SeenKey> flushed = new ArrayList<>();
+
+        for (SeenKey key : pending.keySet()) {
+            LocalDateTime seenAt = pending.remove(key);
+            if (seenAt == null) continue;
+
+            rows.add(new Object[]{key.userId(), key.postId(), Timestamp.valueOf(seenAt)});
+            flushed.add(key);
+        }
+
+        if (rows.isEmpty()) return;
+
+        try {
+            for (int from = 0; from < rows.size(); from += JDBC_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_IGNORE, rows.subList(from, Math.min(from + JDBC_BATCH_SIZE, rows.size())));
+            }
+            flushed.forEach(k -> recentlySeen.put(k, Boolean.TRUE));
+
+        } catch (Exception e) {
+            // No es crítico: el próximo /seen del mismo post lo volverá a apuntar
+            System.err.println("⚠ Error guardando " + rows.size() + " posts vistos: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.PadelCaleruela.service;
+
+/**
+ * El slot (pista + hora) ya tiene una reserva activa. Los controladores lo devuelven como 409.
+ */
+public class SlotAlreadyTakenException extends RuntimeException {
+
+    public SlotAlreadyTakenException(String message) {
+        super(message);
+    }
+}
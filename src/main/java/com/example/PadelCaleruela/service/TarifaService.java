@@ -1,11 +1,11 @@
 package com.example.PadelCaleruela.service;
 
+import com.example.PadelCaleruela.AuthenticatedPrincipal;
 import com.example.PadelCaleruela.dto.TarifaDTO;
 import com.example.PadelCaleruela.dto.TarifaFranjaDTO;
 import com.example.PadelCaleruela.model.Ayuntamiento;
 import com.example.PadelCaleruela.model.Tarifa;
 import com.example.PadelCaleruela.model.TarifaFranja;
-import com.example.PadelCaleruela.model.User;
 import com.example.PadelCaleruela.model.Role;
 import com.example.PadelCaleruela.repository.AyuntamientoRepository;
 import com.example.PadelCaleruela.repository.TarifaFranjaRepository;
@@ -13,7 +13,6 @@ import com.example.PadelCaleruela.repository.TarifaRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -26,25 +25,22 @@ public class TarifaService {
     private final AyuntamientoRepository aytoRepo;
     private final TarifaRepository tarifaRepo;
     private final TarifaFranjaRepository franjaRepo;
+    private final PricingService pricingService;
 
     // ================= VALIDACIÓN ================
 
     private Ayuntamiento validatePermissions(Long ayuntamientoId) {
 
-        Object principal = SecurityContextHolder.getContext()
-                .getAuthentication()
-                .getPrincipal();
+        AuthenticatedPrincipal current = AuthenticatedPrincipal.current();
 
         // Usuario SUPERADMIN o ADMIN
-        if (principal instanceof com.example.PadelCaleruela.CustomUserDetails cud) {
-
-            User currentUser = cud.getUser();
+        if (current != null) {
 
             Ayuntamiento a = aytoRepo.findById(ayuntamientoId)
                     .orElseThrow(() -> new RuntimeException("Ayuntamiento no encontrado"));
 
-            if (currentUser.getRole() == Role.ADMIN &&
-                    !currentUser.getAyuntamiento().getId().equals(ayuntamientoId)) {
+            if (current.role() == Role.ADMIN &&
+                    !ayuntamientoId.equals(current.ayuntamientoId())) {
 
                 throw new SecurityException("No tienes permisos para modificar este ayuntamiento");
             }
@@ -74,6 +70,7 @@ public class TarifaService {
         t.setPrecioBase(new BigDecimal(dto.getPrecioBase()));
 
         tarifaRepo.save(t);
+        pricingService.invalidate(ayuntamientoId);
         return mapToDTO(t);
     }
 
@@ -84,6 +81,7 @@ public class TarifaService {
 
         t.setPrecioBase(new BigDecimal(dto.getPrecioBase()));
         tarifaRepo.save(t);
+        pricingService.invalidate(ayuntamientoId);
 
         return mapToDTO(t);
     }
@@ -120,7 +118,9 @@ public class TarifaService {
         fr.setAyuntamiento(ayto);
         updateEntityFromDTO(fr, dto);
 
-        return toDTO(franjaRepo.save(fr));
+        TarifaFranjaDTO saved = toDTO(franjaRepo.save(fr));
+        pricingService.invalidate(ayuntamientoId);
+        return saved;
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPERADMIN')")
@@ -165,7 +165,9 @@ public class TarifaService {
 
         updateEntityFromDTO(franja, dto);
 
-        return toDTO(franjaRepo.save(franja));
+        TarifaFranjaDTO saved = toDTO(franjaRepo.save(franja));
+        pricingService.invalidate(ayuntamientoId);
+        return saved;
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('SUPERADMIN')")
@@ -178,6 +180,7 @@ public class TarifaService {
                 .orElseThrow(() -> new RuntimeException("Franja no encontrada"));
 
         franjaRepo.delete(franja);
+        pricingService.invalidate(ayuntamientoId);
     }
 
     private TarifaFranjaDTO toDTO(TarifaFranja fr) {
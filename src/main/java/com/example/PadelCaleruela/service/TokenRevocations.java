@@ -0,0 +1,104 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.model.UserTokenRevocation;
+import com.example.PadelCaleruela.repository.UserTokenRevocationRepository;
+import com.example.PadelCaleruela.util.TransactionUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro de "el usuario cambió en este instante" (rol, estado, ayuntamiento,
+ * borrado...). JwtAuthenticationFilter se fía de los claims del token salvo que
+ * el token sea anterior al último cambio del usuario: en ese caso usa los datos
+ * frescos de {@link PrincipalCache} (o rechaza si ya no existe).
+ *
+ * La fuente de verdad es la tabla user_token_revocations (sobrevive a reinicios
+ * y la ven todas las instancias); la consulta por petición va contra una copia en
+ * memoria que se carga al arrancar y se sincroniza cada pocos segundos.
+ * Solo guarda usuarios cambiados en la vida de un token; el resto no ocupa nada.
+ */
+@Component
+@RequiredArgsConstructor
+public class TokenRevocations {
+
+    // Igual que la vida del token (JwtService): pasado ese tiempo ya no hay tokens anteriores
+    private static final Duration RETENTION = Duration.ofDays(7);
+    // Solape al sincronizar, para no perder cambios confirmados justo en el borde
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(30);
+
+    private final UserTokenRevocationRepository revocationRepository;
+
+    private final Map<Long, Long> changedAt = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastSync;
+
+    // 🔄 Al arrancar: los cambios de la última semana (antes de atender peticiones)
+    @PostConstruct
+    void load() {
+        LocalDateTime now = LocalDateTime.now();
+        revocationRepository.findByChangedAtAfter(now.minus(RETENTION)).forEach(this::remember);
+        lastSync = now;
+    }
+
+    /**
+     * Guarda el cambio en la transacción actual (si no hay, en una propia) y lo
+     * aplica en memoria cuando haga commit.
+     */
+    public void markChanged(Long userId) {
+        if (userId == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        revocationRepository.upsert(userId, now);
+        TransactionUtils.afterCommit(() -> changedAt.merge(userId, toMillis(now), Math::max));
+    }
+
+    /** true si el token se emitió antes (o en el mismo segundo) del último cambio del usuario. */
+    public boolean isStale(Long userId, Date issuedAt) {
+        Long changed = changedAt.get(userId);
+        if (changed == null) return false;
+        return issuedAt == null || issuedAt.getTime() <= changed;
+    }
+
+    // 🔄 Cambios hechos desde otras instancias
+    @Scheduled(fixedDelay = 10_000)
+    public void sync() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            revocationRepository.findByChangedAtAfter(lastSync.minus(SYNC_OVERLAP)).forEach(this::remember);
+            lastSync = now;
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudieron sincronizar las revocaciones de tokens: " + e.getMessage());
+        }
+    }
+
+    // 🧹 Cada hora: fuera los cambios más viejos que cualquier token vigente
+    @Scheduled(fixedRate = 3_600_000)
+    public void purge() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(RETENTION);
+        long cutoffMillis = toMillis(cutoff);
+        changedAt.values().removeIf(t -> t < cutoffMillis);
+
+        try {
+            revocationRepository.deleteByChangedAtBefore(cutoff);
+        } catch (Exception e) {
+            System.err.println("⚠️ Error purgando revocaciones de tokens: " + e.getMessage());
+        }
+    }
+
+    private void remember(UserTokenRevocation r) {
+        changedAt.merge(r.getUserId(), toMillis(r.getChangedAt()), Math::max);
+    }
+
+    private static long toMillis(LocalDateTime t) {
+        Instant instant = t.atZone(ZoneId.systemDefault()).toInstant();
+        return instant.toEpochMilli();
+    }
+}
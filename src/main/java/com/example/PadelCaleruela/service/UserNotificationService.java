@@ -6,6 +6,7 @@ import com.example.PadelCaleruela.repository.DeviceTokenRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 
 @Service
@@ -15,23 +16,37 @@ public class UserNotificationService {
     private final DeviceTokenRepository tokenRepository;
     private final NotificationService notificationService;  // envía a Firebase
     private final NotificationFactory factory;              // genera texto automático
+    private final OutboxService outboxService;              // push diferido tras el commit
 
+    /**
+     * Registra el push en el outbox (misma transacción que el llamador).
+     * El envío real lo hace OutboxRelay → deliver().
+     */
     public void sendToUser(Long userId, String title, String body) {
+        outboxService.enqueuePush(userId, title, body);
+    }
 
-        List<DeviceToken> tokens = tokenRepository.findByUserId(userId);
+    /**
+     * 📤 Entrega real (la llama OutboxRelay): envía a los tokens del usuario y
+     * vuelve con el resultado de FCM. Si lanza excepción, el outbox lo reintenta.
+     *
+     * @param onlyTokens en un reintento, los tokens que fallaron la vez anterior
+     *                   (los que el usuario ya no tenga se ignoran); null = todos
+     */
+    public void deliver(Long userId, String title, String body, Collection<String> onlyTokens) {
+
+        List<String> tokens = tokenRepository.findByUserId(userId).stream()
+                .map(DeviceToken::getToken)
+                .filter(t -> onlyTokens == null || onlyTokens.contains(t))
+                .toList();
 
         if (tokens.isEmpty()) {
-            System.out.println("⚠ Usuario sin tokens registrados → " + userId);
+            if (onlyTokens == null) System.out.println("⚠ Usuario sin tokens registrados → " + userId);
             return;
         }
 
-        for (DeviceToken token : tokens) {
-            try {
-                notificationService.sendPush(token.getToken(), title, body);
-            } catch (Exception ex) {
-                System.out.println("⚠ Error enviando push al token " + token.getToken());
-            }
-        }
+        // Síncrono: el mensaje del outbox solo se marca SENT si FCM lo ha aceptado
+        notificationService.sendPushToAllNow(tokens, title, body);
     }
 
 
@@ -5,6 +5,7 @@ import com.example.PadelCaleruela.AppProperties;
 import com.example.PadelCaleruela.dto.*;
 import com.example.PadelCaleruela.model.*;
 import com.example.PadelCaleruela.repository.*;
+import com.example.PadelCaleruela.util.TransactionUtils;
 import jakarta.transaction.Transactional;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
@@ -42,6 +43,10 @@ public class UserService {
 
     private final BlockRepository blockRepository;
 
+    private final PrincipalCache principalCache;
+    private final RefreshTokenService refreshTokenService;
+    private final BlockGraphService blockGraph;
+
 
     private static final String UPLOAD_DIR = System.getProperty("user.dir") + "/uploads/profile-images/";
 
@@ -57,7 +62,10 @@ public class UserService {
             AppProperties appProperties,
             FollowRepository followRepository,
             AyuntamientoRepository ayuntamientoRepository,
-            BlockRepository blockRepository
+            BlockRepository blockRepository,
+            PrincipalCache principalCache,
+            RefreshTokenService refreshTokenService,
+            BlockGraphService blockGraph
     ) {
         this.userRepository = repo;
         this.passwordEncoder = passwordEncoder;
@@ -70,6 +78,9 @@ public class UserService {
         this.followRepository=followRepository;
         this.ayuntamientoRepository=ayuntamientoRepository;
         this.blockRepository=blockRepository;
+        this.principalCache=principalCache;
+        this.refreshTokenService=refreshTokenService;
+        this.blockGraph=blockGraph;
     }
 
 
@@ -163,6 +174,7 @@ public class UserService {
         // ============================
         if (authService.isSuperAdmin()) {
             target.setRole(targetRole);
+            principalCache.evict(target.getId());
             return userRepository.save(target);
         }
 
@@ -197,6 +209,7 @@ public class UserService {
 
             // 5) Un ADMIN puede modificar a USER y ADMIN dentro de su ayuntamiento
             target.setRole(targetRole);
+            principalCache.evict(target.getId());
             return userRepository.save(target);
         }
 
@@ -274,13 +287,11 @@ public class UserService {
         // ===============================
         // Enviar email con contraseña
         // ===============================
-        emailService.sendHtmlEmail(
+        emailService.sendTemplate(
                 user.getEmail(),
                 "Usuario creado correctamente",
-                "<h3>¡Hola " + user.getUsername() + "!</h3>" +
-                        "<p>Bienvenido a la mejor aplicación de pádel del mundo 🎾.</p>" +
-                        "<p>Se te ha asignado una contraseña temporal, puedes cambiarla desde la app.</p>" +
-                        "<p><strong>Contraseña: " + pass + "</strong></p>"
+                EmailTemplates.Template.USUARIO_CREADO,
+                EmailTemplates.vars("usuario", user.getUsername(), "password", pass)
         );
 
         return toDTO(saved);
@@ -297,6 +308,7 @@ public class UserService {
 
         user.setAyuntamiento(ayto);
         userRepository.save(user);
+        principalCache.evict(user.getId());
 
         return toDTO(user);
     }
@@ -396,6 +408,9 @@ public class UserService {
 
         Long ayId = current.getAyuntamiento().getId();
 
+        // Bloqueos del usuario actual: se cargan una vez y se consultan en memoria
+        BlockGraphService.BlockView blocks = blockGraph.viewFor(current);
+
         return results.stream()
                 // ===============================
                 // 1) Usuario del mismo ayuntamiento
@@ -405,28 +420,22 @@ public class UserService {
                 // ===============================
                 // 2) Descarta usuarios que me bloquean
                 // ===============================
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByUser(current, u))
+                .filter(u -> !blocks.blocksMe(u.getId()))
 
                 // ===============================
                 // 3) Descarta usuarios que yo bloqueé
                 // ===============================
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByUser(u, current))
+                .filter(u -> !blocks.iBlock(u.getId()))
 
                 // ===============================
                 // 4) Ayuntamiento del usuario me bloquea
                 // ===============================
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByAyuntamiento(
-                        current,
-                        u.getAyuntamiento()
-                ))
+                .filter(u -> !blocks.ayuntamientoBlocksMe(u.getAyuntamiento().getId()))
 
                 // ===============================
                 // 5) Mi ayuntamiento bloqueó al usuario
                 // ===============================
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByAyuntamiento(
-                        u,
-                        current.getAyuntamiento()
-                ))
+                .filter(u -> !blocks.myAyuntamientoBlocks(u.getId()))
 
                 // ===============================
                 // 6) Convertir a DTO
@@ -460,7 +469,8 @@ public class UserService {
         if (fullName != null && !fullName.isBlank()) target.setFullName(fullName);
         if (username != null && !username.isBlank()) target.setUsername(username);
         if (email != null && !email.isBlank()) target.setEmail(email);
-        if (password != null && !password.isBlank()) {
+        boolean passwordChanged = password != null && !password.isBlank();
+        if (passwordChanged) {
             target.setPassword(passwordEncoder.encode(password));
         }
         if (profileImage != null && !profileImage.isEmpty()) {
@@ -468,7 +478,15 @@ public class UserService {
             target.setProfileImageUrl(imageUrl);
         }
 
-        return toDTO(userRepository.save(target));
+        principalCache.evict(target.getId());
+        UserDTO dto = toDTO(userRepository.save(target));
+
+        // Contraseña nueva → las sesiones abiertas tendrán que volver a entrar
+        if (passwordChanged) {
+            Long targetId = target.getId();
+            TransactionUtils.afterCommit(() -> refreshTokenService.revokeAllForUser(targetId));
+        }
+        return dto;
     }
 
 
@@ -491,6 +509,7 @@ public class UserService {
 
         target.setStatus(UserStatus.valueOf(newStatus.toUpperCase()));
         userRepository.save(target);
+        principalCache.evict(target.getId());
     }
 
 
@@ -557,8 +576,11 @@ public class UserService {
             if (updatedUser.getPassword() != null &&
                     !updatedUser.getPassword().isBlank()) {
                 user.setPassword(passwordEncoder.encode(updatedUser.getPassword()));
+                // Contraseña nueva → las sesiones abiertas tendrán que volver a entrar
+                refreshTokenService.revokeAllForUser(user.getId());
             }
 
+            principalCache.evict(user.getId());
             return toDTO(userRepository.save(user));
         });
     }
@@ -669,25 +691,22 @@ public class UserService {
 // --------------------------------------------------------------------
 // 🔥 NUEVO: Filtrar usuarios bloqueados o que han bloqueado al usuario actual
 // --------------------------------------------------------------------
+        BlockGraphService.BlockView blocks = blockGraph.viewFor(current);
+
         suggestedUsers = suggestedUsers.stream()
 
                 // Usuario actual bloqueado por el target
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByUser(current, u))
+                .filter(u -> !blocks.blocksMe(u.getId()))
 
                 // Usuario actual ha bloqueado al target
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByUser(u, current))
+                .filter(u -> !blocks.iBlock(u.getId()))
 
                 // Ayuntamiento del target ha bloqueado al usuario actual
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByAyuntamiento(
-                        current,
-                        u.getAyuntamiento()
-                ))
+                .filter(u -> u.getAyuntamiento() == null
+                        || !blocks.ayuntamientoBlocksMe(u.getAyuntamiento().getId()))
 
                 // Ayuntamiento del usuario actual ha bloqueado al target
-                .filter(u -> !blockRepository.existsByBlockedUserAndBlockedByAyuntamiento(
-                        u,
-                        current.getAyuntamiento()
-                ))
+                .filter(u -> !blocks.myAyuntamientoBlocks(u.getId()))
 
                 .toList();
 
@@ -709,38 +728,9 @@ public class UserService {
         Long ayId = current.getAyuntamiento() != null ? current.getAyuntamiento().getId() : null;
 
         // ============================================================
-        // 1️⃣ Usuarios que YO he bloqueado (user → user)
-        // ============================================================
-        Set<Long> yoBloqueo = blockRepository.findByBlockedByUser(current)
-                .stream()
-                .map(b -> b.getBlockedUser().getId())
-                .collect(Collectors.toSet());
-
+        // 1️⃣-4️⃣ Bloqueos (user ↔ user, ayto → me, mi ayto → otros) en memoria
         // ============================================================
-        // 2️⃣ Usuarios que ME han bloqueado (user → me)
-        // ============================================================
-        Set<Long> meBloquearon = blockRepository.findByBlockedUser(current)
-                .stream()
-                .filter(b -> b.getBlockedByUser() != null)
-                .map(b -> b.getBlockedByUser().getId())
-                .collect(Collectors.toSet());
-
-        // ============================================================
-        // 3️⃣ Usuarios bloqueados por MI ayuntamiento (ayto → otros)
-        // ============================================================
-        Set<Long> aytoBloquea = blockRepository.findByBlockedByAyuntamiento(current.getAyuntamiento())
-                .stream()
-                .map(b -> b.getBlockedUser().getId())
-                .collect(Collectors.toSet());
-
-        // ============================================================
-        // 4️⃣ Ayuntamientos que me han bloqueado a mí (ayto → me)
-        // ============================================================
-        Set<Long> aytosQueMeBloquearon = blockRepository.findByBlockedUser(current)
-                .stream()
-                .filter(b -> b.getBlockedByAyuntamiento() != null)
-                .map(b -> b.getBlockedByAyuntamiento().getId())
-                .collect(Collectors.toSet());
+        BlockGraphService.BlockView blocks = blockGraph.viewFor(current);
 
         // ============================================================
         // 5️⃣ Obtener jugadores activos
@@ -752,9 +742,9 @@ public class UserService {
         // ============================================================
         if (authService.isSuperAdmin()) {
             return activos.stream()
-                    .filter(u -> !yoBloqueo.contains(u.getId()))
-                    .filter(u -> !meBloquearon.contains(u.getId()))
-                    .filter(u -> !aytoBloquea.contains(u.getId()))
+                    .filter(u -> !blocks.iBlock(u.getId()))
+                    .filter(u -> !blocks.blocksMe(u.getId()))
+                    .filter(u -> !blocks.myAyuntamientoBlocks(u.getId()))
                     .map(this::toDTO)
                     .toList();
         }
@@ -764,10 +754,10 @@ public class UserService {
         // ============================================================
         return activos.stream()
                 .filter(u -> Objects.equals(u.getAyuntamiento().getId(), ayId)) // mismo ayto
-                .filter(u -> !yoBloqueo.contains(u.getId()))                     // yo lo bloqueé
-                .filter(u -> !meBloquearon.contains(u.getId()))                 // me bloqueó él
-                .filter(u -> !aytoBloquea.contains(u.getId()))                  // mi ayto lo bloqueó
-                .filter(u -> !aytosQueMeBloquearon.contains(ayId))              // su ayto me bloqueó
+                .filter(u -> !blocks.iBlock(u.getId()))                          // yo lo bloqueé
+                .filter(u -> !blocks.blocksMe(u.getId()))                        // me bloqueó él
+                .filter(u -> !blocks.myAyuntamientoBlocks(u.getId()))            // mi ayto lo bloqueó
+                .filter(u -> !blocks.ayuntamientoBlocksMe(ayId))                 // su ayto me bloqueó
                 .map(this::toDTO)
                 .toList();
     }
@@ -844,6 +834,8 @@ public class UserService {
         }
 
         userRepository.delete(target);
+        principalCache.evict(target.getId());
+        refreshTokenService.revokeAllForUser(target.getId());
         return true;
     }
 
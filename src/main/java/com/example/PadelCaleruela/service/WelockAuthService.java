@@ -1,17 +1,41 @@
 package com.example.PadelCaleruela.service;
 
 import com.example.PadelCaleruela.dto.WelockAuthResponse;
+import com.example.PadelCaleruela.dto.WelockTokenData;
+import com.example.PadelCaleruela.util.BoundedExecutor;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Token de acceso a Welock.
+ *
+ * - Lectura sin bloqueos: el token vigente vive en una referencia atómica.
+ * - Refresco proactivo en segundo plano al 80% de su vida (expiresIn).
+ * - Si aun así caduca o Welock responde 401, se refresca en "single-flight":
+ *   un solo hilo hace la llamada y el resto espera ese mismo resultado.
+ */
 @Service
 public class WelockAuthService {
 
+    private static final String REFRESH_KEY = "welock-token-refresh";
+    private static final double REFRESH_AT_FRACTION = 0.8;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
     @Value("${welock.base-url}")
     private String baseUrl;
 
@@ -21,90 +45,197 @@ public class WelockAuthService {
     @Value("${welock.secret}")
     private String secret;
 
-    private String accessToken;
-    private String refreshToken;
-    private Instant expiresAt;
+    private record TokenState(String accessToken, String refreshToken, Instant expiresAt) {
+
+        boolean isValid() {
+            return Instant.now().isBefore(expiresAt);
+        }
+    }
+
+    private final AtomicReference<TokenState> state = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<TokenState>> inFlight = new AtomicReference<>();
 
     private final WebClient client;
+    private final DeadlineScheduler deadlineScheduler;
+    private final BoundedExecutor ioExecutor;
 
-    public WelockAuthService(WebClient.Builder builder) {
-        this.client = builder.build();
+    public WelockAuthService(@Qualifier("welockWebClient") WebClient client,
+                             DeadlineScheduler deadlineScheduler,
+                             BoundedExecutor ioExecutor) {
+        this.client = client;
+        this.deadlineScheduler = deadlineScheduler;
+        this.ioExecutor = ioExecutor;
     }
 
     // ======================================================
     // 🔑 Obtener Token válido
     // ======================================================
-    public synchronized String getToken() {
-        if (accessToken != null && expiresAt != null && Instant.now().isBefore(expiresAt)) {
-            return accessToken;
+    public String getToken() {
+        TokenState current = state.get();
+        if (current != null && current.isValid()) {
+            return current.accessToken();
         }
+        return refresh(current).accessToken();
+    }
 
-        if (refreshToken != null) {
-            return refreshToken();
+    /**
+     * Welock ha rechazado {@code rejectedToken} (401). Si sigue siendo el vigente
+     * se refresca (una sola vez aunque lo pidan muchos hilos); devuelve el token a usar.
+     */
+    public String onUnauthorized(String rejectedToken) {
+        TokenState current = state.get();
+        if (current != null && !current.accessToken().equals(rejectedToken) && current.isValid()) {
+            return current.accessToken(); // otro hilo ya lo renovó
         }
-
-        return requestNewToken();
+        return refresh(current).accessToken();
     }
 
     // ======================================================
-    // 🆕 Obtener un token nuevo
+    // ⚡ Variantes reactivas: si hay que refrescar, el bloqueo va a boundedElastic
+    // (nunca a los hilos de Netty)
     // ======================================================
-    private String requestNewToken() {
-        Map<String, String> body = Map.of(
-                "appID", appId,
-                "secret", secret
-        );
+    public Mono<String> getTokenAsync() {
+        TokenState current = state.get();
+        if (current != null && current.isValid()) {
+            return Mono.just(current.accessToken());
+        }
+        return Mono.fromCallable(this::getToken).subscribeOn(Schedulers.boundedElastic());
+    }
 
-        String url = baseUrl + "/API/Auth/Token";
+    public Mono<String> onUnauthorizedAsync(String rejectedToken) {
+        return Mono.fromCallable(() -> onUnauthorized(rejectedToken)).subscribeOn(Schedulers.boundedElastic());
+    }
 
-        WelockAuthResponse resp = client.post()
-                .uri(url)
-                .contentType(MediaType.APPLICATION_JSON)
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(WelockAuthResponse.class)
-                .block();
+    // ======================================================
+    // 🔁 Refresco single-flight
+    // ======================================================
+    private TokenState refresh(TokenState stale) {
+        CompletableFuture<TokenState> mine = new CompletableFuture<>();
+        CompletableFuture<TokenState> running = inFlight.compareAndExchange(null, mine);
 
-        if (resp == null || resp.getCode() != 0) {
-            throw new RuntimeException("Error autenticando con Welock: " + resp);
+        if (running != null) {
+            // Ya hay otro hilo refrescando → esperamos su resultado
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
         }
 
-        accessToken = resp.getData().getAccessToken();
-        refreshToken = resp.getData().getRefreshToken();
-        expiresAt = Instant.now().plusSeconds(resp.getData().getExpiresIn());
+        try {
+            // Puede que otro hilo haya terminado de refrescar justo antes
+            TokenState current = state.get();
+            if (current != stale && current != null && current.isValid()) {
+                mine.complete(current);
+                return current;
+            }
+
+            TokenState fresh = fetch(current);
+            state.set(fresh);
+            scheduleProactiveRefresh(fresh);
 
-        return accessToken;
+            mine.complete(fresh);
+            return fresh;
+
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.set(null);
+        }
     }
 
     // ======================================================
-    // 🔁 Refrescar token
+    // ⏰ Refresco proactivo (al 80% de la vida del token)
     // ======================================================
-    private String refreshToken() {
+    private void scheduleProactiveRefresh(TokenState token) {
+        long lifeMillis = Duration.between(Instant.now(), token.expiresAt()).toMillis();
+        Instant at = Instant.now().plusMillis((long) (lifeMillis * REFRESH_AT_FRACTION));
+        scheduleRefreshAt(at, token);
+    }
 
-        Map<String, String> body = Map.of(
-                "appID", appId,
-                "refreshToken", refreshToken
+    private void scheduleRefreshAt(Instant at, TokenState token) {
+        deadlineScheduler.schedule(
+                REFRESH_KEY,
+                LocalDateTime.ofInstant(at, ZoneId.systemDefault()),
+                () -> {
+                    try {
+                        ioExecutor.execute(() -> refreshProactively(token));
+                    } catch (RejectedExecutionException e) {
+                        refreshProactively(token);
+                    }
+                }
         );
+    }
+
+    private void refreshProactively(TokenState token) {
+        if (state.get() != token) return; // ya se renovó por otro camino
+
+        try {
+            refresh(token);
+            System.out.println("🔑 Token Welock renovado en segundo plano");
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ Error renovando token Welock: " + e.getMessage());
+
+            // Reintento mientras el token actual siga sirviendo (si no, lo hará getToken)
+            Instant retryAt = Instant.now().plus(RETRY_DELAY);
+            if (retryAt.isBefore(token.expiresAt())) {
+                scheduleRefreshAt(retryAt, token);
+            }
+        }
+    }
+
+    // ======================================================
+    // 🌐 Llamadas a Welock
+    // ======================================================
 
-        String url = baseUrl + "/API/Auth/RefreshToken";
+    // Refresh token si lo hay; si falla, token nuevo con appID + secret
+    private TokenState fetch(TokenState current) {
+        if (current != null && current.refreshToken() != null) {
+            try {
+                WelockTokenData data = post("/API/Auth/RefreshToken", Map.of(
+                        "appID", appId,
+                        "refreshToken", current.refreshToken()
+                ));
+                if (data != null) return toState(data);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Refresh token Welock rechazado: " + e.getMessage());
+            }
+        }
 
+        WelockTokenData data = post("/API/Auth/Token", Map.of(
+                "appID", appId,
+                "secret", secret
+        ));
+        if (data == null) {
+            throw new RuntimeException("Error autenticando con Welock");
+        }
+        return toState(data);
+    }
+
+    // null si Welock responde con code != 0
+    private WelockTokenData post(String path, Map<String, String> body) {
         WelockAuthResponse resp = client.post()
-                .uri(url)
+                .uri(baseUrl + path)
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(body)
                 .retrieve()
                 .bodyToMono(WelockAuthResponse.class)
                 .block();
 
-        if (resp == null || resp.getCode() != 0) {
-            return requestNewToken();
+        if (resp == null || resp.getCode() != 0 || resp.getData() == null) {
+            System.err.println("⚠️ Welock " + path + " respondió: " + resp);
+            return null;
         }
+        return resp.getData();
+    }
 
-        accessToken = resp.getData().getAccessToken();
-        refreshToken = resp.getData().getRefreshToken();
-        expiresAt = Instant.now().plusSeconds(resp.getData().getExpiresIn());
-
-        return accessToken;
+    private static TokenState toState(WelockTokenData data) {
+        return new TokenState(
+                data.getAccessToken(),
+                data.getRefreshToken(),
+                Instant.now().plusSeconds(data.getExpiresIn())
+        );
     }
 
     // ======================================================
@@ -112,14 +243,17 @@ public class WelockAuthService {
     // ======================================================
 
     public String getAccessTokenValue() {
-        return accessToken;
+        TokenState current = state.get();
+        return current != null ? current.accessToken() : null;
     }
 
     public String getRefreshToken() {
-        return refreshToken;
+        TokenState current = state.get();
+        return current != null ? current.refreshToken() : null;
     }
 
     public Instant getExpiresAt() {
-        return expiresAt;
+        TokenState current = state.get();
+        return current != null ? current.expiresAt() : null;
     }
 }
@@ -0,0 +1,79 @@
+package com.example.PadelCaleruela.util;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor con hilos virtuales, concurrencia máxima y cola acotada.
+ * Si la cola está llena la tarea se rechaza (RejectedExecutionException) y se cuenta,
+ * en vez de crear hilos sin límite como SimpleAsyncTaskExecutor.
+ */
+public class BoundedExecutor implements Executor, AutoCloseable {
+
+    private final String name;
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public BoundedExecutor(String name, int maxConcurrency, int queueCapacity) {
+        this.name = name;
+        this.pool = new ThreadPoolExecutor(
+                maxConcurrency,
+                maxConcurrency,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofVirtual().name(name + "-", 0).factory(),
+                (task, executor) -> {
+                    long total = rejected.incrementAndGet();
+                    throw new RejectedExecutionException(
+                            "Executor " + name + " saturado (rechazadas en total: " + total + ")");
+                }
+        );
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    // ======================================================
+    // 📊 Métricas
+    // ======================================================
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return pool.getQueue().size();
+    }
+
+    public long getCompletedCount() {
+        return pool.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.PadelCaleruela.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de llamadas a un servicio externo: total, errores, timeouts,
+ * rechazadas (sin llegar a llamar) y latencia media/máxima. Sin bloqueos.
+ */
+public class CallStats {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void recordSuccess(long nanos) {
+        calls.increment();
+        recordLatency(nanos);
+    }
+
+    public void recordError(long nanos, boolean timeout) {
+        calls.increment();
+        errors.increment();
+        if (timeout) timeouts.increment();
+        recordLatency(nanos);
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    private void recordLatency(long nanos) {
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Foto de los contadores (latencias en ms). */
+    public Map<String, Object> snapshot() {
+        long total = calls.sum();
+        long errorCount = errors.sum();
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("calls", total);
+        map.put("errors", errorCount);
+        map.put("timeouts", timeouts.sum());
+        map.put("rejected", rejected.sum());
+        map.put("errorRate", total == 0 ? 0d : (double) errorCount / total);
+        map.put("avgLatencyMs", total == 0 ? 0d : totalNanos.sum() / 1_000_000d / total);
+        map.put("maxLatencyMs", maxNanos.get() / 1_000_000d);
+        return map;
+    }
+}
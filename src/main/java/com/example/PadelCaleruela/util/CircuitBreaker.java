@@ -0,0 +1,147 @@
+package com.example.PadelCaleruela.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cortocircuito para un servicio externo.
+ *
+ *  - CLOSED: pasan todas las llamadas; tras {@code failureThreshold} fallos seguidos → OPEN.
+ *  - OPEN: se rechazan sin llamar durante {@code openDuration}; después → HALF_OPEN.
+ *  - HALF_OPEN: pasa una sola llamada de prueba; si va bien → CLOSED, si falla → OPEN otra vez.
+ *
+ * {@link #tryAcquire()} devuelve un {@link Permit} (o null si hay que rechazar) y quien
+ * lo obtiene informa del resultado con {@link #onSuccess}, {@link #onFailure} o
+ * {@link #onIgnored}. Solo el permiso de la llamada de prueba decide la salida de
+ * HALF_OPEN: las llamadas empezadas con el circuito cerrado que acaben después no
+ * la cierran ni liberan el hueco de prueba.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Permiso de una llamada. Solo cuenta el primer resultado que se informe. */
+    public static final class Permit {
+        private final boolean probe;
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        private Permit(boolean probe) {
+            this.probe = probe;
+        }
+
+        public boolean isProbe() {
+            return probe;
+        }
+
+        private boolean report() {
+            return reported.compareAndSet(false, true);
+        }
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long rejected;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        if (failureThreshold <= 0 || openDuration.isNegative() || openDuration.isZero()) {
+            throw new IllegalArgumentException("Umbral y tiempo de apertura deben ser positivos");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /** Permiso para hacer la llamada, o null si el circuito está abierto. */
+    public synchronized Permit tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return new Permit(false);
+            }
+            case OPEN -> {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    rejected++;
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return new Permit(true);
+            }
+            default -> {
+                if (trialInFlight) {
+                    rejected++;
+                    return null;
+                }
+                trialInFlight = true;
+                return new Permit(true);
+            }
+        }
+    }
+
+    public synchronized void onSuccess(Permit permit) {
+        if (!permit.report()) return;
+
+        if (permit.probe) {
+            System.out.println("🟢 Circuito " + name + " cerrado de nuevo");
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+        // Éxito rezagado con el circuito abierto o a prueba: no decide nada
+    }
+
+    public synchronized void onFailure(Permit permit) {
+        if (!permit.report()) return;
+
+        if (permit.probe) {
+            trialInFlight = false;
+            open("falló la llamada de prueba");
+        } else if (state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+            open(consecutiveFailures + " fallos seguidos");
+        }
+        // Fallo rezagado con el circuito abierto o a prueba: ya está contado
+    }
+
+    /** La llamada terminó sin decir nada de la salud del servicio (cancelada, error de negocio...). */
+    public synchronized void onIgnored(Permit permit) {
+        if (!permit.report()) return;
+
+        // Si era la prueba, queda libre el hueco para otra
+        if (permit.probe) {
+            trialInFlight = false;
+        }
+    }
+
+    private void open(String reason) {
+        System.err.println("🔴 Circuito " + name + " abierto: " + reason);
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    // ======================================================
+    // 📊 Métricas
+    // ======================================================
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.PadelCaleruela.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plantilla HTML precompilada: el texto se trocea una sola vez en literales y
+ * variables, y renderizar es solo ir añadiendo trozos a un StringBuilder.
+ *
+ * Sintaxis (estilo mustache):
+ *   {{nombre}}   → valor escapado para HTML
+ *   {{{nombre}}} → valor tal cual (fragmentos HTML ya renderizados)
+ *
+ * Una variable sin valor se renderiza vacía. Es inmutable y segura entre hilos.
+ */
+public final class HtmlTemplate {
+
+    private sealed interface Segment permits Literal, Variable {}
+
+    private record Literal(String text) implements Segment {}
+
+    private record Variable(String name, boolean raw) implements Segment {}
+
+    private final Segment[] segments;
+    private final int literalLength;
+
+    private HtmlTemplate(List<Segment> segments) {
+        this.segments = segments.toArray(Segment[]::new);
+        this.literalLength = segments.stream()
+                .mapToInt(s -> s instanceof Literal l ? l.text().length() : 0)
+                .sum();
+    }
+
+    public static HtmlTemplate compile(String source) {
+        List<Segment> segments = new ArrayList<>();
+        int pos = 0;
+
+        while (pos < source.length()) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) break;
+
+            boolean raw = source.startsWith("{{{", open);
+            String closeToken = raw ? "}}}" : "}}";
+            int nameStart = open + (raw ? 3 : 2);
+            int close = source.indexOf(closeToken, nameStart);
+            if (close < 0) {
+                throw new IllegalArgumentException("Variable sin cerrar en la posición " + open);
+            }
+
+            String name = source.substring(nameStart, close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Variable vacía en la posición " + open);
+            }
+
+            if (open > pos) segments.add(new Literal(source.substring(pos, open)));
+            segments.add(new Variable(name, raw));
+            pos = close + closeToken.length();
+        }
+
+        if (pos < source.length()) segments.add(new Literal(source.substring(pos)));
+        return new HtmlTemplate(segments);
+    }
+
+    public String render(Map<String, ?> vars) {
+        StringBuilder out = new StringBuilder(literalLength + 256);
+        renderTo(out, vars);
+        return out.toString();
+    }
+
+    /** Añade el resultado a {@code out} (p.ej. para renderizar varias filas en el mismo buffer). */
+    public void renderTo(StringBuilder out, Map<String, ?> vars) {
+        out.ensureCapacity(out.length() + literalLength);
+
+        for (Segment segment : segments) {
+            switch (segment) {
+                case Literal l -> out.append(l.text());
+                case Variable v -> {
+                    Object value = vars.get(v.name());
+                    if (value == null) continue;
+                    if (v.raw()) out.append(value);
+                    else escapeTo(out, value.toString());
+                }
+            }
+        }
+    }
+
+    /** Nombres de las variables que usa la plantilla. */
+    public Set<String> variables() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Segment segment : segments) {
+            if (segment instanceof Variable v) names.add(v.name());
+        }
+        return names;
+    }
+
+    private static void escapeTo(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.PadelCaleruela.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Conjunto inmutable de ids como long[] ordenado (sin boxing).
+ * Búsqueda binaria en contains; pensado para conjuntos pequeños muy leídos.
+ */
+public final class LongIdSet {
+
+    public static final LongIdSet EMPTY = new LongIdSet(new long[0]);
+
+    private final long[] ids;
+
+    private LongIdSet(long[] sortedIds) {
+        this.ids = sortedIds;
+    }
+
+    public static LongIdSet of(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return EMPTY;
+
+        long[] sorted = ids.stream()
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .sorted()
+                .distinct()
+                .toArray();
+
+        return sorted.length == 0 ? EMPTY : new LongIdSet(sorted);
+    }
+
+    public boolean contains(Long id) {
+        return id != null && Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.PadelCaleruela.util;
+
+import java.time.Duration;
+
+/**
+ * Limitador de ritmo tipo "token bucket": como mucho {@code permitsPerSecond}
+ * de media, con ráfagas de hasta {@code burst}. Quien pide permisos espera
+ * (durmiendo, apto para hilos virtuales) hasta tenerlos o agotar el plazo.
+ */
+public class RateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+
+    private double available;
+    private long lastRefill = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Ritmo y ráfaga deben ser positivos");
+        }
+        this.permitsPerNano = permitsPerSecond / 1_000_000_000d;
+        this.burst = burst;
+        this.available = burst;
+    }
+
+    /**
+     * Reserva {@code permits} permisos esperando como mucho {@code maxWait}.
+     * Devuelve false (sin consumir nada) si no llegarían a tiempo.
+     */
+    public boolean acquire(int permits, Duration maxWait) throws InterruptedException {
+        long waitNanos;
+
+        synchronized (this) {
+            refill();
+            double missing = permits - available;
+            waitNanos = missing <= 0 ? 0 : (long) Math.ceil(missing / permitsPerNano);
+
+            if (waitNanos > maxWait.toNanos()) return false;
+
+            // Se descuenta ya (puede quedar negativo): los siguientes esperan detrás
+            available -= permits;
+        }
+
+        if (waitNanos > 0) {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        }
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(burst, available + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.PadelCaleruela.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor con una cola por tenant (ayuntamiento) atendidas por turnos.
+ * Con N tareas en vuelo como máximo, cada hueco libre se da al siguiente
+ * tenant con trabajo: una ráfaga de un ayuntamiento no deja sin turno al resto.
+ * Cada cola está acotada; al llenarse, la tarea se rechaza y se cuenta.
+ * Las tareas sin tenant (null) comparten una cola propia.
+ */
+public class TenantFairExecutor implements AutoCloseable {
+
+    private static final Object NO_TENANT = new Object();
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int perTenantCapacity;
+    private final ExecutorService threads;
+
+    private final Map<Object, ArrayDeque<Runnable>> queues = new HashMap<>();
+    private final ArrayDeque<Object> turns = new ArrayDeque<>(); // tenants con trabajo, en orden de turno
+    private int inFlight = 0;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    public TenantFairExecutor(String name, int maxConcurrency, int perTenantCapacity) {
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.perTenantCapacity = perTenantCapacity;
+        this.threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /** Encola la tarea en la cola del tenant. Lanza RejectedExecutionException si está llena. */
+    public void execute(Object tenant, Runnable task) {
+        Object key = tenant != null ? tenant : NO_TENANT;
+
+        synchronized (this) {
+            ArrayDeque<Runnable> queue = queues.computeIfAbsent(key, k -> new ArrayDeque<>());
+
+            if (queue.size() >= perTenantCapacity) {
+                long total = rejected.incrementAndGet();
+                throw new RejectedExecutionException(
+                        "Cola de " + name + " llena para " + tenant + " (rechazadas en total: " + total + ")");
+            }
+
+            queue.addLast(task);
+            if (queue.size() == 1) turns.addLast(key);
+
+            pump();
+        }
+    }
+
+    public <T> CompletableFuture<T> supply(Object tenant, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(tenant, () -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    // Lanza tareas mientras haya huecos, un tenant por turno (llamar con el lock)
+    private void pump() {
+        while (inFlight < maxConcurrency && !turns.isEmpty()) {
+            Object key = turns.pollFirst();
+            ArrayDeque<Runnable> queue = queues.get(key);
+            Runnable task = queue.pollFirst();
+
+            if (queue.isEmpty()) {
+                queues.remove(key);
+            } else {
+                turns.addLast(key); // vuelve al final de la rueda
+            }
+
+            inFlight++;
+            threads.execute(() -> run(task));
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            System.err.println("⚠ Error en tarea de " + name + ": " + e.getMessage());
+        } finally {
+            completed.incrementAndGet();
+            synchronized (this) {
+                inFlight--;
+                pump();
+            }
+        }
+    }
+
+    // ======================================================
+    // 📊 Métricas
+    // ======================================================
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueuedCount() {
+        return queues.values().stream().mapToInt(ArrayDeque::size).sum();
+    }
+
+    public synchronized int getTenantsWaiting() {
+        return turns.size();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public void close() {
+        threads.shutdownNow();
+    }
+}
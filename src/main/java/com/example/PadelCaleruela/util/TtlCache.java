@@ -0,0 +1,123 @@
+package com.example.PadelCaleruela.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria acotada (LRU) con caducidad por entrada.
+ * Pensada para datos pequeños y muy leídos; los accesos son síncronos
+ * pero la sección crítica es mínima y el cargador se ejecuta fuera del lock.
+ *
+ * Un invalidate que llega mientras se está cargando esa clave gana: el valor
+ * cargado se devuelve a quien lo pidió pero no se publica en la caché.
+ */
+public class TtlCache<K, V> {
+
+    private record Entry<V>(V value, Instant expiresAt) {
+
+        boolean isExpired(Instant now) {
+            return expiresAt.isBefore(now);
+        }
+    }
+
+    private final Duration ttl;
+    private final Map<K, Entry<V>> entries;
+
+    // Solo claves con cargas en curso (todo bajo el lock de entries)
+    private final Map<K, Integer> loading = new HashMap<>();
+    private final Map<K, Long> generations = new HashMap<>();
+    private long epoch; // sube con cada invalidateAll
+
+    public TtlCache(int maxSize, Duration ttl) {
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public V get(K key) {
+        Instant now = Instant.now();
+        synchronized (entries) {
+            Entry<V> e = entries.get(key);
+            if (e == null) return null;
+            if (e.isExpired(now)) {
+                entries.remove(key);
+                return null;
+            }
+            return e.value();
+        }
+    }
+
+    public void put(K key, V value) {
+        put(key, value, Instant.now().plus(ttl));
+    }
+
+    /** Guarda con una caducidad concreta (nunca más allá del TTL de la caché). */
+    public void put(K key, V value, Instant expiresAt) {
+        Instant max = Instant.now().plus(ttl);
+        Instant effective = expiresAt.isBefore(max) ? expiresAt : max;
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, effective));
+        }
+    }
+
+    public V computeIfAbsent(K key, Function<K, V> loader) {
+        long generation;
+        long epochAtStart;
+        Instant now = Instant.now();
+        synchronized (entries) {
+            Entry<V> e = entries.get(key);
+            if (e != null && !e.isExpired(now)) return e.value();
+
+            loading.merge(key, 1, Integer::sum);
+            generation = generations.getOrDefault(key, 0L);
+            epochAtStart = epoch;
+        }
+
+        V value = null;
+        try {
+            value = loader.apply(key);
+            return value;
+        } finally {
+            synchronized (entries) {
+                boolean current = epoch == epochAtStart
+                        && generations.getOrDefault(key, 0L) == generation;
+                if (value != null && current) {
+                    entries.put(key, new Entry<>(value, Instant.now().plus(ttl)));
+                }
+                // Última carga de la clave → fuera su generación
+                if (loading.merge(key, -1, Integer::sum) == 0) {
+                    loading.remove(key);
+                    generations.remove(key);
+                }
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+            if (loading.containsKey(key)) generations.merge(key, 1L, Long::sum);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            epoch++;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
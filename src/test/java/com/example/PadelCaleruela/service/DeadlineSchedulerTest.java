@@ -0,0 +1,69 @@
+package com.example.PadelCaleruela.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeadlineSchedulerTest {
+
+    private final DeadlineScheduler scheduler = new DeadlineScheduler();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    void firedDeadlinesAreNoLongerPending() throws Exception {
+        CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            scheduler.schedule("k:" + i, LocalDateTime.now(), done::countDown);
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(scheduler.size()).isEqualTo(0);
+    }
+
+    @Test
+    void rescheduleWhileRunningKeepsTheNewDeadline() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger secondRuns = new AtomicInteger();
+
+        scheduler.schedule("k", LocalDateTime.now(), () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Mientras la primera se ejecuta, ya no cuenta como pendiente
+        scheduler.scheduleIfAbsent("k", LocalDateTime.now().plusHours(1), secondRuns::incrementAndGet);
+        release.countDown();
+        Thread.sleep(200);
+
+        // El final de la primera no se lleva por delante la nueva
+        assertThat(scheduler.size()).isEqualTo(1);
+        assertThat(secondRuns.get()).isEqualTo(0);
+    }
+
+    @Test
+    void cancelledDeadlineNeverRuns() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.schedule("k", LocalDateTime.now().plusNanos(200_000_000), runs::incrementAndGet);
+        scheduler.cancel("k");
+
+        Thread.sleep(400);
+        assertThat(runs.get()).isEqualTo(0);
+        assertThat(scheduler.size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.PadelCaleruela.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.Address;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Envío por lotes contra un SMTP real en memoria (GreenMail) y clasificación de
+ * los rechazos: 5xx / destinatario inválido → definitivo, 4xx → se reintenta.
+ */
+class EmailServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Test
+    void batchIsDeliveredThroughSmtp() {
+        EmailService service = emailService(smtpSender());
+
+        Map<Long, RuntimeException> errors = service.deliverHtmlEmails(List.of(
+                new EmailService.OutgoingEmail(1L, "ana@test.com", "Uno", "<p>uno</p>"),
+                new EmailService.OutgoingEmail(2L, "luis@test.com", "Dos", "<p>dos</p>"),
+                new EmailService.OutgoingEmail(3L, "no-es-un-email", "Tres", "<p>tres</p>")
+        ));
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(2);
+        assertThat(errors).containsOnlyKeys(3L);
+        assertThat(errors.get(3L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void transientSmtpRepliesAreRetryable() throws Exception {
+        Address to = new InternetAddress("ana@test.com");
+
+        // 421/450/451 llegan como SendFailedException, pero no son definitivos
+        assertThat(EmailService.isPermanentRejection(
+                new SMTPSendFailedException("DATA", 451, "451 Try again later", null, null, null, null))).isFalse();
+        assertThat(EmailService.isPermanentRejection(
+                new SendFailedException("Invalid Addresses", new SMTPAddressFailedException(
+                        (InternetAddress) to, "RCPT TO", 450, "450 Mailbox busy")))).isFalse();
+        assertThat(EmailService.isPermanentRejection(
+                new SendFailedException("Unsent", null, null, new Address[]{to}, null))).isFalse();
+
+        Map<Long, RuntimeException> errors = emailService(failingSender(
+                new SMTPSendFailedException("DATA", 421, "421 Service not available", null, null, null, null)
+        )).deliverHtmlEmails(List.of(new EmailService.OutgoingEmail(1L, "ana@test.com", "Uno", "<p>uno</p>")));
+
+        assertThat(errors.get(1L)).isNotInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void permanentSmtpRepliesAreNotRetried() throws Exception {
+        Address to = new InternetAddress("ana@test.com");
+
+        assertThat(EmailService.isPermanentRejection(
+                new SMTPSendFailedException("DATA", 554, "554 Rejected", null, null, null, null))).isTrue();
+        assertThat(EmailService.isPermanentRejection(
+                new SendFailedException("Invalid Addresses", new SMTPAddressFailedException(
+                        (InternetAddress) to, "RCPT TO", 550, "550 No such user")))).isTrue();
+        assertThat(EmailService.isPermanentRejection(
+                new SendFailedException("Invalid Addresses", null, null, null, new Address[]{to}))).isTrue();
+
+        Map<Long, RuntimeException> errors = emailService(failingSender(
+                new SendFailedException("Invalid Addresses", new SMTPAddressFailedException(
+                        (InternetAddress) to, "RCPT TO", 550, "550 No such user"))
+        )).deliverHtmlEmails(List.of(new EmailService.OutgoingEmail(1L, "ana@test.com", "Uno", "<p>uno</p>")));
+
+        assertThat(errors.get(1L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ======================================================
+    // 🔧 Helpers
+    // ======================================================
+
+    private static EmailService emailService(JavaMailSenderImpl sender) {
+        EmailTemplates templates = new EmailTemplates();
+        templates.compileAll();
+
+        EmailService service = new EmailService(sender, null, templates, 1000, 100, 20);
+        ReflectionTestUtils.setField(service, "from", "noreply@test.com");
+        ReflectionTestUtils.setField(service, "fromName", "PadelApp");
+        return service;
+    }
+
+    private static JavaMailSenderImpl smtpSender() {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+        return sender;
+    }
+
+    // Como JavaMailSenderImpl cuando el servidor rechaza: MailSendException con el error por mensaje
+    private static JavaMailSenderImpl failingSender(Exception cause) {
+        return new JavaMailSenderImpl() {
+            @Override
+            public void send(MimeMessage... mimeMessages) {
+                Map<Object, Exception> failed = new LinkedHashMap<>();
+                for (MimeMessage m : mimeMessages) failed.put(m, cause);
+                throw new MailSendException(failed);
+            }
+        };
+    }
+}
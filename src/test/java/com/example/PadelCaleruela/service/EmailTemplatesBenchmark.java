@@ -0,0 +1,153 @@
+package com.example.PadelCaleruela.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Email "reserva confirmada" (4 jugadores, 2 cerraduras) con el layout común:
+ *  - legacyFormatted: como se hacía antes, text blocks + formatted() y
+ *    DateTimeFormatter/Locale creados en cada llamada
+ *  - compiledTemplate: EmailTemplates (plantillas precompiladas y formatos compartidos)
+ *
+ * Se lanza a mano: ejecutar main() desde el IDE o con el classpath de test.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailTemplatesBenchmark {
+
+    private static final String LOGO_URL =
+            "http://192.168.1.62:8080/uploads/posts/2/b8321976-0677-408f-a041-7f69d06d5a21_LogoBoostPlay.jpg";
+
+    private record Code(String lock, String password, LocalDateTime start, LocalDateTime end) {}
+
+    private EmailTemplates templates;
+    private String creador;
+    private LocalDateTime fechaHora;
+    private List<String> jugadores;
+    private List<Code> codes;
+
+    @Setup
+    public void setUp() {
+        templates = new EmailTemplates();
+        templates.compileAll();
+
+        creador = "Ana García";
+        fechaHora = LocalDateTime.of(2026, 6, 12, 18, 30);
+        jugadores = List.of("Ana García", "Luis Pérez", "Marta Ruiz", "Jorge Sanz");
+        codes = List.of(
+                new Code("Puerta principal", "482913", fechaHora.minusMinutes(15), fechaHora.plusMinutes(105)),
+                new Code("Pista 2", "771205", fechaHora.minusMinutes(15), fechaHora.plusMinutes(105))
+        );
+    }
+
+    @Benchmark
+    public String legacyFormatted() {
+        String fechaFormateada = fechaHora.format(
+                DateTimeFormatter.ofPattern("EEEE d 'de' MMMM 'a las' HH:mm", Locale.of("es", "ES")));
+
+        StringBuilder jugadoresList = new StringBuilder();
+        jugadores.forEach(j -> jugadoresList.append("<li>").append(j).append("</li>"));
+
+        StringBuilder codesHtml = new StringBuilder();
+        for (Code c : codes) {
+            codesHtml.append("""
+                <li>
+                    <b>%s</b><br/>
+                    Código: <b>%s</b><br/>
+                    Desde: %s<br/>
+                    Hasta: %s
+                </li><br/>
+            """.formatted(
+                    "Cerradura " + c.lock(),
+                    c.password(),
+                    c.start().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")),
+                    c.end().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"))
+            ));
+        }
+
+        String html = """
+            <div style="font-family: Arial; color: #333;">
+                <h2 style="color:#0b5ed7;">🎾 Reserva confirmada</h2>
+                <p><b>%s</b> ha realizado y pagado la reserva correctamente.</p>
+                <p>
+                    <b>Fecha:</b> %s<br/>
+                    <b>Jugadores:</b>
+                </p>
+                <ul>
+                    %s
+                </ul>
+                <h3 style="color:#0b5ed7;">🔐 Códigos de acceso</h3>
+                <p>A continuación encontrarás los códigos válidos para las cerraduras correspondientes:</p>
+                <ul>
+                    %s
+                </ul>
+                <p>Recuerda que los códigos solo funcionan dentro del horario permitido.</p>
+            </div>
+        """.formatted(creador, fechaFormateada, jugadoresList, codesHtml);
+
+        return """
+            <div style="font-family: Arial, Helvetica, sans-serif; background-color: #f6f8fb; padding: 30px;">
+                <div style="max-width: 600px; margin: auto; background: #ffffff; border-radius: 12px;
+                            box-shadow: 0 4px 12px rgba(0,0,0,0.1); overflow: hidden;">
+                    <div style="background: #111827; padding: 20px; text-align: center;">
+                        <img src="%s" alt="BoostPlay" style="max-height: 70px; border-radius: 8px;" />
+                    </div>
+                    <div style="padding: 30px; font-size: 16px; color: #333;">
+                        %s
+                    </div>
+                    <div style="background: #f1f5f9; padding: 20px; text-align: center; font-size: 13px; color: #6b7280;">
+                        <p style="margin: 0; font-weight: bold; color: #111827;">BoostPlay</p>
+                        <p style="margin: 5px 0;">El motor que impulsa tu comunidad deportiva.</p>
+                        <p style="margin: 5px 0;">📧 boostplay4@gmail.com</p>
+                        <p style="font-size: 12px; color: #94a3b8; margin-top: 10px;">
+                            © %d BoostPlay. Todos los derechos reservados.
+                        </p>
+                    </div>
+                </div>
+            </div>
+            """.formatted(LOGO_URL, html, Year.now().getValue());
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        String html = templates.render(EmailTemplates.Template.RESERVA_CONFIRMADA, Map.of(
+                "creador", creador,
+                "fecha", fechaHora.format(EmailTemplates.FECHA_LARGA),
+                "jugadores", templates.renderEach(EmailTemplates.Template.LISTA_ITEM, jugadores,
+                        j -> Map.of("texto", j)),
+                "codigos", templates.renderEach(EmailTemplates.Template.CODIGO_CERRADURA, codes,
+                        c -> Map.of(
+                                "cerradura", c.lock(),
+                                "codigo", c.password(),
+                                "desde", c.start().format(EmailTemplates.FECHA_HORA),
+                                "hasta", c.end().format(EmailTemplates.FECHA_HORA)
+                        ))
+        ));
+
+        return templates.render(EmailTemplates.Template.LAYOUT, Map.of(
+                "logoUrl", LOGO_URL,
+                "contenido", html,
+                "anio", Year.now().getValue()
+        ));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmailTemplatesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailTemplatesTest {
+
+    private final EmailTemplates templates = compiled();
+
+    private static EmailTemplates compiled() {
+        EmailTemplates templates = new EmailTemplates();
+        templates.compileAll();
+        return templates;
+    }
+
+    @Test
+    void playerWithoutFullNameRendersEmpty() {
+        User conNombre = new User();
+        conNombre.setFullName("Ana <Pérez>");
+        User sinNombre = new User();
+
+        String html = templates.render(EmailTemplates.Template.RESERVA_CANCELADA, EmailTemplates.vars(
+                "creador", null,
+                "fecha", "lunes 1 de junio a las 10:00",
+                "jugadores", templates.renderEach(EmailTemplates.Template.LISTA_ITEM, List.of(conNombre, sinNombre),
+                        j -> EmailTemplates.vars("texto", j.getFullName())),
+                "aviso", ""
+        ));
+
+        assertThat(html).contains("<li>Ana &lt;Pérez&gt;</li>");
+        assertThat(html).contains("<li></li>");
+        assertThat(html).contains("por <b></b>");
+    }
+
+    @Test
+    void varsRejectsUnpairedKeys() {
+        assertThatThrownBy(() -> EmailTemplates.vars("usuario"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
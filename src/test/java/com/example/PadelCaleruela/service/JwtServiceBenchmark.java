@@ -0,0 +1,102 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.CustomUserDetails;
+import com.example.PadelCaleruela.model.Role;
+import com.example.PadelCaleruela.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de autenticar una petición con JWT, en un solo hilo (peticiones por núcleo):
+ *  - legacyPerRequest: como antes, clave + parser nuevos y tres verificaciones de
+ *    firma por petición (extractUsername en el filtro + isTokenValid)
+ *  - sharedParserPerRequest: parser compartido, una sola verificación
+ *  - cachedPerRequest: JwtService.verify con el token ya en la caché de verificados
+ *
+ * Se lanza a mano: ejecutar main() desde el IDE o con el classpath de test.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private CustomUserDetails userDetails;
+    private String token;
+    private String secret;
+    private JwtParser sharedParser;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        jwtService = new JwtService();
+
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("ana");
+        user.setEmail("ana@test.com"); // es el "username" del token
+        user.setRole(Role.USER);
+        userDetails = new CustomUserDetails(user);
+
+        token = jwtService.generateToken(userDetails);
+
+        // Misma clave que firma los tokens
+        Field field = JwtService.class.getDeclaredField("SECRET_KEY");
+        field.setAccessible(true);
+        secret = (String) field.get(null);
+
+        sharedParser = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+                .build();
+
+        jwtService.verify(token); // a la caché
+    }
+
+    @Benchmark
+    public boolean legacyPerRequest() {
+        String username = legacyParse(token).getSubject();
+        return username.equals(userDetails.getUsername())
+                && legacyParse(token).getSubject().equals(userDetails.getUsername())
+                && !legacyParse(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean sharedParserPerRequest() {
+        Claims claims = sharedParser.parseClaimsJws(token).getBody();
+        return jwtService.isValidFor(claims, userDetails);
+    }
+
+    @Benchmark
+    public boolean cachedPerRequest() {
+        return jwtService.isValidFor(jwtService.verify(token), userDetails);
+    }
+
+    // Antiguo JwtService.extractAllClaims
+    private Claims legacyParse(String jwt) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+                .build()
+                .parseClaimsJws(jwt)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.model.*;
+import com.example.PadelCaleruela.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Muchas creaciones simultáneas del mismo slot contra un MySQL real (InnoDB, REPEATABLE READ):
+ * exactamente una gana y el resto recibe SlotAlreadyTakenException (409), nunca un deadlock.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReservationSlotClaims.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+class ReservationSlotClaimsTest {
+
+    private static final int PARALLEL_CREATES = 32;
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired private ReservationSlotClaims slotClaims;
+    @Autowired private ReservationSlotClaimRepository claimRepository;
+    @Autowired private ReservationRepository reservationRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PistaRepository pistaRepository;
+    @Autowired private AyuntamientoRepository ayuntamientoRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private User user;
+    private Pista pista;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> {
+            Ayuntamiento ayuntamiento = new Ayuntamiento();
+            ayuntamiento.setNombre("Test");
+            ayuntamiento.setActivo(true);
+            ayuntamiento = ayuntamientoRepository.save(ayuntamiento);
+
+            String suffix = UUID.randomUUID().toString().substring(0, 8);
+            User u = new User();
+            u.setUsername("user-" + suffix);
+            u.setEmail(suffix + "@test.com");
+            u.setPassword("x");
+            u.setRole(Role.USER);
+            u.setAyuntamiento(ayuntamiento);
+            user = userRepository.save(u);
+
+            Pista p = new Pista();
+            p.setAyuntamiento(ayuntamiento);
+            p.setNombre("Pista " + suffix);
+            p.setApertura(LocalTime.of(8, 0));
+            p.setCierre(LocalTime.of(23, 0));
+            pista = pistaRepository.save(p);
+        });
+    }
+
+    @Test
+    void parallelCreatesOnSameSlotHaveExactlyOneWinner() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusDays(2).withHour(18).withMinute(0).withSecond(0).withNano(0);
+
+        AtomicInteger winners = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch go = new CountDownLatch(1);
+
+        try (ExecutorService pool = Executors.newFixedThreadPool(PARALLEL_CREATES)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < PARALLEL_CREATES; i++) {
+                futures.add(pool.submit(() -> {
+                    go.await();
+                    try {
+                        // Igual que createReservation: se guarda la reserva y se reclama en la misma transacción
+                        tx.executeWithoutResult(status -> {
+                            Reservation r = reservationRepository.save(reservation(start));
+                            slotClaims.claim(pista.getId(), start, r.getId());
+                        });
+                        winners.incrementAndGet();
+                    } catch (SlotAlreadyTakenException e) {
+                        conflicts.incrementAndGet();
+                    } catch (Throwable e) {
+                        unexpected.add(e);
+                    }
+                    return null;
+                }));
+            }
+
+            go.countDown();
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        }
+
+        assertThat(unexpected).isEmpty();
+        assertThat(winners.get()).isEqualTo(1);
+        assertThat(conflicts.get()).isEqualTo(PARALLEL_CREATES - 1);
+        assertThat(tx.execute(status -> claimRepository.findClaimOwnerForUpdate(pista.getId(), start))).isNotNull();
+    }
+
+    @Test
+    void canceledReservationReleasesItsSlot() {
+        LocalDateTime start = LocalDateTime.now().plusDays(3).withHour(10).withMinute(0).withSecond(0).withNano(0);
+
+        Long first = tx.execute(status -> {
+            Reservation r = reservationRepository.save(reservation(start));
+            slotClaims.claim(pista.getId(), start, r.getId());
+            return r.getId();
+        });
+
+        // Cancelada sin pasar por release (p.ej. cancelación antigua): la reclamación queda huérfana
+        tx.executeWithoutResult(status -> reservationRepository.findById(first)
+                .ifPresent(r -> r.setStatus(ReservationStatus.CANCELED)));
+
+        Long second = tx.execute(status -> {
+            Reservation r = reservationRepository.save(reservation(start));
+            slotClaims.claim(pista.getId(), start, r.getId());
+            return r.getId();
+        });
+
+        assertThat(tx.execute(status -> claimRepository.findClaimOwnerForUpdate(pista.getId(), start)))
+                .isEqualTo(second);
+    }
+
+    private Reservation reservation(LocalDateTime start) {
+        Reservation r = new Reservation();
+        r.setUser(user);
+        r.setPista(pista);
+        r.setAyuntamiento(pista.getAyuntamiento());
+        r.setStartTime(start);
+        r.setEndTime(start.plusMinutes(90));
+        r.setStatus(ReservationStatus.PENDING);
+        return r;
+    }
+}
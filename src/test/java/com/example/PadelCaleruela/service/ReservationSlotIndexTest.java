@@ -0,0 +1,107 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.dto.SlotOccupancyDTO;
+import com.example.PadelCaleruela.model.Ayuntamiento;
+import com.example.PadelCaleruela.model.Pista;
+import com.example.PadelCaleruela.model.Reservation;
+import com.example.PadelCaleruela.model.ReservationStatus;
+import com.example.PadelCaleruela.repository.ReservationRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReservationSlotIndexTest {
+
+    private static final Long AYUNTAMIENTO_ID = 1L;
+    private static final Long PISTA_ID = 10L;
+
+    @Test
+    void reservationCommittedDuringLoadIsNotLost() {
+        LocalDate date = LocalDate.now().plusDays(1);
+        LocalDateTime start = date.atTime(18, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        ReservationSlotIndex[] index = new ReservationSlotIndex[1];
+
+        // 1ª carga: foto de BD sin la reserva y, mientras tanto, llega su commit
+        ReservationRepository repository = repository(() -> {
+            if (loads.incrementAndGet() == 1) {
+                index[0].refresh(reservation(100L, start));
+                return List.of();
+            }
+            return List.of(new SlotOccupancyDTO(100L, PISTA_ID, null, start, ReservationStatus.PENDING, false));
+        });
+        index[0] = new ReservationSlotIndex(repository);
+
+        assertThat(index[0].getDay(AYUNTAMIENTO_ID, date))
+                .containsKey(new ReservationSlotIndex.SlotKey(PISTA_ID, start.toLocalTime()));
+
+        // Publicado y en caché: las siguientes lecturas no vuelven a BD
+        index[0].getDay(AYUNTAMIENTO_ID, date);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void changesAfterLoadAreAppliedIncrementally() {
+        LocalDate date = LocalDate.now().plusDays(1);
+        LocalDateTime start = date.atTime(10, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        ReservationSlotIndex index = new ReservationSlotIndex(repository(() -> {
+            loads.incrementAndGet();
+            return List.of();
+        }));
+
+        assertThat(index.getDay(AYUNTAMIENTO_ID, date)).isEmpty();
+
+        Reservation r = reservation(200L, start);
+        index.refresh(r);
+        assertThat(index.getDay(AYUNTAMIENTO_ID, date)).hasSize(1);
+
+        r.setStatus(ReservationStatus.CANCELED);
+        index.refresh(r);
+        assertThat(index.getDay(AYUNTAMIENTO_ID, date)).isEmpty();
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    // ======================================================
+    // 🔧 Helpers
+    // ======================================================
+
+    private interface OccupancyLoader {
+        List<SlotOccupancyDTO> load();
+    }
+
+    private static ReservationRepository repository(OccupancyLoader loader) {
+        return (ReservationRepository) Proxy.newProxyInstance(
+                ReservationRepository.class.getClassLoader(),
+                new Class<?>[]{ReservationRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findSlotOccupancy")) return loader.load();
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static Reservation reservation(Long id, LocalDateTime start) {
+        Ayuntamiento ayuntamiento = new Ayuntamiento();
+        ayuntamiento.setId(AYUNTAMIENTO_ID);
+
+        Pista pista = new Pista();
+        pista.setId(PISTA_ID);
+
+        Reservation r = new Reservation();
+        r.setId(id);
+        r.setAyuntamiento(ayuntamiento);
+        r.setPista(pista);
+        r.setStartTime(start);
+        r.setEndTime(start.plusMinutes(90));
+        r.setStatus(ReservationStatus.PENDING);
+        return r;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.PadelCaleruela.service;
+
+import com.example.PadelCaleruela.util.BoundedExecutor;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * WelockAuthService contra un Welock falso (HttpServer del JDK) que tarda en
+ * responder: muchas peticiones simultáneas sin token provocan un único refresco.
+ */
+class WelockAuthServiceTest {
+
+    private static final int CONCURRENT_CALLS = 500;
+
+    private final AtomicInteger tokenCalls = new AtomicInteger();
+    private final AtomicInteger refreshCalls = new AtomicInteger();
+
+    private HttpServer server;
+    private DeadlineScheduler deadlineScheduler;
+    private BoundedExecutor ioExecutor;
+    private WelockAuthService authService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/API/Auth/Token", exchange ->
+                respond(exchange, "tok-" + tokenCalls.incrementAndGet(), "ref-" + tokenCalls.get()));
+        server.createContext("/API/Auth/RefreshToken", exchange ->
+                respond(exchange, "refreshed-" + refreshCalls.incrementAndGet(), "ref-r" + refreshCalls.get()));
+        server.start();
+
+        deadlineScheduler = new DeadlineScheduler();
+        ioExecutor = new BoundedExecutor("welock-test", 8, 100);
+
+        authService = new WelockAuthService(WebClient.builder().build(), deadlineScheduler, ioExecutor);
+        ReflectionTestUtils.setField(authService, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(authService, "appId", "app");
+        ReflectionTestUtils.setField(authService, "secret", "secret");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        deadlineScheduler.stop();
+        ioExecutor.close();
+    }
+
+    @Test
+    void concurrentGetTokenTriggersExactlyOneRefresh() throws Exception {
+        List<String> tokens = callConcurrently(authService::getToken);
+
+        assertThat(tokenCalls.get()).isEqualTo(1);
+        assertThat(Set.copyOf(tokens)).containsExactly("tok-1");
+
+        // Con el token vigente ya no se llama a Welock
+        assertThat(authService.getToken()).isEqualTo("tok-1");
+        assertThat(tokenCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrent401sOnSameTokenRefreshOnce() throws Exception {
+        String rejected = authService.getToken();
+
+        List<String> tokens = callConcurrently(() -> authService.onUnauthorized(rejected));
+
+        assertThat(refreshCalls.get()).isEqualTo(1);
+        assertThat(tokenCalls.get()).isEqualTo(1);
+        assertThat(Set.copyOf(tokens)).containsExactly("refreshed-1");
+    }
+
+    // ======================================================
+    // 🔧 Helpers
+    // ======================================================
+
+    private List<String> callConcurrently(Callable<String> call) throws Exception {
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENT_CALLS; i++) {
+                futures.add(pool.submit(() -> {
+                    go.await();
+                    return call.call();
+                }));
+            }
+            go.countDown();
+
+            List<String> results = new ArrayList<>();
+            for (Future<String> f : futures) {
+                results.add(f.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        }
+    }
+
+    // Respuesta lenta a propósito: todas las llamadas llegan mientras se refresca
+    private static void respond(HttpExchange exchange, String accessToken, String refreshToken) throws IOException {
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = """
+                {"code":0,"msg":"ok","data":{"accessToken":"%s","refreshToken":"%s","expiresIn":3600}}
+                """.formatted(accessToken, refreshToken).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
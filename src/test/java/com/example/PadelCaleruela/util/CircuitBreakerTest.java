@@ -0,0 +1,68 @@
+package com.example.PadelCaleruela.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN = Duration.ofMillis(20);
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 2, OPEN);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        breaker.onFailure(breaker.tryAcquire());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onFailure(breaker.tryAcquire());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+    }
+
+    @Test
+    void lateCallFromClosedStateDoesNotEndHalfOpen() throws Exception {
+        // Llamada lenta empezada con el circuito cerrado
+        CircuitBreaker.Permit slow = breaker.tryAcquire();
+
+        open();
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertThat(probe.isProbe()).isTrue();
+
+        // La lenta acaba ahora: ni cierra el circuito ni deja pasar otra prueba
+        breaker.onSuccess(slow);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isNull();
+
+        breaker.onSuccess(probe);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedProbeReopensAndIgnoredProbeFreesTheSlot() throws Exception {
+        open();
+
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        breaker.onIgnored(probe);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        CircuitBreaker.Permit second = breaker.tryAcquire();
+        assertThat(second.isProbe()).isTrue();
+
+        breaker.onFailure(second);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // Solo cuenta el primer resultado de cada permiso
+        breaker.onSuccess(second);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void open() throws InterruptedException {
+        breaker.onFailure(breaker.tryAcquire());
+        breaker.onFailure(breaker.tryAcquire());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        Thread.sleep(OPEN.toMillis() * 2);
+    }
+}
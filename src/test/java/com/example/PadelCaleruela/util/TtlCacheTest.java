@@ -0,0 +1,68 @@
+package com.example.PadelCaleruela.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TtlCacheTest {
+
+    private final TtlCache<Long, String> cache = new TtlCache<>(10, Duration.ofMinutes(1));
+
+    @Test
+    void loadsOnceAndCaches() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.computeIfAbsent(1L, k -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(cache.computeIfAbsent(1L, k -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidateDuringLoadDropsTheLoadedValue() {
+        // El invalidate llega mientras se carga: el valor viejo no se publica
+        String loaded = cache.computeIfAbsent(1L, k -> {
+            cache.invalidate(k);
+            return "viejo";
+        });
+
+        assertThat(loaded).isEqualTo("viejo");
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.computeIfAbsent(1L, k -> "nuevo")).isEqualTo("nuevo");
+        assertThat(cache.get(1L)).isEqualTo("nuevo");
+    }
+
+    @Test
+    void invalidateAllDuringLoadDropsTheLoadedValue() {
+        cache.computeIfAbsent(1L, k -> {
+            cache.invalidateAll();
+            return "viejo";
+        });
+
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    void invalidateOfAnotherKeyDoesNotAffectTheLoad() {
+        cache.computeIfAbsent(1L, k -> {
+            cache.invalidate(2L);
+            return "v";
+        });
+
+        assertThat(cache.get(1L)).isEqualTo("v");
+    }
+
+    @Test
+    void failedLoadLeavesNothingBehind() {
+        assertThatThrownBy(() -> cache.computeIfAbsent(1L, k -> {
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.computeIfAbsent(1L, k -> "v")).isEqualTo("v");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+}